@@ -8,6 +8,7 @@
 
 package org.cloudbus.cloudsim;
 
+import java.io.Serializable;
 import java.util.List;
 
 /**
@@ -19,7 +20,9 @@ import java.util.List;
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 1.0
  */
-public abstract class CloudletScheduler {
+public abstract class CloudletScheduler implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	/** The previous time. */
 	private double previousTime;
@@ -212,6 +215,62 @@ public abstract class CloudletScheduler {
 	 */
 	public abstract double getCurrentRequestedUtilizationOfBw();
 
+	/**
+	 * Gets the first time from a given time at which the utilization of the running cloudlets may
+	 * change, other than by a cloudlet being submitted or finishing. By default, the utilization
+	 * may change at any time.
+	 * 
+	 * @param time the time
+	 * @return the first time the utilization may change, or {@link Double#MAX_VALUE} if it does not
+	 *         change while the cloudlets run
+	 */
+	public double getNextUtilizationChangeTime(double time) {
+		return time;
+	}
+
+	/**
+	 * Gets the first time from a given time at which the utilization of some cloudlets may change.
+	 * The utilization of {@link UtilizationModelFull} and {@link UtilizationModelNull} never
+	 * changes, that of {@link UtilizationModelPlanetLabInMemory} changes at the samples of its
+	 * trace, and that of the other models may change at any time.
+	 * 
+	 * @param cloudletList the cloudlets
+	 * @param time the time
+	 * @return the first time the utilization may change, or {@link Double#MAX_VALUE} if it does not
+	 *         change while the cloudlets run
+	 */
+	protected double getNextUtilizationChangeTime(List<? extends ResCloudlet> cloudletList, double time) {
+		double changeTime = Double.MAX_VALUE;
+		for (ResCloudlet rcl : cloudletList) {
+			Cloudlet cloudlet = rcl.getCloudlet();
+			changeTime = Math.min(changeTime, getNextChangeTime(cloudlet.getUtilizationModelCpu(), time));
+			changeTime = Math.min(changeTime, getNextChangeTime(cloudlet.getUtilizationModelRam(), time));
+			changeTime = Math.min(changeTime, getNextChangeTime(cloudlet.getUtilizationModelBw(), time));
+			if (changeTime <= time) {
+				return time;
+			}
+		}
+		return changeTime;
+	}
+
+	/**
+	 * Gets the first time from a given time at which a utilization model may change.
+	 * 
+	 * @param utilizationModel the utilization model
+	 * @param time the time
+	 * @return the first time the utilization may change
+	 */
+	private static double getNextChangeTime(UtilizationModel utilizationModel, double time) {
+		if (utilizationModel instanceof UtilizationModelFull
+				|| utilizationModel instanceof UtilizationModelNull) {
+			return Double.MAX_VALUE;
+		}
+		if (utilizationModel instanceof UtilizationModelPlanetLabInMemory) {
+			return ((UtilizationModelPlanetLabInMemory) utilizationModel).getNextChangeTime(time);
+		}
+		return time;
+	}
+
 	/**
 	 * Gets the previous time.
 	 * 
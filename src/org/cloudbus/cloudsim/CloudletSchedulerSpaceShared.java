@@ -26,6 +26,8 @@ import org.cloudbus.cloudsim.core.CloudSim;
  */
 public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The cloudlet waiting list. */
 	private List<? extends ResCloudlet> cloudletWaitingList;
 
@@ -530,6 +532,15 @@ public class CloudletSchedulerSpaceShared extends CloudletScheduler {
 		this.cloudletWaitingList = cloudletWaitingList;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.CloudletScheduler#getNextUtilizationChangeTime(double)
+	 */
+	@Override
+	public double getNextUtilizationChangeTime(double time) {
+		return getNextUtilizationChangeTime(getCloudletExecList(), time);
+	}
+
 	/**
 	 * Gets the cloudlet exec list.
 	 * 
@@ -22,6 +22,8 @@ import org.cloudbus.cloudsim.core.CloudSim;
  */
 public class CloudletSchedulerTimeShared extends CloudletScheduler {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The cloudlet exec list. */
 	private List<? extends ResCloudlet> cloudletExecList;
 
@@ -416,6 +418,15 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		return rgl.getCloudlet();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.CloudletScheduler#getNextUtilizationChangeTime(double)
+	 */
+	@Override
+	public double getNextUtilizationChangeTime(double time) {
+		return getNextUtilizationChangeTime(getCloudletExecList(), time);
+	}
+
 	/**
 	 * Gets the cloudlet exec list.
 	 * 
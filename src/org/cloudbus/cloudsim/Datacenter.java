@@ -31,6 +31,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  */
 public class Datacenter extends SimEntity {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The characteristics. */
 	private DatacenterCharacteristics characteristics;
 
@@ -879,9 +881,16 @@ public class Datacenter extends SimEntity {
 					smallerTime = time;
 				}
 			}
-			// gurantees a minimal interval before scheduling the event
-			if (smallerTime < CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01) {
-				smallerTime = CloudSim.clock() + CloudSim.getMinTimeBetweenEvents() + 0.01;
+			// gurantees a minimal interval before scheduling the event: one tick past the minimum
+			// time between events with a time resolution, so the event falls on a tick
+			double minTime = CloudSim.clock() + CloudSim.getMinTimeBetweenEvents();
+			if (CloudSim.getTimeResolution() > 0) {
+				minTime = CloudSim.toTime(CloudSim.toTicks(minTime) + 1);
+			} else {
+				minTime += 0.01;
+			}
+			if (smallerTime < minTime) {
+				smallerTime = minTime;
 			}
 			if (smallerTime != Double.MAX_VALUE) {
 				schedule(getId(), (smallerTime - CloudSim.clock()), CloudSimTags.VM_DATACENTER_EVENT);
@@ -18,7 +18,6 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
-import org.cloudbus.cloudsim.core.predicates.PredicateType;
 import org.cloudbus.cloudsim.examples.power.Constants;
 import org.cloudbus.cloudsim.lists.CloudletList;
 import org.cloudbus.cloudsim.lists.VmList;
@@ -33,6 +32,8 @@ import org.cloudbus.cloudsim.lists.VmList;
  */
 public class DatacenterBroker extends SimEntity {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The vm list. */
 	protected List<? extends Vm> vmList;
 
@@ -215,6 +216,13 @@ public class DatacenterBroker extends SimEntity {
 		}
 	}
 
+	/**
+	 * Schedules the creation of new cloudlets, once the first VM has been created.
+	 */
+	protected void scheduleCloudletCreation() {
+		scheduleCoalesced(CloudSimTags.CLOUDLET_CREATE, Constants.CLOUDLET_CREATE_INTERVAL);
+	}
+
 	/**
 	 * Process the ack received due to a request for VM creation.
 	 * 
@@ -224,8 +232,7 @@ public class DatacenterBroker extends SimEntity {
 	 */
 	protected void processVmCreate(SimEvent ev) {
         if(inited){
-            CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.CLOUDLET_CREATE));
-            schedule(getId(), Constants.CLOUDLET_CREATE_INTERVAL, CloudSimTags.CLOUDLET_CREATE);
+            scheduleCloudletCreation();
         }
         inited = false;
 		int[] data = (int[]) ev.getData();
@@ -235,10 +242,12 @@ public class DatacenterBroker extends SimEntity {
 
 		if (result == CloudSimTags.TRUE) {
 			getVmsToDatacentersMap().put(vmId, datacenterId);
-			getVmsCreatedList().add(VmList.getById(getVmList(), vmId));
+			Vm vm = VmList.getById(getVmList(), vmId);
+			getVmsCreatedList().add(vm);
+			// the host is not known if the datacenter runs in another process of the simulation
 			Log.printLine(CloudSim.clock() + ": " + getName() + ": VM #" + vmId
 					+ " has been created in Datacenter #" + datacenterId + ", Host #"
-					+ VmList.getById(getVmsCreatedList(), vmId).getHost().getId());
+					+ (vm.getHost() == null ? "?" : vm.getHost().getId()));
 		} else {
 			Log.printLine(CloudSim.clock() + ": " + getName() + ": Creation of VM #" + vmId
 					+ " failed in Datacenter #" + datacenterId);
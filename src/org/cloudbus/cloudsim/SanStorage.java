@@ -23,6 +23,8 @@ import java.util.List;
  */
 public class SanStorage extends HarddriveStorage {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The bandwidth. */
 	double bandwidth;
 
@@ -4,10 +4,14 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+
 /**
  * The Class UtilizationModelPlanetLab.
  */
 public class UtilizationModelPlanetLabInMemory implements UtilizationModel {
+
+	private static final long serialVersionUID = 1L;
 	
 	/** The scheduling interval. */
 	private double schedulingInterval;
@@ -64,7 +68,7 @@ public class UtilizationModelPlanetLabInMemory implements UtilizationModel {
 	 */
 	@Override
 	public double getUtilization(double time) {
-		if (time % getSchedulingInterval() == 0) {
+		if (CloudSim.isPeriodBoundary(time, getSchedulingInterval())) {
 			return data[(int) time / (int) getSchedulingInterval()];
 		}
 		int time1 = (int) Math.floor(time / getSchedulingInterval());
@@ -77,6 +81,25 @@ public class UtilizationModelPlanetLabInMemory implements UtilizationModel {
 
 	}
 
+	/**
+	 * Gets the first time from a given time at which the utilization changes. The utilization is
+	 * interpolated between two samples, so it is constant until the first sample followed by a
+	 * different one.
+	 *
+	 * @param time the time
+	 * @return the time of that sample, the given time if the utilization is changing at that time,
+	 *         or {@link Double#MAX_VALUE} if it does not change until the end of the data
+	 */
+	public double getNextChangeTime(double time) {
+		int sample = (int) Math.floor(time / getSchedulingInterval());
+		for (int i = sample; i < data.length - 1; i++) {
+			if (data[i] != data[i + 1]) {
+				return i == sample ? time : i * getSchedulingInterval();
+			}
+		}
+		return Double.MAX_VALUE;
+	}
+
 	/**
 	 * Sets the scheduling interval.
 	 * 
@@ -14,6 +14,8 @@ import java.util.Random;
  */
 public class UtilizationModelRandom implements UtilizationModel {
 
+    private static final long serialVersionUID = 1L;
+
 
     /** The random generator. */
     private Random randomGenerator;
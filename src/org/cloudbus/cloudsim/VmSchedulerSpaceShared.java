@@ -25,6 +25,8 @@ import java.util.Map;
  */
 public class VmSchedulerSpaceShared extends VmScheduler {
 
+	private static final long serialVersionUID = 1L;
+
 	/** Map containing VM ID and a vector of PEs allocated to this VM. */
 	private Map<String, List<Pe>> peAllocationMap;
 
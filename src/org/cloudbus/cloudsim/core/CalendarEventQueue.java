@@ -0,0 +1,362 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link EventQueue} implementing the calendar queue of R. Brown ("Calendar Queues: A Fast O(1)
+ * Priority Queue Implementation for the Simulation Event Set Problem", CACM 31(10), 1988). Events
+ * are hashed by time into an array of buckets ("days") of a fixed width; one pass over all the
+ * buckets covers a "year". The number of buckets and their width are recomputed whenever the queue
+ * doubles or halves, so that each bucket holds a handful of events on average.
+ * <p>
+ * This queue performs best when events are spread fairly evenly over time, as in simulations
+ * driven by periodic scheduling intervals. Each bucket keeps its events sorted in <b>descending</b>
+ * order, so that the first event of a bucket is removed from the end of its array.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see EventQueue
+ */
+public class CalendarEventQueue implements EventQueue {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The minimal number of buckets. */
+	private static final int MIN_BUCKETS = 2;
+
+	/** The number of events sampled to estimate a new bucket width. */
+	private static final int WIDTH_SAMPLE = 25;
+
+	/** The buckets. */
+	private Bucket[] buckets;
+
+	/** The width of a bucket, in simulation time. */
+	private double width;
+
+	/** The number of events in the queue. */
+	private int size;
+
+	/** The absolute index of the bucket where the search for the next event starts. */
+	private long current;
+
+	/** Whether resizing is enabled; disabled while the queue is being rebuilt. */
+	private boolean resizeEnabled;
+
+	/**
+	 * Creates a new calendar queue with a bucket width of 1.
+	 */
+	public CalendarEventQueue() {
+		this(1.0);
+	}
+
+	/**
+	 * Creates a new calendar queue.
+	 *
+	 * @param initialWidth the initial width of a bucket, in simulation time
+	 */
+	public CalendarEventQueue(double initialWidth) {
+		if (initialWidth <= 0) {
+			throw new IllegalArgumentException("The bucket width should be positive, but is:"
+					+ initialWidth);
+		}
+		init(MIN_BUCKETS, initialWidth, 0);
+		resizeEnabled = true;
+	}
+
+	@Override
+	public void add(SimEvent event) {
+		long index = indexOf(event.eventTime());
+		if (index < current) {
+			current = index;
+		}
+		buckets[(int) (index & (buckets.length - 1))].insert(event);
+		size++;
+		if (resizeEnabled && size > 2 * buckets.length) {
+			resize(buckets.length * 2);
+		}
+	}
+
+	@Override
+	public SimEvent peek() {
+		Bucket bucket = findFirst();
+		return bucket == null ? null : bucket.last();
+	}
+
+	@Override
+	public SimEvent poll() {
+		Bucket bucket = findFirst();
+		if (bucket == null) {
+			return null;
+		}
+		SimEvent first = bucket.removeLast();
+		size--;
+		if (resizeEnabled && size < buckets.length / 2 && buckets.length > MIN_BUCKETS) {
+			resize(buckets.length / 2);
+		}
+		return first;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		Bucket bucket = buckets[(int) (indexOf(event.eventTime()) & (buckets.length - 1))];
+		if (bucket.remove(event)) {
+			size--;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		init(MIN_BUCKETS, width, 0);
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int bucket = 0;
+
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (bucket < buckets.length && index >= buckets[bucket].size) {
+					bucket++;
+					index = 0;
+				}
+				return bucket < buckets.length;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return buckets[bucket].events[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Gets the width of a bucket.
+	 *
+	 * @return the width
+	 */
+	public double getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the number of buckets.
+	 *
+	 * @return the number of buckets
+	 */
+	public int getNumberOfBuckets() {
+		return buckets.length;
+	}
+
+	/**
+	 * Finds the bucket holding the first event and moves the search position to it.
+	 *
+	 * @return the bucket, or <tt>null</tt> if the queue is empty
+	 */
+	private Bucket findFirst() {
+		if (size == 0) {
+			return null;
+		}
+		int mask = buckets.length - 1;
+		for (int i = 0; i < buckets.length; i++) {
+			Bucket bucket = buckets[(int) (current & mask)];
+			if (bucket.size > 0 && indexOf(bucket.last().eventTime()) <= current) {
+				return bucket;
+			}
+			current++;
+		}
+
+		// nothing in the current year: search all the buckets directly
+		Bucket min = null;
+		for (Bucket bucket : buckets) {
+			if (bucket.size > 0 && (min == null || HeapEventQueue.before(bucket.last(), min.last()))) {
+				min = bucket;
+			}
+		}
+		current = indexOf(min.last().eventTime());
+		return min;
+	}
+
+	/**
+	 * Gets the absolute index of the bucket covering the given time.
+	 *
+	 * @param time the time
+	 * @return the absolute bucket index
+	 */
+	private long indexOf(double time) {
+		return (long) Math.floor(time / width);
+	}
+
+	/**
+	 * Initialises empty buckets.
+	 *
+	 * @param count the number of buckets, a power of two
+	 * @param newWidth the width of a bucket
+	 * @param startTime the time where the search for the next event starts
+	 */
+	private void init(int count, double newWidth, double startTime) {
+		buckets = new Bucket[count];
+		for (int i = 0; i < count; i++) {
+			buckets[i] = new Bucket();
+		}
+		width = newWidth;
+		size = 0;
+		current = indexOf(startTime);
+	}
+
+	/**
+	 * Rebuilds the calendar with a new number of buckets and a new bucket width estimated from the
+	 * separation of the earliest events.
+	 *
+	 * @param count the new number of buckets
+	 */
+	private void resize(int count) {
+		List<SimEvent> events = new ArrayList<SimEvent>(size);
+		for (SimEvent event : this) {
+			events.add(event);
+		}
+		SimEvent[] sorted = events.toArray(new SimEvent[events.size()]);
+		Arrays.sort(sorted);
+
+		double newWidth = estimateWidth(sorted);
+		double startTime = sorted.length > 0 ? sorted[0].eventTime() : 0;
+
+		resizeEnabled = false;
+		init(count, newWidth, startTime);
+		for (SimEvent event : sorted) {
+			add(event);
+		}
+		resizeEnabled = true;
+	}
+
+	/**
+	 * Estimates the bucket width as three times the average separation between the earliest events,
+	 * ignoring events scheduled at the same time.
+	 *
+	 * @param sorted the events sorted by time
+	 * @return the new width
+	 */
+	private double estimateWidth(SimEvent[] sorted) {
+		int n = Math.min(WIDTH_SAMPLE, sorted.length);
+		double sum = 0;
+		int count = 0;
+		for (int i = 1; i < n; i++) {
+			double separation = sorted[i].eventTime() - sorted[i - 1].eventTime();
+			if (separation > 0) {
+				sum += separation;
+				count++;
+			}
+		}
+		if (count == 0) {
+			return width;
+		}
+		return 3.0 * sum / count;
+	}
+
+	/**
+	 * A bucket of the calendar. The events are kept sorted in descending order.
+	 */
+	private static class Bucket implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The events. */
+		private SimEvent[] events = new SimEvent[4];
+
+		/** The number of events. */
+		private int size = 0;
+
+		/**
+		 * Gets the earliest event of the bucket.
+		 *
+		 * @return the event
+		 */
+		SimEvent last() {
+			return events[size - 1];
+		}
+
+		/**
+		 * Removes the earliest event of the bucket.
+		 *
+		 * @return the event
+		 */
+		SimEvent removeLast() {
+			SimEvent event = events[--size];
+			events[size] = null;
+			return event;
+		}
+
+		/**
+		 * Inserts an event keeping the descending order.
+		 *
+		 * @param event the event
+		 */
+		void insert(SimEvent event) {
+			if (size == events.length) {
+				events = Arrays.copyOf(events, size * 2);
+			}
+			// find the first position holding an event that precedes the new one
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (HeapEventQueue.before(events[mid], event)) {
+					high = mid;
+				} else {
+					low = mid + 1;
+				}
+			}
+			System.arraycopy(events, low, events, low + 1, size - low);
+			events[low] = event;
+			size++;
+		}
+
+		/**
+		 * Removes an event.
+		 *
+		 * @param event the event
+		 * @return true, if the event was in the bucket
+		 */
+		boolean remove(SimEvent event) {
+			for (int i = 0; i < size; i++) {
+				if (events[i] == event) {
+					System.arraycopy(events, i + 1, events, i, size - i - 1);
+					events[--size] = null;
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A checkpoint of a running simulation, as written to a file by {@link Simulation}. It holds the
+ * {@link Simulation} itself, i.e. the simulation clock, the settings given to
+ * {@link CloudSim#init(int, Calendar, boolean)}, the future event queue and the entities, which in
+ * turn hold their deferred events and all the objects they reference: hosts, VMs, cloudlets,
+ * schedulers, provisioners, policies and random number generators. The file is written with Java
+ * serialization and compressed with GZIP.
+ * <p>
+ * Static fields are not part of the checkpoint. A simulation keeping state in static fields outside
+ * of its entities should pass it as the attachment of the checkpoint.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim#checkpointAt(double, String, Serializable)
+ * @see CloudSim#restore(String)
+ */
+class Checkpoint implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The simulation. */
+	private final Simulation simulation;
+
+	/** The state of the simulation which is kept outside of the entities, or null. */
+	private final Serializable attachment;
+
+	/**
+	 * Creates a new checkpoint.
+	 *
+	 * @param simulation the simulation
+	 * @param attachment the state of the simulation which is kept outside of the entities, or null
+	 */
+	Checkpoint(Simulation simulation, Serializable attachment) {
+		this.simulation = simulation;
+		this.attachment = attachment;
+	}
+
+	/**
+	 * Gets the simulation.
+	 *
+	 * @return the simulation
+	 */
+	Simulation getSimulation() {
+		return simulation;
+	}
+
+	/**
+	 * Gets the state of the simulation which is kept outside of the entities.
+	 *
+	 * @return the attachment, or null
+	 */
+	Serializable getAttachment() {
+		return attachment;
+	}
+
+	/**
+	 * Writes the checkpoint to a file.
+	 *
+	 * @param fileName the name of the file
+	 * @throws IOException if the file cannot be written or an object of the simulation is not
+	 *             serializable
+	 */
+	void write(String fileName) throws IOException {
+		ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+				new FileOutputStream(fileName))));
+		try {
+			out.writeObject(this);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a checkpoint from a file.
+	 *
+	 * @param fileName the name of the file
+	 * @return the checkpoint
+	 * @throws IOException if the file cannot be read
+	 * @throws ClassNotFoundException if a class of the simulation cannot be found
+	 */
+	static Checkpoint read(String fileName) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(
+				new FileInputStream(fileName))));
+		try {
+			return (Checkpoint) in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator which runs a simulation one clock tick at a time and returns the times of the ticks,
+ * so that a simulation can be driven from a loop of the caller instead of being run to the end by
+ * {@link Simulation#run()}.
+ * 
+ * @since CloudSim Toolkit 3.0
+ * @see Simulation#ticks()
+ */
+class ClockTickIterator implements Iterator<Double> {
+
+	/** The simulation. */
+	private final Simulation simulation;
+
+	/** Whether the simulation has finished. */
+	private boolean finished;
+
+	/**
+	 * Creates a new iterator.
+	 * 
+	 * @param simulation the simulation to run
+	 */
+	ClockTickIterator(Simulation simulation) {
+		this.simulation = simulation;
+		finished = !simulation.hasWork();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !finished;
+	}
+
+	@Override
+	public Double next() {
+		if (finished) {
+			throw new NoSuchElementException("The simulation has finished.");
+		}
+		// the clock is reset when the simulation finishes, so the time of the last tick is taken first
+		double time = simulation.getNextEventTime();
+		finished = !simulation.step(1);
+		return finished ? time : simulation.clock();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("The clock ticks cannot be removed.");
+	}
+
+}
@@ -8,14 +8,11 @@
 
 package org.cloudbus.cloudsim.core;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.Calendar;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.predicates.Predicate;
@@ -29,6 +26,10 @@ import org.cloudbus.cloudsim.core.predicates.PredicateNone;
  * network. Later, nodes in such file are mapped to CloudSim entities. Delay calculated from the
  * BRITE model are added to the messages send through CloudSim. Messages using the old model are
  * converted to the apropriate methods with the correct parameters.
+ * <p>
+ * The state of the simulation is kept by a {@link Simulation}. The static methods of this class act
+ * on the simulation bound to the current thread with {@link #setSimulation(Simulation)}, or on a
+ * default simulation shared by the threads which have none.
  * 
  * @author Rodrigo N. Calheiros
  * @author Anton Beloglazov
@@ -36,63 +37,55 @@ import org.cloudbus.cloudsim.core.predicates.PredicateNone;
  */
 public class CloudSim {
 
-	/** The Constant CLOUDSIM_VERSION_STRING. */
-	private static final String CLOUDSIM_VERSION_STRING = "3.0";
+	/** The simulation of the threads which have not been bound to one. */
+	private static Simulation defaultSimulation = new Simulation();
 
-	/** The id of CIS entity. */
-	private static int cisId = -1;
+	/** The simulations bound to threads. */
+	private static final ThreadLocal<Simulation> simulations = new ThreadLocal<Simulation>();
 
-	/** The id of CloudSimShutdown entity. */
-	@SuppressWarnings("unused")
-	private static int shutdownId = -1;
+	/** Whether a simulation has ever been bound to a thread, so the default one may be used at once. */
+	private static volatile boolean bound = false;
 
-	/** The CIS object. */
-	private static CloudInformationService cis = null;
-
-	/** The Constant NOT_FOUND. */
-	private static final int NOT_FOUND = -1;
-
-	/** The trace flag. */
-	@SuppressWarnings("unused")
-	private static boolean traceFlag = false;
+	// The two standard predicates
 
-	/** The calendar. */
-	private static Calendar calendar = null;
+	/** A standard predicate that matches any event. */
+	public final static PredicateAny SIM_ANY = new PredicateAny();
 
-	/** The termination time. */
-	private static double terminateAt = -1;
+	/** A standard predicate that does not match any events. */
+	public final static PredicateNone SIM_NONE = new PredicateNone();
 
-	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
-	private static double minTimeBetweenEvents = 0.1;
-	
 	/**
-	 * Initialises all the common attributes.
+	 * Gets the simulation the static methods of this class act on: the simulation bound to the
+	 * current thread, or the default simulation if there is none.
 	 * 
-	 * @param _calendar the _calendar
-	 * @param _traceFlag the _trace flag
-	 * @param numUser number of users
-	 * @throws Exception This happens when creating this entity before initialising CloudSim package
-	 *             or this entity name is <tt>null</tt> or empty
-	 * @pre $none
-	 * @post $none
+	 * @return the simulation of the current thread
+	 * @see #setSimulation(Simulation)
 	 */
-	private static void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser)
-			throws Exception {
-		initialize();
-		// NOTE: the order for the below 3 lines are important
-		traceFlag = _traceFlag;
+	public static Simulation getSimulation() {
+		if (bound) {
+			Simulation simulation = simulations.get();
+			if (simulation != null) {
+				return simulation;
+			}
+		}
+		return defaultSimulation;
+	}
 
-		// Set the current Wall clock time as the starting time of
-		// simulation
-		if (_calendar == null) {
-			calendar = Calendar.getInstance();
+	/**
+	 * Binds a simulation to the current thread. The static methods of this class called from the
+	 * thread, including those called by the entities of the simulation, then act on it, so several
+	 * simulations can be run at the same time, each on its own thread. A new simulation should be
+	 * bound before calling {@link #init(int, Calendar, boolean)} and creating the entities.
+	 * 
+	 * @param simulation the simulation, or null to use the default simulation again
+	 */
+	public static void setSimulation(Simulation simulation) {
+		if (simulation == null) {
+			simulations.remove();
 		} else {
-			calendar = _calendar;
+			bound = true;
+			simulations.set(simulation);
 		}
-
-		// creates a CloudSimShutdown object
-		CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
-		shutdownId = shutdown.getId();
 	}
 
 	/**
@@ -117,21 +110,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static void init(int numUser, Calendar cal, boolean traceFlag) {
-		try {
-			initCommonVariable(cal, traceFlag, numUser);
-
-			// create a GIS object
-			cis = new CloudInformationService("CloudInformationService");
-
-			// set all the above entity IDs
-			cisId = cis.getId();
-		} catch (IllegalArgumentException s) {
-			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
-			Log.printLine(s.getMessage());
-		} catch (Exception e) {
-			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
-			Log.printLine(e.getMessage());
-		}
+		getSimulation().init(numUser, cal, traceFlag);
 	}
 
 	/**
@@ -158,16 +137,31 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static void init(int numUser, Calendar cal, boolean traceFlag, double periodBetweenEvents) {
-	    if (periodBetweenEvents <= 0) {
-		throw new IllegalArgumentException("The minimal time between events should be positive, but is:" + periodBetweenEvents);
-	    }
-	    
-	    init(numUser, cal, traceFlag);
-	    minTimeBetweenEvents = periodBetweenEvents;
+		getSimulation().init(numUser, cal, traceFlag, periodBetweenEvents);
+	}
+
+	/**
+	 * Initialises CloudSim parameters using the given storage for the future event queue. This
+	 * method should be called before creating any entities.
+	 * <p>
+	 * The default future event queue is a {@link HeapEventQueue}. A {@link CalendarEventQueue} may
+	 * perform better when many events are spread over time, as in simulations with periodic
+	 * scheduling intervals.
+	 * 
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param futureEventQueue the empty event queue used to store the future events
+	 * @see #init(int, Calendar, boolean)
+	 * @pre numUser >= 0
+	 * @pre futureEventQueue != null
+	 * @post $none
+	 */
+	public static void init(int numUser, Calendar cal, boolean traceFlag, EventQueue futureEventQueue) {
+		getSimulation().init(numUser, cal, traceFlag, futureEventQueue);
 	}
-	
-	
-	
+
 	/**
 	 * Starts the execution of CloudSim simulation. It waits for complete execution of all entities,
 	 * i.e. until all entities threads reach non-RUNNABLE state or there are no more events in the
@@ -183,23 +177,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static double startSimulation() throws NullPointerException {
-		Log.printLine("Starting CloudSim version " + CLOUDSIM_VERSION_STRING);
-		try {
-			double clock = run();
-
-			// reset all static variables
-			cisId = -1;
-			shutdownId = -1;
-			cis = null;
-			calendar = null;
-			traceFlag = false;
-
-			return clock;
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			throw new NullPointerException("CloudSim.startCloudSimulation() :"
-					+ " Error - you haven't initialized CloudSim.");
-		}
+		return getSimulation().startSimulation();
 	}
 
 	/**
@@ -215,12 +193,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static void stopSimulation() throws NullPointerException {
-		try {
-			runStop();
-		} catch (IllegalArgumentException e) {
-			throw new NullPointerException("CloudSim.stopCloudSimulation() : "
-					+ "Error - can't stop Cloud Simulation.");
-		}
+		getSimulation().stopSimulation();
 	}
 
 	/**
@@ -229,9 +202,7 @@ public class CloudSim {
 	 * @return true, if successful; false otherwise.
 	 */
 	public static boolean terminateSimulation() {
-		running = false;
-		printMessage("Simulation: Reached termination time.");
-		return true;
+		return getSimulation().terminateSimulation();
 	}
 
 	/**
@@ -241,21 +212,230 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean terminateSimulation(double time) {
-		if (time <= clock) {
-			return false;
-		} else {
-			terminateAt = time;
-		}
-		return true;
+		return getSimulation().terminateSimulation(time);
 	}
 
-	
 	/**
 	 * Returns the minimum time between events. Events within shorter periods after the last event are discarded. 
 	 * @return the minimum time between events.
 	 */
 	public static double getMinTimeBetweenEvents() {
-	    return minTimeBetweenEvents;
+		return getSimulation().getMinTimeBetweenEvents();
+	}
+
+	/**
+	 * Sets a fixed resolution of the simulation time. The time of every event sent from now on is
+	 * rounded to the nearest whole number of ticks of this length, so the events due in the same
+	 * tick have exactly the same time and are delivered together, and times can be compared as
+	 * whole numbers of ticks with {@link #toTicks(double)}.
+	 * 
+	 * @param resolution the length of a tick, or 0 to keep the event times as they are, as by
+	 *            default
+	 * @throws IllegalArgumentException if the resolution is negative
+	 */
+	public static void setTimeResolution(double resolution) {
+		getSimulation().setTimeResolution(resolution);
+	}
+
+	/**
+	 * Gets the resolution of the simulation time.
+	 * 
+	 * @return the length of a tick, or 0 if the event times are not rounded
+	 * @see #setTimeResolution(double)
+	 */
+	public static double getTimeResolution() {
+		return getSimulation().getTimeResolution();
+	}
+
+	/**
+	 * Converts a time to a number of ticks.
+	 * 
+	 * @param time the time
+	 * @return the nearest whole number of ticks
+	 * @throws IllegalStateException if no time resolution has been set
+	 */
+	public static long toTicks(double time) {
+		return getSimulation().toTicks(time);
+	}
+
+	/**
+	 * Converts a number of ticks to a time.
+	 * 
+	 * @param ticks the number of ticks
+	 * @return the time of the tick
+	 * @throws IllegalStateException if no time resolution has been set
+	 */
+	public static double toTime(long ticks) {
+		return getSimulation().toTime(ticks);
+	}
+
+	/**
+	 * Gets the current simulation time as a number of ticks.
+	 * 
+	 * @return the number of ticks
+	 * @throws IllegalStateException if no time resolution has been set
+	 */
+	public static long clockTicks() {
+		return getSimulation().clockTicks();
+	}
+
+	/**
+	 * Checks if a time is a whole number of periods, exactly if a time resolution has been set.
+	 * Without one, the remainder of the division is compared with 0, which fails as soon as either
+	 * time carries a rounding error.
+	 * 
+	 * @param time the time
+	 * @param period the period
+	 * @return true, if the time is a multiple of the period
+	 */
+	public static boolean isPeriodBoundary(double time, double period) {
+		return getSimulation().isPeriodBoundary(time, period);
+	}
+
+	/**
+	 * Sets the number of threads running the entities which have work to do in the same clock
+	 * tick. With more than one thread, the entities given events with the same time which return
+	 * true from {@link SimEntity#isParallelizable()} are run in parallel, one task per entity; the
+	 * other entities are run on their own, in the order of the entity ids. The events the entities
+	 * run in parallel send or cancel, the entities they create and the messages they log are
+	 * buffered and applied after the tick in the order of the entity ids, as they would be when run
+	 * sequentially. The entities they create get their ids only after the tick.
+	 * <p>
+	 * This only protects the state held by the simulation. The simulation gives the same results
+	 * as when run sequentially only if the entities run in parallel do not share any other mutable
+	 * state, such as the objects handed from one entity to another (VMs, cloudlets, hosts) or
+	 * static state like {@link org.cloudbus.cloudsim.util.ExecutionTimeMeasurer}. No entity of the
+	 * toolkit is run in parallel by default.
+	 * 
+	 * @param parallelism the number of threads; 1 runs the entities sequentially, as by default
+	 * @throws IllegalArgumentException if the parallelism is not positive
+	 */
+	public static void setParallelism(int parallelism) {
+		getSimulation().setParallelism(parallelism);
+	}
+
+	/**
+	 * Gets the number of threads running the entities which have work to do in the same clock
+	 * tick.
+	 * 
+	 * @return the parallelism, 1 if the entities are run sequentially
+	 * @see #setParallelism(int)
+	 */
+	public static int getParallelism() {
+		return getSimulation().getParallelism();
+	}
+
+	/**
+	 * Runs the simulation as one of the processes of a distributed simulation. Only the entities of
+	 * the partition of the process are run, and the events sent to the entities of the other
+	 * partitions are forwarded to their processes. This method should be called after all the
+	 * entities have been created, before starting the simulation.
+	 * 
+	 * @param process the process, or null to run the simulation in this process only
+	 * @see LogicalProcess
+	 */
+	public static void setLogicalProcess(LogicalProcess process) {
+		getSimulation().setLogicalProcess(process);
+	}
+
+	/**
+	 * Gets the process of the distributed simulation.
+	 * 
+	 * @return the process, or null if the simulation runs in this process only
+	 */
+	public static LogicalProcess getLogicalProcess() {
+		return getSimulation().getLogicalProcess();
+	}
+
+	/**
+	 * Enables or disables the profiling of the events handled by the entities. While it is
+	 * enabled, the number of events, the time they stay in the deferred queues and the wall-clock
+	 * time spent handling them are collected by entity and by tag, and printed when the simulation
+	 * finishes. When it is disabled, the profiling costs nothing.
+	 * 
+	 * @param enabled true to profile the events
+	 * @see #getEventProfiler()
+	 */
+	public static void setProfiling(boolean enabled) {
+		getSimulation().setProfiling(enabled);
+	}
+
+	/**
+	 * Checks if the events handled by the entities are profiled.
+	 * 
+	 * @return true, if the profiling is enabled
+	 */
+	public static boolean isProfiling() {
+		return getSimulation().isProfiling();
+	}
+
+	/**
+	 * Gets the statistics of the events handled by the entities.
+	 * 
+	 * @return the profiler, or null if the profiling is disabled
+	 * @see #setProfiling(boolean)
+	 */
+	public static EventProfiler getEventProfiler() {
+		return getSimulation().getEventProfiler();
+	}
+
+	/**
+	 * Requests a checkpoint of the simulation to be written once all the events up to the given
+	 * time have been processed. The simulation then goes on as usual. A new simulation can be
+	 * resumed from the checkpoint with {@link #restore(String)}, e.g. to compare several policies
+	 * from the same warm state without simulating the warm-up again.
+	 * <p>
+	 * All the entities and the objects they reference, including the data of the pending events,
+	 * must be serializable. Static fields are not saved, so any other state needed to carry on the
+	 * simulation, such as the lists kept by a runner, should be passed as the attachment. This
+	 * method should be called after {@link #init(int, Calendar, boolean)}.
+	 * 
+	 * @param time the simulation time of the checkpoint
+	 * @param fileName the name of the checkpoint file
+	 * @param attachment the state to save with the checkpoint, may be null
+	 * @throws IllegalArgumentException if the time is negative or the file name is null
+	 */
+	public static void checkpointAt(double time, String fileName, Serializable attachment) {
+		getSimulation().checkpointAt(time, fileName, attachment);
+	}
+
+	/**
+	 * Records every event processed from now on in a binary trace file, which can be inspected
+	 * with {@link EventTraceReader}. The recording is cheap enough to be left on for long runs,
+	 * unlike the trace written by {@link Log}. The file is completed and closed when the simulation
+	 * finishes. This method should be called after {@link #init(int, Calendar, boolean)}.
+	 * 
+	 * @param fileName the name of the trace file, replaced if it exists
+	 * @throws IOException if the file cannot be created
+	 */
+	public static void recordEventTrace(String fileName) throws IOException {
+		getSimulation().recordEventTrace(fileName);
+	}
+
+	/**
+	 * Restores a simulation from a checkpoint written after a call to
+	 * {@link #checkpointAt(double, String, Serializable)}. This method replaces
+	 * {@link #init(int, Calendar, boolean)}: the entities are not created again and
+	 * {@link #startSimulation()} resumes the simulation from the time of the checkpoint, without
+	 * starting the entities again. The restored entities can be found with
+	 * {@link #getEntity(String)}. The restored simulation replaces the simulation of the current
+	 * thread and runs its entities sequentially until {@link #setParallelism(int)} is called again.
+	 * 
+	 * @param fileName the name of the checkpoint file
+	 * @return the attachment of the checkpoint, may be null
+	 * @throws IOException if the file cannot be read
+	 * @throws ClassNotFoundException if a class of the simulation cannot be found
+	 */
+	public static Serializable restore(String fileName) throws IOException, ClassNotFoundException {
+		Checkpoint checkpoint = Checkpoint.read(fileName);
+		Simulation simulation = checkpoint.getSimulation();
+		Log.printLine("Restoring the simulation at " + simulation.clock() + " from " + fileName);
+		if (bound && simulations.get() != null) {
+			simulations.set(simulation);
+		} else {
+			defaultSimulation = simulation;
+		}
+		return checkpoint.getAttachment();
 	}
 
 	/**
@@ -268,13 +448,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static Calendar getSimulationCalendar() {
-		// make a new copy
-		Calendar clone = calendar;
-		if (calendar != null) {
-			clone = (Calendar) calendar.clone();
-		}
-
-		return clone;
+		return getSimulation().getSimulationCalendar();
 	}
 
 	/**
@@ -285,7 +459,7 @@ public class CloudSim {
 	 * @post $result >= -1
 	 */
 	public static int getCloudInfoServiceEntityId() {
-		return cisId;
+		return getSimulation().getCloudInfoServiceEntityId();
 	}
 
 	/**
@@ -298,78 +472,24 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static List<Integer> getCloudResourceList() {
-		if (cis == null) {
-			return null;
-		}
-
-		return cis.getList();
+		return getSimulation().getCloudResourceList();
 	}
 
-	// ======== SIMULATION METHODS ===============//
-
-	/** The entities. */
-	private static List<SimEntity> entities;
-
-	/** The future event queue. */
-	protected static FutureQueue future;
-
-	/** The deferred event queue. */
-	protected static DeferredQueue deferred;
-
-	/** The simulation clock. */
-	private static double clock;
-
-	/** Flag for checking if the simulation is running. */
-	private static boolean running;
-
-	/** The entities by name. */
-	private static Map<String, SimEntity> entitiesByName;
-
-	// The predicates used in entity wait methods
-	/** The wait predicates. */
-	private static Map<Integer, Predicate> waitPredicates;
-
-	/** The paused. */
-	private static boolean paused = false;
-
-	/** The pause at. */
-	private static long pauseAt = -1;
-
-	/** The abrupt terminate. */
-	private static boolean abruptTerminate = false;
-
 	/**
 	 * Initialise the simulation for stand alone simulations. This function should be called at the
 	 * start of the simulation.
 	 */
 	protected static void initialize() {
-		Log.printLine("Initialising...");
-		entities = new ArrayList<SimEntity>();
-		entitiesByName = new LinkedHashMap<String, SimEntity>();
-		future = new FutureQueue();
-		deferred = new DeferredQueue();
-		waitPredicates = new HashMap<Integer, Predicate>();
-		clock = 0;
-		running = false;
+		getSimulation().initialize();
 	}
 
-	// The two standard predicates
-
-	/** A standard predicate that matches any event. */
-	public final static PredicateAny SIM_ANY = new PredicateAny();
-
-	/** A standard predicate that does not match any events. */
-	public final static PredicateNone SIM_NONE = new PredicateNone();
-
-	// Public access methods
-
 	/**
 	 * Get the current simulation time.
 	 * 
 	 * @return the simulation time
 	 */
 	public static double clock() {
-		return clock;
+		return getSimulation().clock();
 	}
 
 	/**
@@ -378,7 +498,7 @@ public class CloudSim {
 	 * @return The number of entities
 	 */
 	public static int getNumEntities() {
-		return entities.size();
+		return getSimulation().getNumEntities();
 	}
 
 	/**
@@ -388,7 +508,7 @@ public class CloudSim {
 	 * @return The entity, or if it could not be found
 	 */
 	public static SimEntity getEntity(int id) {
-		return entities.get(id);
+		return getSimulation().getEntity(id);
 	}
 
 	/**
@@ -398,7 +518,7 @@ public class CloudSim {
 	 * @return The entity
 	 */
 	public static SimEntity getEntity(String name) {
-		return entitiesByName.get(name);
+		return getSimulation().getEntity(name);
 	}
 
 	/**
@@ -408,12 +528,7 @@ public class CloudSim {
 	 * @return The entity's unique id number
 	 */
 	public static int getEntityId(String name) {
-		SimEntity obj = entitiesByName.get(name);
-		if (obj == null) {
-			return NOT_FOUND;
-		} else {
-			return obj.getId();
-		}
+		return getSimulation().getEntityId(name);
 	}
 
 	/**
@@ -425,13 +540,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static String getEntityName(int entityID) {
-		try {
-			return getEntity(entityID).getName();
-		} catch (IllegalArgumentException e) {
-			return null;
-		} catch (Exception e) {
-			return null;
-		}
+		return getSimulation().getEntityName(entityID);
 	}
 
 	/**
@@ -443,10 +552,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static String getEntityName(Integer entityID) {
-		if (entityID != null) {
-			return getEntityName(entityID.intValue());
-		}
-		return null;
+		return getSimulation().getEntityName(entityID);
 	}
 
 	/**
@@ -455,15 +561,9 @@ public class CloudSim {
 	 * @return the entity iterator
 	 */
 	public static List<SimEntity> getEntityList() {
-		// create a new list to prevent the user from changing
-		// the list of entities used by Simulation
-		List<SimEntity> list = new LinkedList<SimEntity>();
-		list.addAll(entities);
-		return list;
+		return getSimulation().getEntityList();
 	}
 
-	// Public update methods
-
 	/**
 	 * Add a new entity to the simulation. This is present for compatibility with existing
 	 * simulations since entities are automatically added to the simulation upon instantiation.
@@ -471,18 +571,7 @@ public class CloudSim {
 	 * @param e The new entity
 	 */
 	public static void addEntity(SimEntity e) {
-		SimEvent evt;
-		if (running) {
-			// Post an event to make this entity
-			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
-			future.addEvent(evt);
-		}
-		if (e.getId() == -1) { // Only add once!
-			int id = entities.size();
-			e.setId(id);
-			entities.add(e);
-			entitiesByName.put(e.getName(), e);
-		}
+		getSimulation().addEntity(e);
 	}
 
 	/**
@@ -492,12 +581,7 @@ public class CloudSim {
 	 * @param e The new entity
 	 */
 	protected static void addEntityDynamically(SimEntity e) {
-		if (e == null) {
-			throw new IllegalArgumentException("Adding null entity.");
-		} else {
-			printMessage("Adding: " + e.getName());
-		}
-		e.startEntity();
+		getSimulation().addEntityDynamically(e);
 	}
 
 	/**
@@ -507,58 +591,14 @@ public class CloudSim {
 	 * @return true, if successful otherwise
 	 */
 	public static boolean runClockTick() {
-		SimEntity ent;
-		boolean queue_empty;
-		
-		int entities_size = entities.size();
-
-		for (int i = 0; i < entities_size; i++) {
-			ent = entities.get(i);
-			if (ent.getState() == SimEntity.RUNNABLE) {
-				ent.run();
-			}
-		}
-				
-		// If there are more future events then deal with them
-		if (future.size() > 0) {
-			List<SimEvent> toRemove = new ArrayList<SimEvent>();
-			Iterator<SimEvent> fit = future.iterator();
-			queue_empty = false;
-			SimEvent first = fit.next();
-			processEvent(first);
-			future.remove(first);
-
-			fit = future.iterator();
-
-			// Check if next events are at same time...
-			boolean trymore = fit.hasNext();
-			while (trymore) {
-				SimEvent next = fit.next();
-				if (next.eventTime() == first.eventTime()) {
-					processEvent(next);
-					toRemove.add(next);
-					trymore = fit.hasNext();
-				} else {
-					trymore = false;
-				}
-			}
-
-			future.removeAll(toRemove);
-
-		} else {
-			queue_empty = true;
-			running = false;
-			printMessage("Simulation: No more future events");
-		}
-
-		return queue_empty;
+		return getSimulation().runClockTick();
 	}
 
 	/**
 	 * Internal method used to stop the simulation. This method should <b>not</b> be used directly.
 	 */
 	public static void runStop() {
-		printMessage("Simulation completed.");
+		getSimulation().runStop();
 	}
 
 	/**
@@ -568,9 +608,7 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void hold(int src, long delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		getSimulation().hold(src, delay);
 	}
 
 	/**
@@ -580,9 +618,59 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void pause(int src, double delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		getSimulation().pause(src, delay);
+	}
+
+	/**
+	 * Arms a timer of an entity, replacing its timer with the same tag if any.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @param delay the delay of the first event
+	 * @param period the period of the timer, 0 for a one-shot timer
+	 * @see SimEntity#schedulePeriodic(int, double)
+	 * @see SimEntity#scheduleCoalesced(int, double)
+	 */
+	public static void setTimer(int src, int tag, double delay, double period) {
+		getSimulation().setTimer(src, tag, delay, period);
+	}
+
+	/**
+	 * Cancels a timer of an entity and its pending event.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @return true, if the entity had a timer with that tag
+	 */
+	public static boolean cancelTimer(int src, int tag) {
+		return getSimulation().cancelTimer(src, tag);
+	}
+
+	/**
+	 * Suspends a periodic timer of an entity whose next events are known to be no-ops, until the
+	 * entity receives another event or until a given delay.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @param maxDelay the longest time to suspend the timer for, or
+	 *            {@link Double#POSITIVE_INFINITY}
+	 * @return true, if the entity has a periodic timer with that tag
+	 * @see SimEntity#suspendTimer(int, double)
+	 */
+	public static boolean suspendTimer(int src, int tag, double maxDelay) {
+		return getSimulation().suspendTimer(src, tag, maxDelay);
+	}
+
+	/**
+	 * Resumes a suspended timer of an entity at its first period boundary from the current time.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @return true, if the timer was suspended
+	 * @see SimEntity#resumeTimer(int)
+	 */
+	public static boolean resumeTimer(int src, int tag) {
+		return getSimulation().resumeTimer(src, tag);
 	}
 
 	/**
@@ -595,12 +683,7 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void send(int src, int dest, double delay, int tag, Object data) {
-		if (delay < 0) {
-			throw new IllegalArgumentException("Send delay can't be negative.");
-		}
-
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEvent(e);
+		getSimulation().send(src, dest, delay, tag, data);
 	}
 
 	/**
@@ -613,12 +696,7 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void sendFirst(int src, int dest, double delay, int tag, Object data) {
-		if (delay < 0) {
-			throw new IllegalArgumentException("Send delay can't be negative.");
-		}
-
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEventFirst(e);
+		getSimulation().sendFirst(src, dest, delay, tag, data);
 	}
 
 	/**
@@ -630,11 +708,7 @@ public class CloudSim {
 	 * @param p the p
 	 */
 	public static void wait(int src, Predicate p) {
-		entities.get(src).setState(SimEntity.WAITING);
-		if (p != SIM_ANY) {
-			// If a predicate has been used store it in order to check it
-			waitPredicates.put(src, p);
-		}
+		getSimulation().wait(src, p);
 	}
 
 	/**
@@ -645,16 +719,7 @@ public class CloudSim {
 	 * @return the int
 	 */
 	public static int waiting(int d, Predicate p) {
-		int count = 0;
-		SimEvent event;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if ((event.getDestination() == d) && (p.match(event))) {
-				count++;
-			}
-		}
-		return count;
+		return getSimulation().waiting(d, p);
 	}
 
 	/**
@@ -662,19 +727,10 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no deferred event matches
 	 */
 	public static SimEvent select(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				iterator.remove();
-				break;
-			}
-		}
-		return ev;
+		return getSimulation().select(src, p);
 	}
 
 	/**
@@ -682,18 +738,10 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no deferred event matches
 	 */
 	public static SimEvent findFirstDeferred(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				break;
-			}
-		}
-		return ev;
+		return getSimulation().findFirstDeferred(src, p);
 	}
 
 	/**
@@ -704,17 +752,7 @@ public class CloudSim {
 	 * @return the sim event
 	 */
 	public static SimEvent cancel(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-				break;
-			}
-		}
-
-		return ev;
+		return getSimulation().cancel(src, p);
 	}
 
 	/**
@@ -726,82 +764,7 @@ public class CloudSim {
 	 * @return true, if successful
 	 */
 	public static boolean cancelAll(int src, Predicate p) {
-		SimEvent ev = null;
-		int previousSize = future.size();
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-			}
-		}
-		return previousSize < future.size();
-	}
-
-	//
-	// Private internal methods
-	//
-
-	/**
-	 * Processes an event.
-	 * 
-	 * @param e the e
-	 */
-	private static void processEvent(SimEvent e) {
-		int dest, src;
-		SimEntity dest_ent;
-		// Update the system's clock
-		if (e.eventTime() < clock) {
-			throw new IllegalArgumentException("Past event detected.");
-		}
-		clock = e.eventTime();
-
-		// Ok now process it
-		switch (e.getType()) {
-			case SimEvent.ENULL:
-				throw new IllegalArgumentException("Event has a null type.");
-
-			case SimEvent.CREATE:
-				SimEntity newe = (SimEntity) e.getData();
-				addEntityDynamically(newe);
-				break;
-
-			case SimEvent.SEND:
-				// Check for matching wait
-				dest = e.getDestination();
-				if (dest < 0) {
-					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
-				} else {
-					int tag = e.getTag();
-					dest_ent = entities.get(dest);
-					if (dest_ent.getState() == SimEntity.WAITING) {
-						Integer destObj = Integer.valueOf(dest);
-						Predicate p = waitPredicates.get(destObj);
-						if ((p == null) || (tag == 9999) || (p.match(e))) {
-							dest_ent.setEventBuffer((SimEvent) e.clone());
-							dest_ent.setState(SimEntity.RUNNABLE);
-							waitPredicates.remove(destObj);
-						} else {
-							deferred.addEvent(e);
-						}
-					} else {
-						deferred.addEvent(e);
-					}
-				}
-				break;
-
-			case SimEvent.HOLD_DONE:
-				src = e.getSource();
-				if (src < 0) {
-					throw new IllegalArgumentException("Null entity holding.");
-				} else {
-					entities.get(src).setState(SimEntity.RUNNABLE);
-				}
-				break;
-
-			default:
-				break;
-		}
+		return getSimulation().cancelAll(src, p);
 	}
 
 	/**
@@ -809,13 +772,7 @@ public class CloudSim {
 	 * simulations.
 	 */
 	public static void runStart() {
-		running = true;
-		// Start all the entities
-		for (SimEntity ent : entities) {
-			ent.startEntity();
-		}
-
-		printMessage("Entities started.");
+		getSimulation().runStart();
 	}
 
 	/**
@@ -825,7 +782,7 @@ public class CloudSim {
 	 * @return if the simulation is still running, otherwise
 	 */
 	public static boolean running() {
-		return running;
+		return getSimulation().running();
 	}
 
 	/**
@@ -834,8 +791,7 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation() {
-		paused = true;
-		return paused;
+		return getSimulation().pauseSimulation();
 	}
 
 	/**
@@ -845,12 +801,18 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation(long time) {
-		if (time <= clock) {
-			return false;
-		} else {
-			pauseAt = time;
-		}
-		return true;
+		return getSimulation().pauseSimulation(time);
+	}
+
+	/**
+	 * This method is called if one wants to pause the simulation at a given time.
+	 * 
+	 * @param time the time at which the simulation has to be paused
+	 * @return true, if successful otherwise.
+	 * @see #runUntil(double)
+	 */
+	public static boolean pauseSimulation(double time) {
+		return getSimulation().pauseSimulation(time);
 	}
 
 	/**
@@ -859,13 +821,7 @@ public class CloudSim {
 	 * @return if the simulation has been restarted or or otherwise.
 	 */
 	public static boolean resumeSimulation() {
-		paused = false;
-
-		if (pauseAt <= clock) {
-			pauseAt = -1;
-		}
-
-		return !paused;
+		return getSimulation().resumeSimulation();
 	}
 
 	/**
@@ -875,43 +831,52 @@ public class CloudSim {
 	 * @return the double last clock value
 	 */
 	public static double run() {
-		if (!running) {
-			runStart();
-		}
-		while (true) {
-			if (runClockTick() || abruptTerminate) {
-				break;
-			}
-
-			// this block allows termination of simulation at a specific time
-			if (terminateAt > 0.0 && clock >= terminateAt) {
-				terminateSimulation();
-				clock = terminateAt;
-				break;
-			}
-
-			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-							.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
-				pauseSimulation();
-				clock = pauseAt;
-			}
-
-			while (paused) {
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
-		}
+		return getSimulation().run();
+	}
 
-		double clock = clock();
+	/**
+	 * Runs the simulation until the given time and returns. All the events up to that time are
+	 * delivered and the entities which receive them are run, then the clock is set to the given
+	 * time, so the caller can inspect the state of the simulation and send new events from there.
+	 * The simulation is started by the first call, and may be carried on by further calls, by
+	 * {@link #step(int)} or by {@link #startSimulation()}. It is finished once it has no more future
+	 * events, has been terminated or has reached its termination time.
+	 * <p>
+	 * Unlike {@link #pauseSimulation(double)}, this method does not need another thread to resume
+	 * the simulation, and pause requests are ignored by it.
+	 * 
+	 * @param time the time to run the simulation until
+	 * @return true if the simulation can be carried on, false if it has finished
+	 * @throws IllegalArgumentException if the time is before the current time
+	 */
+	public static boolean runUntil(double time) {
+		return getSimulation().runUntil(time);
+	}
 
-		finishSimulation();
-		runStop();
+	/**
+	 * Runs the simulation for a number of events and returns. The events are delivered one clock
+	 * tick at a time, i.e. all the events with the same time at once, until at least the given
+	 * number has been delivered, and the entities which receive them are run. The simulation is
+	 * started and finished as by {@link #runUntil(double)}.
+	 * 
+	 * @param events the number of events to deliver
+	 * @return true if the simulation can be carried on, false if it has finished
+	 * @throws IllegalArgumentException if the number of events is not positive
+	 */
+	public static boolean step(int events) {
+		return getSimulation().step(events);
+	}
 
-		return clock;
+	/**
+	 * Gets an iterator which runs the simulation one clock tick at a time. Each call to
+	 * {@link Iterator#next()} delivers the events of the next time, runs the entities which receive
+	 * them and returns that time. The iterator has no more elements once the simulation has
+	 * finished.
+	 * 
+	 * @return the iterator over the times of the clock ticks
+	 */
+	public static Iterator<Double> ticks() {
+		return getSimulation().ticks();
 	}
 
 	/**
@@ -919,48 +884,14 @@ public class CloudSim {
 	 * in user simulations.
 	 */
 	public static void finishSimulation() {
-		// Allow all entities to exit their body method
-		if (!abruptTerminate) {
-			for (SimEntity ent : entities) {
-				if (ent.getState() != SimEntity.FINISHED) {
-					ent.run();
-				}
-			}
-		}
-
-		for (SimEntity ent : entities) {
-			ent.shutdownEntity();
-		}
-
-		// reset all static variables
-		// Private data members
-		entities = null;
-		entitiesByName = null;
-		future = null;
-		deferred = null;
-		clock = 0L;
-		running = false;
-
-		waitPredicates = null;
-		paused = false;
-		pauseAt = -1;
-		abruptTerminate = false;
+		getSimulation().finishSimulation();
 	}
 
 	/**
 	 * Abruptally terminate.
 	 */
 	public static void abruptallyTerminate() {
-		abruptTerminate = true;
-	}
-
-	/**
-	 * Prints a message about the progress of the simulation.
-	 * 
-	 * @param message the message
-	 */
-	private static void printMessage(String message) {
-		Log.printLine(message);
+		getSimulation().abruptallyTerminate();
 	}
 
 	/**
@@ -969,7 +900,7 @@ public class CloudSim {
 	 * @return true, if is paused
 	 */
 	public static boolean isPaused() {
-		return paused;
+		return getSimulation().isPaused();
 	}
 
 }
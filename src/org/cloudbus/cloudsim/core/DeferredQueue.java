@@ -8,24 +8,42 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
+ * This class implements the deferred event queue used by {@link Simulation}. Each entity owns one
+ * of these queues, holding the events delivered to it which it has not processed yet. The events
+ * are stored in a circular array, ordered by time. Since events are delivered in time order, new
+ * events are normally appended at the tail in constant time; an event older than the last one is
+ * inserted at its sorted position instead.
  * 
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
  * @see org.cloudbus.cloudsim.core.SimEvent
  */
-public class DeferredQueue {
+public class DeferredQueue implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The events, from <tt>head</tt> onwards. */
+	private SimEvent[] elements = new SimEvent[8];
+
+	/** The position of the first event. */
+	private int head = 0;
+
+	/** The number of events. */
+	private int size = 0;
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
+	/** The number of structural modifications, to detect concurrent modifications. */
+	private int modCount = 0;
 
 	/** The max time. */
 	private double maxTime = -1;
@@ -37,27 +55,75 @@ public class DeferredQueue {
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
+		if (size == elements.length) {
+			grow();
+		}
+		modCount++;
+
 		// The event has to be inserted as the last of all events
 		// with the same event_time(). Yes, this matters.
 		double eventTime = newEvent.eventTime();
 		if (eventTime >= maxTime) {
-			list.add(newEvent);
+			elements[slot(size++)] = newEvent;
 			maxTime = eventTime;
 			return;
 		}
 
-		ListIterator<SimEvent> iterator = list.listIterator();
-		SimEvent event;
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if (event.eventTime() > eventTime) {
-				iterator.previous();
-				iterator.add(newEvent);
-				return;
+		int position = size;
+		while (position > 0 && get(position - 1).eventTime() > eventTime) {
+			position--;
+		}
+		for (int i = size; i > position; i--) {
+			elements[slot(i)] = elements[slot(i - 1)];
+		}
+		elements[slot(position)] = newEvent;
+		size++;
+	}
+
+	/**
+	 * Counts the events matching a predicate.
+	 * 
+	 * @param p the predicate
+	 * @return the number of matching events
+	 */
+	public int count(Predicate p) {
+		if (p instanceof PredicateAny) {
+			return size;
+		}
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (p.match(get(i))) {
+				count++;
 			}
 		}
+		return count;
+	}
 
-		list.add(newEvent);
+	/**
+	 * Finds the first event matching a predicate.
+	 * 
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent findFirst(Predicate p) {
+		int i = indexOf(p);
+		return i < 0 ? null : get(i);
+	}
+
+	/**
+	 * Removes the first event matching a predicate.
+	 * 
+	 * @param p the predicate
+	 * @return the removed event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent removeFirst(Predicate p) {
+		int i = indexOf(p);
+		if (i < 0) {
+			return null;
+		}
+		SimEvent event = get(i);
+		removeAt(i);
+		return event;
 	}
 
 	/**
@@ -66,7 +132,45 @@ public class DeferredQueue {
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		return new Iterator<SimEvent>() {
+
+			private int index = 0;
+
+			private int last = -1;
+
+			private int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				last = index++;
+				return get(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+				removeAt(last);
+				index = last;
+				last = -1;
+				expectedModCount = modCount;
+			}
+		};
 	}
 
 	/**
@@ -75,14 +179,94 @@ public class DeferredQueue {
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		Arrays.fill(elements, null);
+		head = 0;
+		size = 0;
+		maxTime = -1;
+		modCount++;
+	}
+
+	/**
+	 * Gets the position of the first event matching a predicate.
+	 * 
+	 * @param p the predicate
+	 * @return the position from the head, or -1 if no event matches
+	 */
+	private int indexOf(Predicate p) {
+		if (p instanceof PredicateAny) {
+			return size > 0 ? 0 : -1;
+		}
+		for (int i = 0; i < size; i++) {
+			if (p.match(get(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the event at a given position from the head.
+	 * 
+	 * @param i the position
+	 * @return the event
+	 */
+	private SimEvent get(int i) {
+		return elements[slot(i)];
+	}
+
+	/**
+	 * Removes the event at a given position from the head, shifting the shorter side of the queue.
+	 * 
+	 * @param i the position
+	 */
+	private void removeAt(int i) {
+		modCount++;
+		if (i < size / 2) {
+			for (int j = i; j > 0; j--) {
+				elements[slot(j)] = elements[slot(j - 1)];
+			}
+			elements[head] = null;
+			head = slot(1);
+		} else {
+			for (int j = i; j < size - 1; j++) {
+				elements[slot(j)] = elements[slot(j + 1)];
+			}
+			elements[slot(size - 1)] = null;
+		}
+		size--;
+		if (size == 0) {
+			head = 0;
+			maxTime = -1;
+		}
+	}
+
+	/**
+	 * Gets the array index of a given position from the head.
+	 * 
+	 * @param i the position
+	 * @return the array index
+	 */
+	private int slot(int i) {
+		return (head + i) & (elements.length - 1);
+	}
+
+	/**
+	 * Doubles the capacity of the array, moving the head to the start.
+	 */
+	private void grow() {
+		SimEvent[] newElements = new SimEvent[elements.length * 2];
+		for (int i = 0; i < size; i++) {
+			newElements[i] = get(i);
+		}
+		elements = newElements;
+		head = 0;
 	}
 
-}
\ No newline at end of file
+}
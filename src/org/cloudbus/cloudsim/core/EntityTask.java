@@ -0,0 +1,333 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * Runs an entity on a worker thread when {@link CloudSim} processes a clock tick in parallel. The
+ * changes the entity makes to the shared simulation state (the events it sends or cancels, the
+ * entities it creates) and the log messages it prints are buffered by the task instead of being
+ * applied at once. Once all the entities of the tick have been run, the buffered operations are
+ * applied in the order of the entity ids, which is the order of the sequential mode, so that the
+ * events get the same serial numbers. The events an entity cancels are looked up while it runs,
+ * among the events of the future queue and those it has buffered, so the cancelled events are
+ * returned as in the sequential mode. Only the state held by the simulation is protected this way;
+ * the state the entities share directly is not, see {@link SimEntity#isParallelizable()}.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim#setParallelism(int)
+ */
+class EntityTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The operation adding an event to the future queue. */
+	static final int ADD_EVENT = 0;
+
+	/** The operation adding an event to the future queue, ahead of the events with the same time. */
+	static final int ADD_EVENT_FIRST = 1;
+
+	/** The operation registering the predicate of a waiting entity. */
+	static final int WAIT = 2;
+
+	/** The operation adding an entity to the simulation. */
+	static final int ADD_ENTITY = 3;
+
+	/** The operation removing a given event from the future queue. */
+	static final int REMOVE_EVENT = 4;
+
+	/** The task run by the current thread. */
+	private static final ThreadLocal<EntityTask> current = new ThreadLocal<EntityTask>();
+
+	/** The simulation of the entity. */
+	private final Simulation simulation;
+
+	/** The entity. */
+	private final SimEntity entity;
+
+	/** The buffered operations. */
+	private int[] operations = new int[4];
+
+	/** The source entity ids of the buffered operations. */
+	private int[] sources = new int[4];
+
+	/** The arguments of the buffered operations: an event, a predicate or an entity. */
+	private Object[] arguments = new Object[4];
+
+	/** The number of buffered operations. */
+	private int size = 0;
+
+	/** The events removed by the buffered operations, or null if there are none. */
+	private Set<SimEvent> removed;
+
+	/**
+	 * The serial given to the next buffered event added to the future queue. It orders the event
+	 * after those of the queue until the event is added and gets its final serial.
+	 */
+	private long serial;
+
+	/** The serial given to the next buffered event added to the head of the future queue. */
+	private long firstSerial;
+
+	/** The log messages printed by the entity, or null if there are none. */
+	private ByteArrayOutputStream log;
+
+	/**
+	 * Creates a new task.
+	 *
+	 * @param simulation the simulation of the entity
+	 * @param entity the entity to run
+	 * @param future the future queue of the simulation
+	 */
+	EntityTask(Simulation simulation, SimEntity entity, FutureQueue future) {
+		this.simulation = simulation;
+		this.entity = entity;
+		serial = future.getSerial();
+		firstSerial = future.getFirstSerial();
+	}
+
+	/**
+	 * Gets the task run by the current thread.
+	 *
+	 * @return the task, or null if the current thread is not running an entity in parallel
+	 */
+	static EntityTask current() {
+		return current.get();
+	}
+
+	@Override
+	protected void compute() {
+		// the worker threads are not bound to the simulation of the entity
+		boolean bind = CloudSim.getSimulation() != simulation;
+		if (bind) {
+			CloudSim.setSimulation(simulation);
+		}
+		current.set(this);
+		try {
+			entity.run();
+		} finally {
+			current.remove();
+			if (bind) {
+				CloudSim.setSimulation(null);
+			}
+		}
+	}
+
+	/**
+	 * Buffers an operation.
+	 *
+	 * @param operation the operation
+	 * @param src the id of the entity performing the operation
+	 * @param argument the argument of the operation
+	 */
+	void buffer(int operation, int src, Object argument) {
+		if (size == operations.length) {
+			operations = Arrays.copyOf(operations, size * 2);
+			sources = Arrays.copyOf(sources, size * 2);
+			arguments = Arrays.copyOf(arguments, size * 2);
+		}
+		operations[size] = operation;
+		sources[size] = src;
+		arguments[size] = argument;
+		size++;
+
+		if (operation == ADD_EVENT) {
+			((SimEvent) argument).setSerial(serial++);
+		} else if (operation == ADD_EVENT_FIRST) {
+			((SimEvent) argument).setSerial(firstSerial++);
+		} else if (operation == REMOVE_EVENT) {
+			if (removed == null) {
+				removed = Collections.newSetFromMap(new IdentityHashMap<SimEvent, Boolean>());
+			}
+			removed.add((SimEvent) argument);
+		}
+	}
+
+	/**
+	 * Finds the events sent by the given entity that match a predicate and would be in the future
+	 * queue once the buffered operations are applied: those of the queue which the task does not
+	 * remove and those the task adds.
+	 *
+	 * @param future the future queue of the simulation
+	 * @param src the id of the source entity
+	 * @param p the predicate
+	 * @return the matching events
+	 */
+	List<SimEvent> findPending(FutureQueue future, int src, Predicate p) {
+		List<SimEvent> events = new ArrayList<SimEvent>();
+		future.findAll(src, p, events);
+		for (int i = 0; i < size; i++) {
+			if (operations[i] == ADD_EVENT || operations[i] == ADD_EVENT_FIRST) {
+				SimEvent event = (SimEvent) arguments[i];
+				if (event.getSource() == src && p.match(event)) {
+					events.add(event);
+				}
+			}
+		}
+		if (removed != null) {
+			Iterator<SimEvent> iterator = events.iterator();
+			while (iterator.hasNext()) {
+				if (removed.contains(iterator.next())) {
+					iterator.remove();
+				}
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * Gets the number of buffered operations.
+	 *
+	 * @return the number of operations
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets a buffered operation.
+	 *
+	 * @param i the position of the operation
+	 * @return the operation
+	 */
+	int getOperation(int i) {
+		return operations[i];
+	}
+
+	/**
+	 * Gets the source entity id of a buffered operation.
+	 *
+	 * @param i the position of the operation
+	 * @return the source entity id
+	 */
+	int getSource(int i) {
+		return sources[i];
+	}
+
+	/**
+	 * Gets the argument of a buffered operation.
+	 *
+	 * @param i the position of the operation
+	 * @return the argument
+	 */
+	Object getArgument(int i) {
+		return arguments[i];
+	}
+
+	/**
+	 * Writes the log messages printed by the entity.
+	 *
+	 * @param output the log output
+	 * @throws IOException if the messages cannot be written
+	 */
+	void flushLog(OutputStream output) throws IOException {
+		if (log != null) {
+			log.writeTo(output);
+		}
+	}
+
+	/**
+	 * Gets the buffer of the log messages printed by the entity.
+	 *
+	 * @return the buffer
+	 */
+	private ByteArrayOutputStream getLog() {
+		if (log == null) {
+			log = new ByteArrayOutputStream();
+		}
+		return log;
+	}
+
+	/**
+	 * The log output used once entities have been run in parallel. The messages printed by an
+	 * entity run in parallel are written to the buffer of its task; the others go to the original
+	 * output. The output is installed in {@link Log} once and left in place, rather than swapped for
+	 * each tick, since {@link Log} is shared by all the simulations run in the process.
+	 */
+	static class LogOutput extends OutputStream {
+
+		/**
+		 * Installs the log output in {@link Log}, unless it is already installed.
+		 *
+		 * @return the installed log output
+		 */
+		static synchronized LogOutput install() {
+			OutputStream output = Log.getOutput();
+			if (output instanceof LogOutput) {
+				return (LogOutput) output;
+			}
+			LogOutput logOutput = new LogOutput(output);
+			Log.setOutput(logOutput);
+			return logOutput;
+		}
+
+		/** The original output. */
+		private final OutputStream output;
+
+		/**
+		 * Creates a new log output.
+		 *
+		 * @param output the original output
+		 */
+		LogOutput(OutputStream output) {
+			this.output = output;
+		}
+
+		/**
+		 * Gets the original output.
+		 *
+		 * @return the original output
+		 */
+		OutputStream getOutput() {
+			return output;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			EntityTask task = current();
+			if (task != null) {
+				task.getLog().write(b);
+			} else {
+				output.write(b);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			EntityTask task = current();
+			if (task != null) {
+				task.getLog().write(b, off, len);
+			} else {
+				output.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (current() == null) {
+				output.flush();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,399 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.Log;
+
+/**
+ * Collects statistics about the events handled by the entities of a simulation, by entity and by
+ * tag: the number of events, the time they stayed in the deferred queue of the entity and the
+ * wall-clock time spent in {@link SimEntity#processEvent(SimEvent)}. It shows which kinds of events
+ * the running time of a simulation goes to.
+ * <p>
+ * The statistics of an entity are only updated by the thread running it, so they are kept without
+ * locking even when the entities are run in parallel. They should be read once the simulation has
+ * finished, or between the steps of a simulation driven with {@link CloudSim#runUntil(double)}.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim#setProfiling(boolean)
+ */
+public class EventProfiler {
+
+	/** The entity or the tag given to the queries to aggregate over all of them. */
+	public static final int ANY = Integer.MIN_VALUE;
+
+	/**
+	 * The number of buckets of the latency histograms. The bucket <tt>i</tt> counts the events
+	 * handled in <tt>[2^i, 2^(i+1))</tt> nanoseconds, the first one also counts those handled in
+	 * less than a nanosecond and the last one those handled in more.
+	 */
+	public static final int LATENCY_BUCKETS = 40;
+
+	/** The names of the tags defined in {@link CloudSimTags}. */
+	private static Map<Integer, String> tagNames;
+
+	/** The simulation. */
+	private final Simulation simulation;
+
+	/** The statistics of the entities, by id. */
+	private final List<EntityProfile> entities;
+
+	/**
+	 * Creates a new profiler.
+	 *
+	 * @param simulation the simulation profiled
+	 */
+	EventProfiler(Simulation simulation) {
+		this.simulation = simulation;
+		entities = new ArrayList<EntityProfile>();
+	}
+
+	/**
+	 * Starts collecting the statistics of an entity.
+	 *
+	 * @param entity the entity, which has been given its id
+	 */
+	void attach(SimEntity entity) {
+		int id = entity.getId();
+		while (entities.size() <= id) {
+			entities.add(null);
+		}
+		EntityProfile profile = entities.get(id);
+		if (profile == null) {
+			profile = new EntityProfile(simulation, entity.getName());
+			entities.set(id, profile);
+		}
+		entity.setProfile(profile);
+	}
+
+	/**
+	 * Gets the number of events handled.
+	 *
+	 * @param entity the id of the entity, or {@link #ANY}
+	 * @param tag the tag of the events, or {@link #ANY}
+	 * @return the number of events
+	 */
+	public long getCount(int entity, int tag) {
+		return aggregate(entity, tag).count;
+	}
+
+	/**
+	 * Gets the total time the events stayed in the deferred queue of the entity, from their time to
+	 * the time they were handled.
+	 *
+	 * @param entity the id of the entity, or {@link #ANY}
+	 * @param tag the tag of the events, or {@link #ANY}
+	 * @return the total time, in simulation time units
+	 */
+	public double getTotalResidency(int entity, int tag) {
+		return aggregate(entity, tag).residency;
+	}
+
+	/**
+	 * Gets the longest time an event stayed in the deferred queue of the entity.
+	 *
+	 * @param entity the id of the entity, or {@link #ANY}
+	 * @param tag the tag of the events, or {@link #ANY}
+	 * @return the longest time, in simulation time units
+	 */
+	public double getMaxResidency(int entity, int tag) {
+		return aggregate(entity, tag).maxResidency;
+	}
+
+	/**
+	 * Gets the total wall-clock time spent handling the events.
+	 *
+	 * @param entity the id of the entity, or {@link #ANY}
+	 * @param tag the tag of the events, or {@link #ANY}
+	 * @return the total time, in nanoseconds
+	 */
+	public long getTotalLatency(int entity, int tag) {
+		return aggregate(entity, tag).latency;
+	}
+
+	/**
+	 * Gets the histogram of the wall-clock time spent handling each event.
+	 *
+	 * @param entity the id of the entity, or {@link #ANY}
+	 * @param tag the tag of the events, or {@link #ANY}
+	 * @return the number of events of each of the {@link #LATENCY_BUCKETS} buckets
+	 */
+	public long[] getLatencyHistogram(int entity, int tag) {
+		return aggregate(entity, tag).histogram.clone();
+	}
+
+	/**
+	 * Gets the tags of the events handled.
+	 *
+	 * @param entity the id of the entity, or {@link #ANY}
+	 * @return the tags, in increasing order
+	 */
+	public int[] getTags(int entity) {
+		List<TagProfile> profiles = new ArrayList<TagProfile>();
+		for (int id = 0; id < entities.size(); id++) {
+			if ((entity == ANY || entity == id) && entities.get(id) != null) {
+				entities.get(id).tags.values(profiles);
+			}
+		}
+		int[] tags = new int[profiles.size()];
+		for (int i = 0; i < tags.length; i++) {
+			tags[i] = profiles.get(i).tag;
+		}
+		Arrays.sort(tags);
+		int count = 0;
+		for (int i = 0; i < tags.length; i++) {
+			if (count == 0 || tags[count - 1] != tags[i]) {
+				tags[count++] = tags[i];
+			}
+		}
+		return Arrays.copyOf(tags, count);
+	}
+
+	/**
+	 * Gets the ids of the entities which have handled events.
+	 *
+	 * @return the ids, in increasing order
+	 */
+	public int[] getEntities() {
+		int[] ids = new int[entities.size()];
+		int count = 0;
+		for (int id = 0; id < entities.size(); id++) {
+			if (entities.get(id) != null && entities.get(id).tags.size() > 0) {
+				ids[count++] = id;
+			}
+		}
+		return Arrays.copyOf(ids, count);
+	}
+
+	/**
+	 * Gets the name of an entity profiled.
+	 *
+	 * @param entity the id of the entity
+	 * @return the name, or null if the entity has not been profiled
+	 */
+	public String getEntityName(int entity) {
+		if (entity < 0 || entity >= entities.size() || entities.get(entity) == null) {
+			return null;
+		}
+		return entities.get(entity).name;
+	}
+
+	/**
+	 * Prints the statistics by tag, then by entity and tag.
+	 */
+	public void print() {
+		Log.printLine("Event profile: tag, entity, events, total residency, max residency, total latency (ms), mean latency (us)");
+		for (int tag : getTags(ANY)) {
+			printLine(ANY, tag);
+		}
+		for (int entity : getEntities()) {
+			for (int tag : getTags(entity)) {
+				printLine(entity, tag);
+			}
+		}
+	}
+
+	/**
+	 * Prints the statistics of an entity and a tag.
+	 *
+	 * @param entity the id of the entity, or {@link #ANY}
+	 * @param tag the tag
+	 */
+	private void printLine(int entity, int tag) {
+		TagProfile profile = aggregate(entity, tag);
+		Log.formatLine("%s\t%s\t%d\t%.2f\t%.2f\t%.3f\t%.3f", getTagName(tag),
+				entity == ANY ? "*" : getEntityName(entity), profile.count, profile.residency,
+				profile.maxResidency, profile.latency / 1e6, profile.latency / 1e3 / profile.count);
+	}
+
+	/**
+	 * Gets the statistics of the events matching an entity and a tag.
+	 *
+	 * @param entity the id of the entity, or {@link #ANY}
+	 * @param tag the tag of the events, or {@link #ANY}
+	 * @return the statistics, which should not be modified
+	 */
+	private TagProfile aggregate(int entity, int tag) {
+		if (entity != ANY && tag != ANY) {
+			TagProfile profile = null;
+			if (entity >= 0 && entity < entities.size() && entities.get(entity) != null) {
+				profile = entities.get(entity).tags.get(tag);
+			}
+			return profile == null ? new TagProfile(tag) : profile;
+		}
+		TagProfile total = new TagProfile(tag);
+		List<TagProfile> profiles = new ArrayList<TagProfile>();
+		for (int id = 0; id < entities.size(); id++) {
+			if ((entity == ANY || entity == id) && entities.get(id) != null) {
+				entities.get(id).tags.values(profiles);
+			}
+		}
+		for (TagProfile profile : profiles) {
+			if (tag == ANY || tag == profile.tag) {
+				total.add(profile);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the name of a tag.
+	 *
+	 * @param tag the tag
+	 * @return the name of the constant of {@link CloudSimTags} with that value, or the value
+	 */
+	public static synchronized String getTagName(int tag) {
+		if (tagNames == null) {
+			tagNames = new HashMap<Integer, String>();
+			for (Field field : CloudSimTags.class.getFields()) {
+				String name = field.getName();
+				if (field.getType() != int.class || !Modifier.isStatic(field.getModifiers())
+						|| name.equals("TRUE") || name.equals("FALSE") || name.equals("DEFAULT_BAUD_RATE")) {
+					continue;
+				}
+				try {
+					int value = field.getInt(null);
+					String other = tagNames.get(value);
+					tagNames.put(value, other == null ? name : other + "/" + name);
+				} catch (IllegalAccessException e) {
+					// only the public fields are listed
+				}
+			}
+		}
+		String name = tagNames.get(tag);
+		return name == null ? String.valueOf(tag) : name;
+	}
+
+	/**
+	 * The statistics of the events handled by an entity.
+	 */
+	static class EntityProfile {
+
+		/** The simulation. */
+		private final Simulation simulation;
+
+		/** The name of the entity. */
+		private final String name;
+
+		/** The statistics by tag. */
+		private final IntMap<TagProfile> tags;
+
+		/** The statistics of the tag of the last event, which is often the same. */
+		private TagProfile last;
+
+		/**
+		 * Creates the statistics of an entity.
+		 *
+		 * @param simulation the simulation
+		 * @param name the name of the entity
+		 */
+		EntityProfile(Simulation simulation, String name) {
+			this.simulation = simulation;
+			this.name = name;
+			tags = new IntMap<TagProfile>();
+		}
+
+		/**
+		 * Gets the current simulation time.
+		 *
+		 * @return the time the events are handled at
+		 */
+		double clock() {
+			return simulation.clock();
+		}
+
+		/**
+		 * Records an event handled by the entity.
+		 *
+		 * @param ev the event
+		 * @param nanos the wall-clock time spent handling it
+		 */
+		void record(SimEvent ev, long nanos) {
+			int tag = ev.getTag();
+			TagProfile profile = last;
+			if (profile == null || profile.tag != tag) {
+				profile = tags.get(tag);
+				if (profile == null) {
+					profile = new TagProfile(tag);
+					tags.put(tag, profile);
+				}
+				last = profile;
+			}
+			profile.count++;
+			double residency = ev.endWaitingTime() - ev.eventTime();
+			profile.residency += residency;
+			if (residency > profile.maxResidency) {
+				profile.maxResidency = residency;
+			}
+			profile.latency += nanos;
+			int bucket = 63 - Long.numberOfLeadingZeros(nanos);
+			profile.histogram[bucket < 0 ? 0 : bucket < LATENCY_BUCKETS ? bucket : LATENCY_BUCKETS - 1]++;
+		}
+
+	}
+
+	/**
+	 * The statistics of the events with a tag.
+	 */
+	private static class TagProfile {
+
+		/** The tag. */
+		private final int tag;
+
+		/** The number of events. */
+		private long count;
+
+		/** The total time the events stayed in the deferred queue. */
+		private double residency;
+
+		/** The longest time an event stayed in the deferred queue. */
+		private double maxResidency;
+
+		/** The total wall-clock time spent handling the events, in nanoseconds. */
+		private long latency;
+
+		/** The histogram of the wall-clock time spent handling each event. */
+		private final long[] histogram;
+
+		/**
+		 * Creates empty statistics.
+		 *
+		 * @param tag the tag
+		 */
+		TagProfile(int tag) {
+			this.tag = tag;
+			histogram = new long[LATENCY_BUCKETS];
+		}
+
+		/**
+		 * Adds other statistics to these ones.
+		 *
+		 * @param other the other statistics
+		 */
+		void add(TagProfile other) {
+			count += other.count;
+			residency += other.residency;
+			maxResidency = Math.max(maxResidency, other.maxResidency);
+			latency += other.latency;
+			for (int i = 0; i < LATENCY_BUCKETS; i++) {
+				histogram[i] += other.histogram[i];
+			}
+		}
+
+	}
+
+}
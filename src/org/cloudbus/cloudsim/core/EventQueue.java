@@ -0,0 +1,81 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * The storage strategy behind the {@link FutureQueue}. Implementations keep the pending events
+ * ordered by event time and, for events with the same time, by their serial number, which is the
+ * order defined by {@link SimEvent#compareTo(SimEvent)}. The serial numbers are assigned by the
+ * {@link FutureQueue} before an event is handed to the implementation, so two different events in
+ * the queue never compare as equal.
+ * <p>
+ * A custom implementation can be passed to
+ * {@link CloudSim#init(int, java.util.Calendar, boolean, EventQueue)}.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see FutureQueue
+ * @see HeapEventQueue
+ * @see CalendarEventQueue
+ */
+public interface EventQueue extends Iterable<SimEvent>, Serializable {
+
+	/**
+	 * Adds an event to the queue.
+	 *
+	 * @param event the event, with its serial number already set
+	 */
+	void add(SimEvent event);
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent peek();
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent poll();
+
+	/**
+	 * Removes the given event from the queue.
+	 *
+	 * @param event the event
+	 * @return true, if the event was in the queue
+	 */
+	boolean remove(SimEvent event);
+
+	/**
+	 * Returns the number of events in the queue.
+	 *
+	 * @return the size
+	 */
+	int size();
+
+	/**
+	 * Removes all the events from the queue.
+	 */
+	void clear();
+
+	/**
+	 * Returns an iterator over the events in the queue. The iteration order is not specified and
+	 * the iterator does not support removal; use {@link #remove(SimEvent)} instead.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	Iterator<SimEvent> iterator();
+
+}
@@ -0,0 +1,359 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads a trace file written by a simulation after a call to
+ * {@link CloudSim#recordEventTrace(String)}. The records are read from the file mapped in memory,
+ * so large traces can be inspected without loading them. Besides giving access to each record in
+ * the order the events were processed, the reader reconstructs the timeline of an entity and the
+ * histogram of the event rate over the simulation time.
+ * <p>
+ * The {@link #main(String[])} method prints a summary of a trace from the command line.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class EventTraceReader {
+
+	/** The number of records of a mapped segment. */
+	private static final int SEGMENT_RECORDS = 1 << 20;
+
+	/** The mapped segments of the records. */
+	private final MappedByteBuffer[] segments;
+
+	/** The number of records. */
+	private final long size;
+
+	/** The names of the entities, by id. */
+	private final String[] entityNames;
+
+	/** The names of the classes of the event data, by id minus one. */
+	private final String[] dataTypeNames;
+
+	/**
+	 * Opens a trace file.
+	 *
+	 * @param fileName the name of the file
+	 * @throws IOException if the file cannot be read or is not a complete trace
+	 */
+	public EventTraceReader(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			if (file.length() < EventTraceWriter.HEADER_SIZE || file.readInt() != EventTraceWriter.MAGIC) {
+				throw new IOException(fileName + " is not a complete event trace");
+			}
+			int version = file.readInt();
+			if (version != EventTraceWriter.VERSION) {
+				throw new IOException("The version " + version + " of the event trace " + fileName
+						+ " is not supported");
+			}
+			size = file.readLong();
+			long tables = file.readLong();
+			if (file.readInt() != EventTraceWriter.RECORD_SIZE
+					|| tables != EventTraceWriter.HEADER_SIZE + size * EventTraceWriter.RECORD_SIZE) {
+				throw new IOException(fileName + " is not a complete event trace");
+			}
+
+			file.seek(tables);
+			entityNames = new String[file.readInt()];
+			for (int i = 0; i < entityNames.length; i++) {
+				entityNames[i] = file.readUTF();
+			}
+			dataTypeNames = new String[file.readInt()];
+			for (int i = 0; i < dataTypeNames.length; i++) {
+				dataTypeNames[i] = file.readUTF();
+			}
+
+			FileChannel channel = file.getChannel();
+			segments = new MappedByteBuffer[(int) ((size + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS)];
+			for (int i = 0; i < segments.length; i++) {
+				long first = (long) i * SEGMENT_RECORDS;
+				long records = Math.min(SEGMENT_RECORDS, size - first);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, EventTraceWriter.HEADER_SIZE
+						+ first * EventTraceWriter.RECORD_SIZE, records * EventTraceWriter.RECORD_SIZE);
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Gets the number of records.
+	 *
+	 * @return the number of events recorded
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Gets the time of an event.
+	 *
+	 * @param record the index of the record
+	 * @return the time the event was processed at
+	 */
+	public double getTime(long record) {
+		return segment(record).getDouble(offset(record));
+	}
+
+	/**
+	 * Gets the serial number of an event.
+	 *
+	 * @param record the index of the record
+	 * @return the serial number
+	 */
+	public long getSerial(long record) {
+		return segment(record).getLong(offset(record) + 8);
+	}
+
+	/**
+	 * Gets the source of an event.
+	 *
+	 * @param record the index of the record
+	 * @return the id of the entity which sent the event
+	 */
+	public int getSource(long record) {
+		return segment(record).getInt(offset(record) + 16);
+	}
+
+	/**
+	 * Gets the destination of an event.
+	 *
+	 * @param record the index of the record
+	 * @return the id of the entity the event was sent to
+	 */
+	public int getDestination(long record) {
+		return segment(record).getInt(offset(record) + 20);
+	}
+
+	/**
+	 * Gets the tag of an event.
+	 *
+	 * @param record the index of the record
+	 * @return the tag
+	 */
+	public int getTag(long record) {
+		return segment(record).getInt(offset(record) + 24);
+	}
+
+	/**
+	 * Gets the type of an event.
+	 *
+	 * @param record the index of the record
+	 * @return the type, e.g. {@link SimEvent#SEND}
+	 */
+	public int getType(long record) {
+		return segment(record).getShort(offset(record) + 28);
+	}
+
+	/**
+	 * Gets the class of the data of an event.
+	 *
+	 * @param record the index of the record
+	 * @return the name of the class, or null if the event had no data
+	 */
+	public String getDataType(long record) {
+		int id = segment(record).getShort(offset(record) + 30) & 0xFFFF;
+		return id == 0 ? null : dataTypeNames[id - 1];
+	}
+
+	/**
+	 * Gets the number of entities of the simulation.
+	 *
+	 * @return the number of entities when the trace was closed
+	 */
+	public int getNumEntities() {
+		return entityNames.length;
+	}
+
+	/**
+	 * Gets the name of an entity.
+	 *
+	 * @param id the id of the entity
+	 * @return the name, or null if it is not known
+	 */
+	public String getEntityName(int id) {
+		if (id < 0 || id >= entityNames.length) {
+			return null;
+		}
+		return entityNames[id];
+	}
+
+	/**
+	 * Gets the timeline of an entity: the events it was sent and the end of its holds, in the order
+	 * they were processed.
+	 *
+	 * @param entity the id of the entity
+	 * @return the indexes of the records
+	 */
+	public long[] getTimeline(int entity) {
+		long[] timeline = new long[16];
+		int count = 0;
+		for (long i = 0; i < size; i++) {
+			if (involves(i, entity)) {
+				if (count == timeline.length) {
+					timeline = Arrays.copyOf(timeline, count * 2);
+				}
+				timeline[count++] = i;
+			}
+		}
+		return Arrays.copyOf(timeline, count);
+	}
+
+	/**
+	 * Gets the histogram of the event rate: the number of events processed in each interval of
+	 * simulation time, starting from 0.
+	 *
+	 * @param interval the length of the intervals
+	 * @return the number of events of each interval
+	 * @throws IllegalArgumentException if the interval is not positive
+	 */
+	public long[] getRateHistogram(double interval) {
+		return getRateHistogram(-1, interval);
+	}
+
+	/**
+	 * Gets the histogram of the event rate of an entity: the number of events of its timeline in
+	 * each interval of simulation time, starting from 0.
+	 *
+	 * @param entity the id of the entity, or -1 for all the events
+	 * @param interval the length of the intervals
+	 * @return the number of events of each interval
+	 * @throws IllegalArgumentException if the interval is not positive
+	 * @see #getTimeline(int)
+	 */
+	public long[] getRateHistogram(int entity, double interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("The interval should be positive, but is:" + interval);
+		}
+		if (size == 0) {
+			return new long[0];
+		}
+		long[] histogram = new long[(int) (getTime(size - 1) / interval) + 1];
+		for (long i = 0; i < size; i++) {
+			if (entity < 0 || involves(i, entity)) {
+				histogram[(int) (getTime(i) / interval)]++;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Checks if an event belongs to the timeline of an entity.
+	 *
+	 * @param record the index of the record
+	 * @param entity the id of the entity
+	 * @return true, if the event was sent to the entity or ended its hold
+	 */
+	private boolean involves(long record, int entity) {
+		if (getType(record) == SimEvent.HOLD_DONE) {
+			return getSource(record) == entity;
+		}
+		return getDestination(record) == entity;
+	}
+
+	/**
+	 * Gets the segment of a record.
+	 *
+	 * @param record the index of the record
+	 * @return the mapped segment
+	 */
+	private MappedByteBuffer segment(long record) {
+		if (record < 0 || record >= size) {
+			throw new IndexOutOfBoundsException("Record " + record + " of " + size);
+		}
+		return segments[(int) (record / SEGMENT_RECORDS)];
+	}
+
+	/**
+	 * Gets the offset of a record in its segment.
+	 *
+	 * @param record the index of the record
+	 * @return the offset, in bytes
+	 */
+	private static int offset(long record) {
+		return (int) (record % SEGMENT_RECORDS) * EventTraceWriter.RECORD_SIZE;
+	}
+
+	/**
+	 * Prints a summary of a trace: the number of events of each entity and the histogram of the
+	 * event rate. If an entity is given, its timeline is printed instead.
+	 * <p>
+	 * Usage: <tt>EventTraceReader file [interval [entity]]</tt>, where the interval of the
+	 * histogram defaults to 1 and the entity is given by its name or id.
+	 *
+	 * @param args the command line arguments
+	 * @throws IOException if the trace cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: EventTraceReader file [interval [entity]]");
+			System.exit(1);
+		}
+		EventTraceReader trace = new EventTraceReader(args[0]);
+		double interval = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+		System.out.println(trace.size() + " events");
+
+		if (args.length > 2) {
+			int entity = -1;
+			for (int i = 0; i < trace.getNumEntities(); i++) {
+				if (trace.getEntityName(i).equals(args[2])) {
+					entity = i;
+				}
+			}
+			if (entity < 0) {
+				entity = Integer.parseInt(args[2]);
+			}
+			System.out.println("Timeline of " + trace.getEntityName(entity) + " (#" + entity + ")");
+			for (long i : trace.getTimeline(entity)) {
+				String data = trace.getDataType(i);
+				System.out.println(trace.getTime(i) + "\t#" + trace.getSerial(i) + "\tfrom "
+						+ trace.getEntityName(trace.getSource(i)) + "\ttype " + trace.getType(i) + "\ttag "
+						+ trace.getTag(i) + (data == null ? "" : "\t" + data));
+			}
+			printHistogram(trace.getRateHistogram(entity, interval), interval);
+			return;
+		}
+
+		long[] received = new long[trace.getNumEntities()];
+		for (long i = 0; i < trace.size(); i++) {
+			int entity = trace.getType(i) == SimEvent.HOLD_DONE ? trace.getSource(i) : trace.getDestination(i);
+			if (entity >= 0 && entity < received.length) {
+				received[entity]++;
+			}
+		}
+		System.out.println("Events by entity");
+		for (int i = 0; i < received.length; i++) {
+			System.out.println(i + "\t" + trace.getEntityName(i) + "\t" + received[i]);
+		}
+		printHistogram(trace.getRateHistogram(interval), interval);
+	}
+
+	/**
+	 * Prints a histogram of the event rate.
+	 *
+	 * @param histogram the number of events of each interval
+	 * @param interval the length of the intervals
+	 */
+	private static void printHistogram(long[] histogram, double interval) {
+		System.out.println("Events by interval of " + interval);
+		for (int i = 0; i < histogram.length; i++) {
+			if (histogram[i] > 0) {
+				System.out.println(i * interval + "\t" + histogram[i]);
+			}
+		}
+	}
+
+}
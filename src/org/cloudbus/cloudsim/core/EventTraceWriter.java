@@ -0,0 +1,269 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.Log;
+
+/**
+ * Records the events processed by a simulation in a binary trace file, which can be read back with
+ * {@link EventTraceReader}. Every event is appended as a fixed-width record to a segment of the
+ * file mapped in memory, so recording an event costs a few stores and no system call or
+ * allocation. The records are only written by the thread running the simulation, so no locking is
+ * needed.
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes: the magic number, the version, the
+ * number of records, the offset of the tables and the size of a record. The records of
+ * {@link #RECORD_SIZE} bytes follow: the time, the serial number, the source and destination
+ * entity ids, the tag, the event type and the id of the class of the data. The tables written when
+ * the trace is closed give the names of the entities and of the data classes.
+ * <p>
+ * The file is truncated after the tables once the segments have been unmapped, which can only be
+ * done through internal JDK classes. Where it cannot, the file keeps the unused end of its last
+ * segment, which the reader skips.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim#recordEventTrace(String)
+ */
+class EventTraceWriter {
+
+	/** The magic number of trace files, "CSTR". */
+	static final int MAGIC = 0x43535452;
+
+	/** The version of the file format. */
+	static final int VERSION = 1;
+
+	/** The size of the header, in bytes. */
+	static final int HEADER_SIZE = 32;
+
+	/** The size of a record, in bytes. */
+	static final int RECORD_SIZE = 32;
+
+	/** The number of records of a mapped segment. */
+	private static final int SEGMENT_RECORDS = 1 << 20;
+
+	/** The name of the file. */
+	private final String fileName;
+
+	/** The file. */
+	private final RandomAccessFile file;
+
+	/** The mapped segment the next record is written to, or null if the trace is closed. */
+	private MappedByteBuffer segment;
+
+	/** Whether the trace is closed. */
+	private boolean closed;
+
+	/** Whether all the segments released so far have been unmapped. */
+	private boolean unmapped = true;
+
+	/** The offset of the next segment in the file. */
+	private long nextSegment;
+
+	/** The number of records. */
+	private long count;
+
+	/** The ids of the classes of the event data. */
+	private final Map<Class<?>, Integer> dataTypes;
+
+	/** The names of the classes of the event data, by id minus one. */
+	private final List<String> dataTypeNames;
+
+	/** The class of the data of the last recorded event. */
+	private Class<?> lastDataType;
+
+	/** The id of {@link #lastDataType}. */
+	private int lastDataTypeId;
+
+	/**
+	 * Creates a new trace file, replacing any existing one.
+	 *
+	 * @param fileName the name of the file
+	 * @throws IOException if the file cannot be created
+	 */
+	EventTraceWriter(String fileName) throws IOException {
+		this.fileName = fileName;
+		file = new RandomAccessFile(fileName, "rw");
+		file.setLength(0);
+		dataTypes = new HashMap<Class<?>, Integer>();
+		dataTypeNames = new ArrayList<String>();
+		count = 0;
+		nextSegment = HEADER_SIZE;
+		mapNextSegment();
+	}
+
+	/**
+	 * Appends an event to the trace.
+	 *
+	 * @param e the event
+	 */
+	void record(SimEvent e) {
+		if (!segment.hasRemaining()) {
+			try {
+				mapNextSegment();
+			} catch (IOException ex) {
+				Log.printLine("EventTrace: The trace " + fileName + " could not be extended, recording stopped");
+				Log.printLine(ex.getMessage());
+				close(null);
+				return;
+			}
+		}
+		segment.putDouble(e.eventTime());
+		segment.putLong(e.getSerial());
+		segment.putInt(e.getSource());
+		segment.putInt(e.getDestination());
+		segment.putInt(e.getTag());
+		segment.putShort((short) e.getType());
+		segment.putShort((short) getDataTypeId(e.getData()));
+		count++;
+	}
+
+	/**
+	 * Checks if the trace is closed.
+	 *
+	 * @return true, if no more events are recorded
+	 */
+	boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Writes the header and the tables and closes the file.
+	 *
+	 * @param entities the entities of the simulation, or null if their names are not known
+	 */
+	void close(List<SimEntity> entities) {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		releaseSegment();
+		try {
+			long tables = HEADER_SIZE + count * RECORD_SIZE;
+			file.seek(tables);
+			if (entities == null) {
+				file.writeInt(0);
+			} else {
+				file.writeInt(entities.size());
+				for (SimEntity entity : entities) {
+					file.writeUTF(entity.getName());
+				}
+			}
+			file.writeInt(dataTypeNames.size());
+			for (String name : dataTypeNames) {
+				file.writeUTF(name);
+			}
+			if (unmapped) {
+				// a mapped file cannot be truncated on some platforms
+				file.setLength(file.getFilePointer());
+			}
+
+			file.seek(0);
+			file.writeInt(MAGIC);
+			file.writeInt(VERSION);
+			file.writeLong(count);
+			file.writeLong(tables);
+			file.writeInt(RECORD_SIZE);
+			file.writeInt(0);
+			file.close();
+		} catch (IOException e) {
+			Log.printLine("EventTrace: The trace " + fileName + " could not be written");
+			Log.printLine(e.getMessage());
+		}
+	}
+
+	/**
+	 * Maps the next segment of the file.
+	 *
+	 * @throws IOException if the file cannot be extended
+	 */
+	private void mapNextSegment() throws IOException {
+		releaseSegment();
+		long size = (long) SEGMENT_RECORDS * RECORD_SIZE;
+		segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, nextSegment, size);
+		nextSegment += size;
+	}
+
+	/**
+	 * Releases the current segment, which is unmapped if possible.
+	 */
+	private void releaseSegment() {
+		if (segment != null) {
+			MappedByteBuffer released = segment;
+			segment = null;
+			unmapped &= unmap(released);
+		}
+	}
+
+	/**
+	 * Unmaps a buffer at once, rather than when it is garbage collected. There is no public API to
+	 * do so: the cleaner of the buffer is run through <tt>sun.misc.Unsafe</tt> on Java 9 and later,
+	 * or through the buffer itself on Java 8. The buffer must not be used afterwards.
+	 *
+	 * @param buffer the buffer
+	 * @return true, if the buffer has been unmapped
+	 */
+	private static boolean unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+			return true;
+		} catch (Exception e) {
+			// not available before Java 9
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			cleaner.getClass().getMethod("clean").invoke(cleaner);
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the id of the class of the data of an event.
+	 *
+	 * @param data the data
+	 * @return the id, 0 if the data is null
+	 */
+	private int getDataTypeId(Object data) {
+		if (data == null) {
+			return 0;
+		}
+		Class<?> type = data.getClass();
+		if (type == lastDataType) {
+			return lastDataTypeId;
+		}
+		Integer id = dataTypes.get(type);
+		if (id == null) {
+			dataTypeNames.add(type.getName());
+			id = dataTypeNames.size();
+			dataTypes.put(type, id);
+		}
+		lastDataType = type;
+		lastDataTypeId = id;
+		return id;
+	}
+
+}
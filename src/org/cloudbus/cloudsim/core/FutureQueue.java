@@ -8,28 +8,72 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
+import org.cloudbus.cloudsim.core.predicates.PredicateFrom;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
- * This class implements the future event queue used by {@link Simulation}. The event queue uses a
- * {@link java.util.TreeSet} in order to store the events.
+ * This class implements the future event queue used by {@link Simulation}. The events are stored
+ * in an {@link EventQueue}, by default a {@link HeapEventQueue}, which keeps them ordered by time
+ * and serial number as defined by {@link SimEvent#compareTo(SimEvent)}.
+ * <p>
+ * The queued events are also indexed by source entity and tag, so that cancelling the events
+ * selected by a {@link PredicateType}, a {@link PredicateFrom} or a {@link PredicateAny} only
+ * touches the matching events. Other predicates are checked against every event in the queue.
+ * Cancelled events are not removed from the event queue; they are marked as cancelled and
+ * discarded when they reach the head of the queue.
  * 
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
- * @see java.util.TreeSet
+ * @see EventQueue
  */
-public class FutureQueue {
+public class FutureQueue implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The events, including the cancelled ones which have not reached the head yet. */
+	private final EventQueue queue;
 
-	/** The sorted set. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+	/** The queued events by source entity and tag. */
+	private final IntMap<IntMap<EventBucket>> index = new IntMap<IntMap<EventBucket>>();
+
+	/** The number of queued events that are not cancelled. */
+	private int size = 0;
 
 	/** The serial. */
 	private long serial = 0;
 
+	/** The serial of events added to the head of the queue. */
+	private long firstSerial = Long.MIN_VALUE;
+
+	/**
+	 * Creates a future queue backed by a {@link HeapEventQueue}.
+	 */
+	public FutureQueue() {
+		this(new HeapEventQueue());
+	}
+
+	/**
+	 * Creates a future queue backed by the given event queue.
+	 * 
+	 * @param queue the event queue, which must be empty
+	 */
+	public FutureQueue(EventQueue queue) {
+		if (queue == null) {
+			throw new IllegalArgumentException("The event queue can't be null.");
+		}
+		this.queue = queue;
+	}
+
 	/**
 	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
 	 * the events in the queue.
@@ -38,26 +82,91 @@ public class FutureQueue {
 	 */
 	public void addEvent(SimEvent newEvent) {
 		newEvent.setSerial(serial++);
-		sortedSet.add(newEvent);
+		enqueue(newEvent);
 	}
 
 	/**
-	 * Add a new event to the head of the queue.
+	 * Add a new event to the head of the queue. Events added this way precede all the other events
+	 * with the same time, in the order they were added.
 	 * 
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEventFirst(SimEvent newEvent) {
-		newEvent.setSerial(0);
-		sortedSet.add(newEvent);
+		newEvent.setSerial(firstSerial++);
+		enqueue(newEvent);
+	}
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 * 
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent first() {
+		SimEvent event = queue.peek();
+		while (event != null && event.getQueueState() == SimEvent.CANCELLED) {
+			queue.poll();
+			event.setQueueState(SimEvent.NOT_QUEUED);
+			event = queue.peek();
+		}
+		return event;
+	}
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 * 
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public SimEvent removeFirst() {
+		SimEvent event = first();
+		if (event != null) {
+			queue.poll();
+			event.setQueueState(SimEvent.NOT_QUEUED);
+			size--;
+		}
+		return event;
 	}
 
 	/**
-	 * Returns an iterator to the queue.
+	 * Returns an iterator to the queue. The events are not returned in any particular order.
 	 * 
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return sortedSet.iterator();
+		final Iterator<SimEvent> iterator = queue.iterator();
+		return new Iterator<SimEvent>() {
+
+			private SimEvent next = advance();
+
+			private SimEvent advance() {
+				while (iterator.hasNext()) {
+					SimEvent event = iterator.next();
+					if (event.getQueueState() == SimEvent.QUEUED) {
+						return event;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				SimEvent event = next;
+				next = advance();
+				return event;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
 	/**
@@ -66,7 +175,7 @@ public class FutureQueue {
 	 * @return the size
 	 */
 	public int size() {
-		return sortedSet.size();
+		return size;
 	}
 
 	/**
@@ -76,7 +185,12 @@ public class FutureQueue {
 	 * @return true, if successful
 	 */
 	public boolean remove(SimEvent event) {
-		return sortedSet.remove(event);
+		if (event.getQueueState() != SimEvent.QUEUED) {
+			return false;
+		}
+		event.setQueueState(SimEvent.CANCELLED);
+		size--;
+		return true;
 	}
 
 	/**
@@ -86,14 +200,261 @@ public class FutureQueue {
 	 * @return true, if successful
 	 */
 	public boolean removeAll(Collection<SimEvent> events) {
-		return sortedSet.removeAll(events);
+		boolean removed = false;
+		for (SimEvent event : events) {
+			removed |= remove(event);
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes the earliest event sent by the given entity that matches a predicate.
+	 * 
+	 * @param src the id of the source entity
+	 * @param p the predicate
+	 * @return the removed event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent cancel(int src, Predicate p) {
+		SimEvent first = null;
+		if (isIndexed(p)) {
+			for (EventBucket bucket : getBuckets(src, p)) {
+				for (int i = 0; i < bucket.size(); i++) {
+					SimEvent event = bucket.get(i);
+					if (event.getQueueState() == SimEvent.QUEUED
+							&& (first == null || HeapEventQueue.before(event, first))) {
+						first = event;
+					}
+				}
+			}
+		} else {
+			Iterator<SimEvent> iterator = iterator();
+			while (iterator.hasNext()) {
+				SimEvent event = iterator.next();
+				if (event.getSource() == src && p.match(event)
+						&& (first == null || HeapEventQueue.before(event, first))) {
+					first = event;
+				}
+			}
+		}
+
+		if (first != null) {
+			remove(first);
+		}
+		return first;
+	}
+
+	/**
+	 * Finds all the events sent by the given entity that match a predicate, without removing them.
+	 * 
+	 * @param src the id of the source entity
+	 * @param p the predicate
+	 * @param events the list the matching events are added to
+	 */
+	void findAll(int src, Predicate p, List<SimEvent> events) {
+		if (isIndexed(p)) {
+			for (EventBucket bucket : getBuckets(src, p)) {
+				for (int i = 0; i < bucket.size(); i++) {
+					SimEvent event = bucket.get(i);
+					if (event.getQueueState() == SimEvent.QUEUED) {
+						events.add(event);
+					}
+				}
+			}
+		} else {
+			Iterator<SimEvent> iterator = iterator();
+			while (iterator.hasNext()) {
+				SimEvent event = iterator.next();
+				if (event.getSource() == src && p.match(event)) {
+					events.add(event);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the serial the next event added with {@link #addEvent(SimEvent)} will get.
+	 * 
+	 * @return the serial
+	 */
+	long getSerial() {
+		return serial;
+	}
+
+	/**
+	 * Gets the serial the next event added with {@link #addEventFirst(SimEvent)} will get.
+	 * 
+	 * @return the serial
+	 */
+	long getFirstSerial() {
+		return firstSerial;
+	}
+
+	/**
+	 * Removes all the events sent by the given entity that match a predicate.
+	 * 
+	 * @param src the id of the source entity
+	 * @param p the predicate
+	 * @return true, if at least one event has been removed
+	 */
+	public boolean cancelAll(int src, Predicate p) {
+		int previousSize = size;
+		if (isIndexed(p)) {
+			for (EventBucket bucket : getBuckets(src, p)) {
+				for (int i = 0; i < bucket.size(); i++) {
+					remove(bucket.get(i));
+				}
+				bucket.clear();
+			}
+		} else {
+			Iterator<SimEvent> iterator = queue.iterator();
+			while (iterator.hasNext()) {
+				SimEvent event = iterator.next();
+				if (event.getQueueState() == SimEvent.QUEUED && event.getSource() == src
+						&& p.match(event)) {
+					remove(event);
+				}
+			}
+		}
+		return size < previousSize;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		sortedSet.clear();
+		Iterator<SimEvent> iterator = queue.iterator();
+		while (iterator.hasNext()) {
+			iterator.next().setQueueState(SimEvent.NOT_QUEUED);
+		}
+		queue.clear();
+		index.clear();
+		size = 0;
+	}
+
+	/**
+	 * Puts an event, with its serial already set, in the event queue and in the index.
+	 * 
+	 * @param newEvent the event
+	 */
+	private void enqueue(SimEvent newEvent) {
+		newEvent.setQueueState(SimEvent.QUEUED);
+		queue.add(newEvent);
+		size++;
+
+		IntMap<EventBucket> bySource = index.get(newEvent.getSource());
+		if (bySource == null) {
+			bySource = new IntMap<EventBucket>();
+			index.put(newEvent.getSource(), bySource);
+		}
+		EventBucket bucket = bySource.get(newEvent.getTag());
+		if (bucket == null) {
+			bucket = new EventBucket();
+			bySource.put(newEvent.getTag(), bucket);
+		}
+		bucket.add(newEvent);
+	}
+
+	/**
+	 * Checks if the events matching a predicate can be looked up in the index.
+	 * 
+	 * @param p the predicate
+	 * @return true, if the index can be used
+	 */
+	private static boolean isIndexed(Predicate p) {
+		return p instanceof PredicateType || p instanceof PredicateFrom || p instanceof PredicateAny;
+	}
+
+	/**
+	 * Gets the index buckets holding the events of the given source entity which may match an
+	 * indexed predicate.
+	 * 
+	 * @param src the id of the source entity
+	 * @param p a predicate for which {@link #isIndexed(Predicate)} holds
+	 * @return the buckets
+	 */
+	private List<EventBucket> getBuckets(int src, Predicate p) {
+		List<EventBucket> buckets = new ArrayList<EventBucket>();
+		IntMap<EventBucket> bySource = index.get(src);
+		if (bySource == null) {
+			return buckets;
+		}
+
+		if (p instanceof PredicateType) {
+			for (int tag : ((PredicateType) p).getTags()) {
+				EventBucket bucket = bySource.get(tag);
+				if (bucket != null) {
+					buckets.add(bucket);
+				}
+			}
+			return buckets;
+		}
+
+		if (p instanceof PredicateFrom) {
+			boolean fromSource = false;
+			for (int id : ((PredicateFrom) p).getSourceIds()) {
+				if (id == src) {
+					fromSource = true;
+					break;
+				}
+			}
+			if (!fromSource) {
+				return buckets;
+			}
+		}
+
+		bySource.values(buckets);
+		return buckets;
+	}
+
+	/**
+	 * The events of the index with a given source and tag, in the order they were added. Events
+	 * which are no longer queued are dropped in batches, whenever the bucket has doubled since the
+	 * last time it was compacted.
+	 */
+	private static class EventBucket implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The minimal size at which the bucket is compacted. */
+		private static final int MIN_COMPACT_SIZE = 16;
+
+		/** The events. */
+		private final List<SimEvent> events = new ArrayList<SimEvent>();
+
+		/** The size at which the bucket is compacted next. */
+		private int compactSize = MIN_COMPACT_SIZE;
+
+		void add(SimEvent event) {
+			if (events.size() >= compactSize) {
+				compact();
+			}
+			events.add(event);
+		}
+
+		SimEvent get(int i) {
+			return events.get(i);
+		}
+
+		int size() {
+			return events.size();
+		}
+
+		void clear() {
+			events.clear();
+			compactSize = MIN_COMPACT_SIZE;
+		}
+
+		private void compact() {
+			int live = 0;
+			for (int i = 0; i < events.size(); i++) {
+				SimEvent event = events.get(i);
+				if (event.getQueueState() == SimEvent.QUEUED) {
+					events.set(live++, event);
+				}
+			}
+			events.subList(live, events.size()).clear();
+			compactSize = Math.max(MIN_COMPACT_SIZE, 2 * live);
+		}
 	}
 
-}
\ No newline at end of file
+}
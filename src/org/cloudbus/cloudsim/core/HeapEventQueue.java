@@ -0,0 +1,206 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An {@link EventQueue} backed by an implicit 4-ary min-heap stored in a single array. Compared to
+ * a binary heap, the 4-ary layout halves the height of the tree and keeps the children of a node in
+ * the same cache line, which makes {@link #add(SimEvent)} and {@link #poll()} cheaper for the large
+ * queues of power-aware simulations. This is the default future event queue.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see EventQueue
+ */
+public class HeapEventQueue implements EventQueue {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The arity of the heap. */
+	private static final int ARITY = 4;
+
+	/** The default initial capacity. */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/** The heap array. */
+	private SimEvent[] heap;
+
+	/** The number of events in the heap. */
+	private int size;
+
+	/**
+	 * Creates a new heap with the default initial capacity.
+	 */
+	public HeapEventQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new heap.
+	 *
+	 * @param initialCapacity the initial capacity of the heap array
+	 */
+	public HeapEventQueue(int initialCapacity) {
+		heap = new SimEvent[Math.max(ARITY, initialCapacity)];
+		size = 0;
+	}
+
+	@Override
+	public void add(SimEvent event) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, heap.length * 2);
+		}
+		siftUp(size++, event);
+	}
+
+	@Override
+	public SimEvent peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	public SimEvent poll() {
+		if (size == 0) {
+			return null;
+		}
+		SimEvent first = heap[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		for (int i = 0; i < size; i++) {
+			if (heap[i] == event) {
+				removeAt(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(heap, 0, size, null);
+		size = 0;
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				return heap[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Removes the event at the given position of the heap.
+	 *
+	 * @param index the position
+	 */
+	private void removeAt(int index) {
+		SimEvent last = heap[--size];
+		heap[size] = null;
+		if (index == size) {
+			return;
+		}
+		siftDown(index, last);
+		if (heap[index] == last) {
+			siftUp(index, last);
+		}
+	}
+
+	/**
+	 * Moves an event up from the given position until the heap order is restored.
+	 *
+	 * @param index the position
+	 * @param event the event
+	 */
+	private void siftUp(int index, SimEvent event) {
+		while (index > 0) {
+			int parent = (index - 1) / ARITY;
+			SimEvent p = heap[parent];
+			if (!before(event, p)) {
+				break;
+			}
+			heap[index] = p;
+			index = parent;
+		}
+		heap[index] = event;
+	}
+
+	/**
+	 * Moves an event down from the given position until the heap order is restored.
+	 *
+	 * @param index the position
+	 * @param event the event
+	 */
+	private void siftDown(int index, SimEvent event) {
+		while (true) {
+			int child = index * ARITY + 1;
+			if (child >= size) {
+				break;
+			}
+			int end = Math.min(child + ARITY, size);
+			int min = child;
+			for (int c = child + 1; c < end; c++) {
+				if (before(heap[c], heap[min])) {
+					min = c;
+				}
+			}
+			if (!before(heap[min], event)) {
+				break;
+			}
+			heap[index] = heap[min];
+			index = min;
+		}
+		heap[index] = event;
+	}
+
+	/**
+	 * Checks whether an event precedes another one, i.e. it has an earlier time or the same time and
+	 * a lower serial, see {@link SimEvent#precedes(SimEvent, SimEvent)}.
+	 *
+	 * @param a the first event
+	 * @param b the second event
+	 * @return true, if <tt>a</tt> precedes <tt>b</tt>
+	 */
+	static boolean before(SimEvent a, SimEvent b) {
+		double ta = a.eventTime();
+		double tb = b.eventTime();
+		return ta < tb || (ta == tb && SimEvent.precedes(a, b));
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A hash map with primitive <tt>int</tt> keys, used on the event path of the simulation where
+ * boxing the entity ids and tags into {@link Integer} keys would allocate objects for every event.
+ * The entries are stored in open-addressed arrays with linear probing. Null values are not
+ * allowed.
+ *
+ * @param <V> the type of the values
+ * @since CloudSim Toolkit 3.0
+ */
+class IntMap<V> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The default initial capacity, a power of two. */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** The keys. */
+	private int[] keys;
+
+	/** The values; a null value marks an empty slot. */
+	private Object[] values;
+
+	/** The number of entries. */
+	private int size;
+
+	/**
+	 * Creates a new empty map.
+	 */
+	IntMap() {
+		keys = new int[DEFAULT_CAPACITY];
+		values = new Object[DEFAULT_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Gets the value of a key.
+	 *
+	 * @param key the key
+	 * @return the value, or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	V get(int key) {
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the value of a key.
+	 *
+	 * @param key the key
+	 * @param value the value, not null
+	 */
+	void put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values are not allowed.");
+		}
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > keys.length / 2) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Removes a key from the map.
+	 *
+	 * @param key the key
+	 */
+	void remove(int key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (values[i] == null) {
+			return;
+		}
+		values[i] = null;
+		size--;
+
+		// shift back the entries of the probe sequence which follow the removed one
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+	}
+
+	/**
+	 * Adds all the values of the map to a collection.
+	 *
+	 * @param target the collection
+	 */
+	@SuppressWarnings("unchecked")
+	void values(Collection<? super V> target) {
+		for (Object value : values) {
+			if (value != null) {
+				target.add((V) value);
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return the size
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all the entries.
+	 */
+	void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Rebuilds the arrays with a new capacity.
+	 *
+	 * @param capacity the new capacity, a power of two
+	 */
+	@SuppressWarnings("unchecked")
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				put(oldKeys[i], (V) oldValues[i]);
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of a key, so that consecutive ids and tags do not cluster.
+	 *
+	 * @param key the key
+	 * @return the hash
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -0,0 +1,769 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.cloudbus.cloudsim.NetworkTopology;
+
+/**
+ * One of the processes of a simulation distributed over several JVMs of the same machine. Every
+ * process runs the same program, so it creates the same entities with the same ids, but only runs
+ * the entities of its partition, e.g. a datacenter with its hosts and allocation policy. The
+ * events sent to the entities of another partition are forwarded to its process through a local
+ * socket.
+ * <p>
+ * The processes are synchronised by a conservative protocol. The lookahead is the shortest delay
+ * of an event sent from one partition to another, taken by default from the shortest positive
+ * delay of the {@link NetworkTopology} between the entities of different partitions. The processes
+ * run in rounds: they exchange the events sent to each other in the last round, then a null
+ * message carrying the time of their next event. Every process can then deliver the events due
+ * before the earliest of these times plus the lookahead, since no event it has not received yet
+ * can be due before. The simulation ends when no process has any event left, or at the
+ * termination time.
+ * <p>
+ * The events with the same time are delivered in the order of a single process, whatever the
+ * partitions of their sources: every event carries its position in that order, set by the process
+ * which sends it, instead of a serial number. The suspended timers are fired at the last tick of
+ * all the processes once none of them has an event due before the termination time, as in a single
+ * process. The results are thus those of the single-process run, as long as the entities of
+ * different partitions do not share objects.
+ * <p>
+ * The entities of different partitions may only interact through events, whose data must be
+ * serializable; the receiver gets a copy of the data, so a change made to it by the receiver is
+ * not seen by the sender, and the reverse. The entities which share the state of an object must
+ * therefore belong to the same partition: e.g. the broker of the power examples and their
+ * datacenter share the {@link org.cloudbus.cloudsim.Vm} and {@link org.cloudbus.cloudsim.Cloudlet}
+ * objects, whose state is updated by the datacenter and read by the broker. The
+ * {@link CloudInformationService} and the {@link CloudSimShutdown} entities are replicated: every
+ * process runs its own copy, and the entities of the other partitions are started in every
+ * process, without being run, so that they register with the local copy. The distributed mode
+ * runs the entities sequentially; it does not support checkpoints, stepping methods or entities
+ * created while the simulation runs.
+ * <p>
+ * The program of the first process launches the others, e.g. as in
+ * {@link org.cloudbus.cloudsim.examples.DistributedExample}:
+ *
+ * <pre>
+ * LogicalProcess process = LogicalProcess.fromSystemProperties();
+ * if (process == null) {
+ * 	process = new LogicalProcess(0, 3, 47000);
+ * 	process.launch(MyExample.class, args);
+ * }
+ * CloudSim.init(1, Calendar.getInstance(), false);
+ * // create the entities, then
+ * process.assign(&quot;Datacenter_1&quot;, 1);
+ * process.assign(&quot;Datacenter_2&quot;, 2);
+ * CloudSim.setLogicalProcess(process);
+ * CloudSim.startSimulation();
+ * </pre>
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim#setLogicalProcess(LogicalProcess)
+ */
+public class LogicalProcess {
+
+	/** The system property giving the partition of a process started by {@link #launch(Class, String...)}. */
+	public static final String PARTITION_PROPERTY = "cloudsim.partition";
+
+	/** The system property giving the number of partitions. */
+	public static final String PARTITIONS_PROPERTY = "cloudsim.partitions";
+
+	/** The system property giving the first port of the processes. */
+	public static final String PORT_PROPERTY = "cloudsim.port";
+
+	/** The partition of the entities run by every process. */
+	public static final int REPLICATED = -1;
+
+	/** How long to wait for the other processes to connect, in milliseconds. */
+	private static final int CONNECT_TIMEOUT = 60000;
+
+	/** The message carrying an event. */
+	private static final byte EVENT = 1;
+
+	/** The message carrying an event to put ahead of the events with the same time. */
+	private static final byte EVENT_FIRST = 2;
+
+	/** The message ending the events of a round. */
+	private static final byte END_OF_EVENTS = 3;
+
+	/** The null message carrying the time of the next event of a process. */
+	private static final byte BOUND = 4;
+
+	/** The message queued when the connection with a process has been lost. */
+	private static final byte CLOSED = 5;
+
+	/** The partition of this process. */
+	private final int partition;
+
+	/** The number of partitions. */
+	private final int partitions;
+
+	/** The port of the first partition; each partition listens on the next one. */
+	private final int port;
+
+	/** The partitions assigned to the entities, by name. */
+	private final Map<String, Integer> assignments;
+
+	/** The processes launched by this one. */
+	private final List<Process> children;
+
+	/** The lookahead, or 0 to take it from the network topology. */
+	private double lookahead;
+
+	/** The partitions of the entities, by id. */
+	private int[] owners;
+
+	/** The sockets connected to the other processes, by partition. */
+	private Socket[] sockets;
+
+	/** The streams of the messages sent to the other processes, by partition. */
+	private ObjectOutputStream[] outputs;
+
+	/** The messages received from the other processes, by partition. */
+	private List<BlockingQueue<Message>> inputs;
+
+	/** Whether the connections are open. */
+	private boolean open;
+
+	/** Whether a process has terminated the simulation. */
+	private boolean terminated;
+
+	/** The latest clock of the processes in the last round. */
+	private double lastClock;
+
+	/** The generation of the tick of the latest clock of the processes in the last round. */
+	private int lastGeneration;
+
+	/**
+	 * Creates a process of a distributed simulation.
+	 *
+	 * @param partition the partition of this process, from 0
+	 * @param partitions the number of partitions
+	 * @param port the port of the first partition; partition <tt>i</tt> listens on
+	 *            <tt>port + i</tt> of the loopback interface
+	 * @throws IllegalArgumentException if the partition is not between 0 and the number of
+	 *             partitions
+	 */
+	public LogicalProcess(int partition, int partitions, int port) {
+		if (partitions < 1 || partition < 0 || partition >= partitions) {
+			throw new IllegalArgumentException("Partition " + partition + " of " + partitions + " does not exist.");
+		}
+		this.partition = partition;
+		this.partitions = partitions;
+		this.port = port;
+		assignments = new HashMap<String, Integer>();
+		children = new ArrayList<Process>();
+	}
+
+	/**
+	 * Creates the process described by the system properties set by
+	 * {@link #launch(Class, String...)}.
+	 *
+	 * @return the process, or null if this JVM has not been launched as a partition
+	 */
+	public static LogicalProcess fromSystemProperties() {
+		String partition = System.getProperty(PARTITION_PROPERTY);
+		if (partition == null) {
+			return null;
+		}
+		return new LogicalProcess(Integer.parseInt(partition), Integer.getInteger(PARTITIONS_PROPERTY),
+				Integer.getInteger(PORT_PROPERTY));
+	}
+
+	/**
+	 * Launches the processes of the other partitions, which run the main method of the given class
+	 * with the same class path and arguments. Their output is written to the files
+	 * <tt>cloudsim-partition-i.log</tt> of the working directory.
+	 *
+	 * @param mainClass the class of the program
+	 * @param args the arguments of the program
+	 * @return the processes launched
+	 * @throws IOException if a process cannot be started
+	 * @throws IllegalStateException if this is not the first partition
+	 */
+	public List<Process> launch(Class<?> mainClass, String... args) throws IOException {
+		if (partition != 0) {
+			throw new IllegalStateException("Only the first partition launches the others.");
+		}
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for (int i = 1; i < partitions; i++) {
+			List<String> command = new ArrayList<String>();
+			command.add(java);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add("-D" + PARTITION_PROPERTY + "=" + i);
+			command.add("-D" + PARTITIONS_PROPERTY + "=" + partitions);
+			command.add("-D" + PORT_PROPERTY + "=" + port);
+			command.add(mainClass.getName());
+			command.addAll(Arrays.asList(args));
+			ProcessBuilder builder = new ProcessBuilder(command);
+			builder.redirectErrorStream(true);
+			builder.redirectOutput(new File("cloudsim-partition-" + i + ".log"));
+			children.add(builder.start());
+		}
+		return new ArrayList<Process>(children);
+	}
+
+	/**
+	 * Waits for the processes launched by this one to exit.
+	 *
+	 * @return true, if they have all exited normally
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public boolean waitForPartitions() throws InterruptedException {
+		boolean success = true;
+		for (Process child : children) {
+			success &= child.waitFor() == 0;
+		}
+		children.clear();
+		return success;
+	}
+
+	/**
+	 * Assigns an entity to a partition. The entities which are not assigned belong to the first
+	 * partition, except the replicated ones.
+	 *
+	 * @param entityName the name of the entity
+	 * @param partition the partition, or {@link #REPLICATED} to run the entity in every process
+	 * @throws IllegalArgumentException if the partition does not exist
+	 */
+	public void assign(String entityName, int partition) {
+		if (partition != REPLICATED && (partition < 0 || partition >= partitions)) {
+			throw new IllegalArgumentException("Partition " + partition + " of " + partitions + " does not exist.");
+		}
+		assignments.put(entityName, partition);
+	}
+
+	/**
+	 * Sets the lookahead: the shortest delay of an event sent from an entity to an entity of
+	 * another partition. Sending an event with a shorter delay fails.
+	 *
+	 * @param lookahead the lookahead, or 0 to take it from the network topology
+	 * @throws IllegalArgumentException if the lookahead is negative
+	 */
+	public void setLookahead(double lookahead) {
+		if (lookahead < 0) {
+			throw new IllegalArgumentException("The lookahead can't be negative.");
+		}
+		this.lookahead = lookahead;
+	}
+
+	/**
+	 * Gets the lookahead.
+	 *
+	 * @return the lookahead, or 0 if it is taken from the network topology and the simulation has
+	 *         not started yet
+	 */
+	public double getLookahead() {
+		return lookahead;
+	}
+
+	/**
+	 * Gets the partition of this process.
+	 *
+	 * @return the partition
+	 */
+	public int getPartition() {
+		return partition;
+	}
+
+	/**
+	 * Gets the number of partitions.
+	 *
+	 * @return the number of partitions
+	 */
+	public int getPartitions() {
+		return partitions;
+	}
+
+	/**
+	 * Gets the partition of an entity.
+	 *
+	 * @param id the id of the entity
+	 * @return the partition, or {@link #REPLICATED}
+	 * @throws IllegalStateException if the simulation has not started yet
+	 */
+	public int getOwner(int id) {
+		if (owners == null) {
+			throw new IllegalStateException("The entities are assigned when the simulation starts.");
+		}
+		return id < 0 ? REPLICATED : owners[id];
+	}
+
+	/**
+	 * Checks if an entity is run by this process.
+	 *
+	 * @param id the id of the entity
+	 * @return true, if the entity belongs to the partition of this process or is replicated
+	 */
+	public boolean isLocal(int id) {
+		int owner = getOwner(id);
+		return owner == partition || owner == REPLICATED;
+	}
+
+	/**
+	 * Checks if a process has terminated the simulation in the last round.
+	 *
+	 * @return true, if the simulation has been terminated
+	 */
+	boolean isTerminated() {
+		return terminated;
+	}
+
+	/**
+	 * Assigns the entities to the partitions, computes the lookahead and connects to the other
+	 * processes.
+	 *
+	 * @param entities the entities of the simulation
+	 * @throws IOException if the processes cannot be connected
+	 * @throws IllegalStateException if an assigned entity does not exist or there is no lookahead
+	 */
+	void connect(List<SimEntity> entities) throws IOException {
+		owners = new int[entities.size()];
+		int assigned = 0;
+		for (SimEntity ent : entities) {
+			Integer owner = assignments.get(ent.getName());
+			if (owner != null) {
+				assigned++;
+			}
+			if (ent instanceof CloudInformationService || ent instanceof CloudSimShutdown) {
+				owner = REPLICATED;
+			}
+			owners[ent.getId()] = owner == null ? 0 : owner;
+		}
+		if (assigned < assignments.size()) {
+			throw new IllegalStateException("An entity assigned to a partition does not exist.");
+		}
+		if (lookahead == 0) {
+			lookahead = getNetworkLookahead();
+		}
+		if (lookahead <= 0 && partitions > 1) {
+			throw new IllegalStateException("The entities of different partitions have no network delay: "
+					+ "set the delays of the network topology or the lookahead.");
+		}
+
+		sockets = new Socket[partitions];
+		outputs = new ObjectOutputStream[partitions];
+		inputs = new ArrayList<BlockingQueue<Message>>();
+		for (int i = 0; i < partitions; i++) {
+			inputs.add(new LinkedBlockingQueue<Message>());
+		}
+		open = true;
+		terminated = false;
+
+		// each process connects to the previous ones and accepts the connections of the next ones
+		long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		for (int i = 0; i < partition; i++) {
+			Socket socket = connect(port + i, deadline);
+			sockets[i] = socket;
+			outputs[i] = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			outputs[i].writeInt(partition);
+			outputs[i].flush();
+			new Receiver(i, socket, null).start();
+		}
+		if (partition < partitions - 1) {
+			ServerSocket server = new ServerSocket(port + partition, partitions, InetAddress.getLoopbackAddress());
+			try {
+				server.setSoTimeout(CONNECT_TIMEOUT);
+				for (int i = partition + 1; i < partitions; i++) {
+					Socket socket = server.accept();
+					socket.setTcpNoDelay(true);
+					ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+					int other = in.readInt();
+					if (other <= partition || other >= partitions || sockets[other] != null) {
+						socket.close();
+						throw new IOException("Unexpected connection from partition " + other);
+					}
+					sockets[other] = socket;
+					outputs[other] = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+					outputs[other].flush();
+					new Receiver(other, socket, in).start();
+				}
+			} finally {
+				server.close();
+			}
+		}
+	}
+
+	/**
+	 * Connects to the process listening on a port, retrying until it has started.
+	 *
+	 * @param port the port
+	 * @param deadline the time after which to give up, in milliseconds
+	 * @return the socket
+	 * @throws IOException if the process cannot be connected
+	 */
+	private static Socket connect(int port, long deadline) throws IOException {
+		while (true) {
+			try {
+				Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+				socket.setTcpNoDelay(true);
+				return socket;
+			} catch (ConnectException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ie) {
+					throw new IOException("Interrupted while connecting to port " + port);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the shortest positive network delay between entities of different partitions.
+	 *
+	 * @return the delay, or 0 if the network topology is not enabled
+	 */
+	private double getNetworkLookahead() {
+		if (!NetworkTopology.isNetworkEnabled()) {
+			return 0;
+		}
+		double min = Double.MAX_VALUE;
+		for (int i = 0; i < owners.length; i++) {
+			for (int j = 0; j < owners.length; j++) {
+				if (owners[i] != REPLICATED && owners[j] != REPLICATED && owners[i] != owners[j]) {
+					// the entities without a delay are not expected to send events to each other
+					double delay = NetworkTopology.getDelay(i, j);
+					if (delay > 0) {
+						min = Math.min(min, delay);
+					}
+				}
+			}
+		}
+		return min == Double.MAX_VALUE ? 0 : min;
+	}
+
+	/**
+	 * Routes an event sent by an entity. An event sent by an entity of this partition to an entity
+	 * of another one is forwarded to its process. The other entities are only run by this process
+	 * to start them, or because they are replicated, so the events they send are only kept for the
+	 * replicated entities of this process; any other copy is sent by the process running them.
+	 *
+	 * @param e the event
+	 * @param first whether the event is put ahead of the events with the same time
+	 * @param clock the current simulation time
+	 * @return true, if the event is to be put in the future queue of this process
+	 * @throws IllegalStateException if an event is sent to another partition with a delay shorter
+	 *             than the lookahead, or cannot be sent
+	 */
+	boolean route(SimEvent e, boolean first, double clock) {
+		int src = getOwner(e.getSource());
+		int dest = getOwner(e.getDestination());
+		if (src != partition) {
+			return (dest == partition || dest == REPLICATED) && (src == REPLICATED || dest == REPLICATED);
+		}
+		if (dest == partition || dest == REPLICATED) {
+			return true;
+		}
+		if (!open) {
+			// the simulation has finished
+			return false;
+		}
+		if (e.eventTime() < clock + lookahead) {
+			throw new IllegalStateException("The event " + e.getTag() + " from entity #" + e.getSource()
+					+ " to entity #" + e.getDestination() + " of partition " + dest + " has a delay of "
+					+ (e.eventTime() - clock) + ", shorter than the lookahead " + lookahead);
+		}
+		try {
+			ObjectOutputStream out = outputs[dest];
+			out.writeByte(first ? EVENT_FIRST : EVENT);
+			out.writeDouble(e.eventTime());
+			out.writeInt(e.getSource());
+			out.writeInt(e.getDestination());
+			out.writeInt(e.getTag());
+			long[] order = e.getOrder();
+			out.writeInt(order.length);
+			for (long position : order) {
+				out.writeLong(position);
+			}
+			out.writeObject(e.getData());
+			// the next events get the state of their data at the time they are sent
+			out.reset();
+		} catch (IOException ex) {
+			throw new IllegalStateException("The event could not be sent to partition " + dest + ": " + ex);
+		}
+		return false;
+	}
+
+	/**
+	 * Ends a round by exchanging the events sent to the other processes. The events received are
+	 * put in the future queue, which orders them by the position they were given by their sender.
+	 *
+	 * @param future the future queue
+	 * @throws IOException if a process cannot be reached
+	 */
+	void exchangeEvents(FutureQueue future) throws IOException {
+		for (int i = 0; i < partitions; i++) {
+			if (i != partition) {
+				outputs[i].writeByte(END_OF_EVENTS);
+				outputs[i].flush();
+			}
+		}
+		for (int i = 0; i < partitions; i++) {
+			if (i == partition) {
+				continue;
+			}
+			for (Message m = receive(i); m.type != END_OF_EVENTS; m = receive(i)) {
+				if (m.type == EVENT) {
+					future.addEvent(m.event);
+				} else if (m.type == EVENT_FIRST) {
+					future.addEventFirst(m.event);
+				} else {
+					throw new IOException("Unexpected message " + m.type + " from partition " + i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Exchanges the null messages of a round: the time of the next event of each process, and the
+	 * clock and the generation of its last tick.
+	 *
+	 * @param next the time of the next event of this process, or infinity if it has none
+	 * @param terminated whether this process has terminated the simulation
+	 * @param clock the clock of this process
+	 * @param generation the generation of the last tick of this process
+	 * @return the earliest time of the next event of all the processes
+	 * @throws IOException if a process cannot be reached
+	 * @see #getLastClock()
+	 */
+	double exchangeBounds(double next, boolean terminated, double clock, int generation) throws IOException {
+		for (int i = 0; i < partitions; i++) {
+			if (i != partition) {
+				outputs[i].writeByte(BOUND);
+				outputs[i].writeDouble(next);
+				outputs[i].writeBoolean(terminated);
+				outputs[i].writeDouble(clock);
+				outputs[i].writeInt(generation);
+				outputs[i].flush();
+			}
+		}
+		double min = next;
+		this.terminated = terminated;
+		lastClock = clock;
+		lastGeneration = generation;
+		for (int i = 0; i < partitions; i++) {
+			if (i == partition) {
+				continue;
+			}
+			Message m = receive(i);
+			if (m.type != BOUND) {
+				throw new IOException("Unexpected message " + m.type + " from partition " + i);
+			}
+			min = Math.min(min, m.bound);
+			this.terminated |= m.terminated;
+			if (m.clock > lastClock || (m.clock == lastClock && m.generation > lastGeneration)) {
+				lastClock = m.clock;
+				lastGeneration = m.generation;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Gets the latest clock of the processes in the last round, i.e. the time of the last tick of
+	 * the simulation.
+	 *
+	 * @return the latest clock
+	 */
+	double getLastClock() {
+		return lastClock;
+	}
+
+	/**
+	 * Gets the generation of the last tick of the simulation, among the ticks with its time.
+	 *
+	 * @return the generation
+	 */
+	int getLastGeneration() {
+		return lastGeneration;
+	}
+
+	/**
+	 * Waits for the next message of a process.
+	 *
+	 * @param partition the partition of the process
+	 * @return the message
+	 * @throws IOException if the connection has been lost
+	 */
+	private Message receive(int partition) throws IOException {
+		Message m;
+		try {
+			m = inputs.get(partition).take();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for partition " + partition);
+		}
+		if (m.type == CLOSED) {
+			IOException e = new IOException("The connection with partition " + partition + " has been lost");
+			e.initCause(m.error);
+			throw e;
+		}
+		return m;
+	}
+
+	/**
+	 * Closes the connections with the other processes. The events sent to them from now on are
+	 * discarded.
+	 */
+	void close() {
+		open = false;
+		if (sockets == null) {
+			return;
+		}
+		for (int i = 0; i < partitions; i++) {
+			if (outputs[i] != null) {
+				try {
+					outputs[i].flush();
+				} catch (IOException e) {
+					// the other process has already finished
+				}
+			}
+			if (sockets[i] != null) {
+				try {
+					sockets[i].close();
+				} catch (IOException e) {
+					// nothing left to do with it
+				}
+			}
+		}
+		sockets = null;
+		outputs = null;
+	}
+
+	/**
+	 * A message received from another process.
+	 */
+	private static class Message {
+
+		/** The type of the message. */
+		private final byte type;
+
+		/** The event, for an event message. */
+		private SimEvent event;
+
+		/** The time of the next event of the process, for a null message. */
+		private double bound;
+
+		/** Whether the process has terminated the simulation, for a null message. */
+		private boolean terminated;
+
+		/** The clock of the process, for a null message. */
+		private double clock;
+
+		/** The generation of the last tick of the process, for a null message. */
+		private int generation;
+
+		/** The cause of the loss of the connection. */
+		private Exception error;
+
+		/**
+		 * Creates a message.
+		 *
+		 * @param type the type of the message
+		 */
+		Message(byte type) {
+			this.type = type;
+		}
+
+	}
+
+	/**
+	 * Reads the messages of another process into its queue, so that sending to a process never
+	 * waits for it to read.
+	 */
+	private class Receiver extends Thread {
+
+		/** The partition of the other process. */
+		private final int other;
+
+		/** The socket connected to the other process. */
+		private final Socket socket;
+
+		/** The stream of the messages, or null if it has not been opened yet. */
+		private ObjectInputStream in;
+
+		/**
+		 * Creates a receiver.
+		 *
+		 * @param other the partition of the other process
+		 * @param socket the socket connected to the other process
+		 * @param in the stream of the messages, or null to open it
+		 */
+		Receiver(int other, Socket socket, ObjectInputStream in) {
+			super("CloudSim partition " + other + " receiver");
+			setDaemon(true);
+			this.other = other;
+			this.socket = socket;
+			this.in = in;
+		}
+
+		@Override
+		public void run() {
+			BlockingQueue<Message> queue = inputs.get(other);
+			try {
+				if (in == null) {
+					in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+				}
+				while (true) {
+					Message m = new Message(in.readByte());
+					switch (m.type) {
+						case EVENT:
+						case EVENT_FIRST:
+							double time = in.readDouble();
+							int src = in.readInt();
+							int dest = in.readInt();
+							int tag = in.readInt();
+							long[] order = new long[in.readInt()];
+							for (int i = 0; i < order.length; i++) {
+								order[i] = in.readLong();
+							}
+							m.event = new SimEvent(SimEvent.SEND, time, src, dest, tag, in.readObject());
+							m.event.setOrder(order);
+							break;
+						case BOUND:
+							m.bound = in.readDouble();
+							m.terminated = in.readBoolean();
+							m.clock = in.readDouble();
+							m.generation = in.readInt();
+							break;
+						default:
+							break;
+					}
+					queue.add(m);
+				}
+			} catch (Exception e) {
+				Message m = new Message(CLOSED);
+				m.error = e;
+				queue.add(m);
+			}
+		}
+
+	}
+
+}
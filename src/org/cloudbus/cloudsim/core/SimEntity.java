@@ -8,6 +8,10 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.NetworkTopology;
 import org.cloudbus.cloudsim.core.predicates.Predicate;
@@ -28,7 +32,9 @@ import org.cloudbus.cloudsim.core.predicates.Predicate;
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  */
-public abstract class SimEntity implements Cloneable {
+public abstract class SimEntity implements Cloneable, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	/** The name. */
 	private String name;
@@ -42,6 +48,18 @@ public abstract class SimEntity implements Cloneable {
 	/** The entity's current state. */
 	private int state;
 
+	/** The events delivered to the entity and not processed yet. */
+	private DeferredQueue deferred = new DeferredQueue();
+
+	/** The pending events of the timers of the entity by tag, or null if it has never had one. */
+	private IntMap<SimEvent> timers;
+
+	/** The suspended timers of the entity by tag, or null if none is suspended. */
+	private IntMap<SimEvent> suspended;
+
+	/** The statistics of the events handled, or null if the simulation is not profiled. */
+	private transient EventProfiler.EntityProfile profile;
+
 	/**
 	 * Creates a new entity.
 	 * 
@@ -275,6 +293,105 @@ public abstract class SimEntity implements Cloneable {
 		scheduleFirst(dest, 0, tag, null);
 	}
 
+	/**
+	 * Sends an event with the given tag to this entity after each period, until the timer is
+	 * cancelled with {@link #cancelTimer(int)}. This replaces cancelling the pending event and
+	 * scheduling the next one by hand on every firing: the next event is scheduled once the entity
+	 * has handled the current one, without searching the future queue. The entity has at most one
+	 * timer per tag, so a pending timer with the same tag is replaced.
+	 * 
+	 * @param tag the tag of the timer events
+	 * @param period the time between two events, from now on
+	 * @throws IllegalArgumentException if the period is not positive
+	 */
+	public void schedulePeriodic(int tag, double period) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("The period of a timer should be positive, but is:" + period);
+		}
+		if (!CloudSim.running()) {
+			return;
+		}
+		CloudSim.setTimer(id, tag, period, period);
+	}
+
+	/**
+	 * Sends an event with the given tag to this entity after a delay, replacing the pending event
+	 * of its timer with the same tag if any. Repeated requests are thus coalesced into a single
+	 * event, sent after the delay of the last one, without searching the future queue.
+	 * 
+	 * @param tag the tag of the timer event
+	 * @param delay how long from the current simulation time the event should be sent
+	 */
+	public void scheduleCoalesced(int tag, double delay) {
+		if (!CloudSim.running()) {
+			return;
+		}
+		CloudSim.setTimer(id, tag, delay, 0);
+	}
+
+	/**
+	 * Cancels the timer of this entity with the given tag and its pending event.
+	 * 
+	 * @param tag the tag of the timer events
+	 * @return true, if the entity had a timer with that tag
+	 * @see #schedulePeriodic(int, double)
+	 * @see #scheduleCoalesced(int, double)
+	 */
+	public boolean cancelTimer(int tag) {
+		if (!CloudSim.running()) {
+			return false;
+		}
+		return CloudSim.cancelTimer(id, tag);
+	}
+
+	/**
+	 * Suspends the periodic timer of this entity with the given tag, when its next events are known
+	 * to change nothing until the entity receives another event. Its events are skipped until then,
+	 * and the timer resumes at its first period boundary from the time of that event.
+	 * 
+	 * @param tag the tag of the timer events
+	 * @return true, if the entity has a periodic timer with that tag
+	 * @see #suspendTimer(int, double)
+	 */
+	public boolean suspendTimer(int tag) {
+		return suspendTimer(tag, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Suspends the periodic timer of this entity with the given tag, when its next events are known
+	 * to change nothing until the entity receives another event or until a given delay, e.g. the
+	 * time the next cloudlet finishes. Its events are skipped until then, and the timer fires again
+	 * at its first period boundary from the time of that event or after that delay. The skipped
+	 * interval is thus seen by the entity as a single long period.
+	 * 
+	 * @param tag the tag of the timer events
+	 * @param maxDelay the longest time to suspend the timer for
+	 * @return true, if the entity has a periodic timer with that tag
+	 * @see #schedulePeriodic(int, double)
+	 */
+	public boolean suspendTimer(int tag, double maxDelay) {
+		if (!CloudSim.running()) {
+			return false;
+		}
+		return CloudSim.suspendTimer(id, tag, maxDelay);
+	}
+
+	/**
+	 * Resumes the suspended timer of this entity with the given tag at its first period boundary
+	 * from now, when the entity has changed its state without receiving an event, e.g. while
+	 * handling the events of another timer.
+	 * 
+	 * @param tag the tag of the timer events
+	 * @return true, if the timer was suspended
+	 * @see #suspendTimer(int, double)
+	 */
+	public boolean resumeTimer(int tag) {
+		if (!CloudSim.running()) {
+			return false;
+		}
+		return CloudSim.resumeTimer(id, tag);
+	}
+
 	/**
 	 * Set the entity to be inactive for a time period.
 	 * 
@@ -348,10 +465,7 @@ public abstract class SimEntity implements Cloneable {
 		if (!CloudSim.running()) {
 			return null;
 		}
-		if (numEventsWaiting(p) > 0) {
-			return selectEvent(p);
-		}
-		return null;
+		return CloudSim.select(id, p);
 	}
 
 	/**
@@ -399,11 +513,56 @@ public abstract class SimEntity implements Cloneable {
 	 */
 	public abstract void shutdownEntity();
 
+	/**
+	 * Checks whether the entity can be run in parallel with the other entities which have work to do
+	 * in the same clock tick, when a parallelism is set with {@link CloudSim#setParallelism(int)}.
+	 * An entity should only return <tt>true</tt> if it shares no mutable state with the other
+	 * entities except through events: its state is not read or modified directly by them, it does
+	 * not modify the objects it has received from or sent to them, and it does not use static
+	 * state. Otherwise it is run on its own, in the order of the entity ids.
+	 * 
+	 * @return true, if the entity can be run in parallel; false by default
+	 */
+	protected boolean isParallelizable() {
+		return false;
+	}
+
 	public void run() {
+		if (profile != null) {
+			runProfiled();
+			return;
+		}
+		SimEvent ev = evbuf != null ? evbuf : getNextEvent();
+
+		while (ev != null) {
+			processEvent(ev);
+			if (ev.getPeriod() >= 0) {
+				CloudSim.getSimulation().timerHandled(id, ev);
+			}
+			if (state != RUNNABLE) {
+				break;
+			}
+
+			ev = getNextEvent();
+		}
+
+		evbuf = null;
+	}
+
+	/**
+	 * Handles the events as {@link #run()} does and records their statistics.
+	 */
+	private void runProfiled() {
 		SimEvent ev = evbuf != null ? evbuf : getNextEvent();
 
 		while (ev != null) {
+			ev.setEndWaitingTime(profile.clock());
+			long start = System.nanoTime();
 			processEvent(ev);
+			profile.record(ev, System.nanoTime() - start);
+			if (ev.getPeriod() >= 0) {
+				CloudSim.getSimulation().timerHandled(id, ev);
+			}
 			if (state != RUNNABLE) {
 				break;
 			}
@@ -428,6 +587,10 @@ public abstract class SimEntity implements Cloneable {
 		SimEntity copy = (SimEntity) super.clone();
 		copy.setName(name);
 		copy.setEventBuffer(null);
+		copy.deferred = new DeferredQueue();
+		copy.timers = null;
+		copy.suspended = null;
+		copy.profile = null;
 		return copy;
 	}
 
@@ -461,6 +624,132 @@ public abstract class SimEntity implements Cloneable {
 		return evbuf;
 	}
 
+	/**
+	 * Gets the pending event of a timer of the entity.
+	 * 
+	 * @param tag the tag of the timer
+	 * @return the event, or null if the entity has no timer with that tag
+	 */
+	SimEvent getTimer(int tag) {
+		return timers == null ? null : timers.get(tag);
+	}
+
+	/**
+	 * Sets the pending event of a timer of the entity.
+	 * 
+	 * @param tag the tag of the timer
+	 * @param e the event
+	 * @return the previous event of the timer, or null if there was none
+	 */
+	SimEvent putTimer(int tag, SimEvent e) {
+		if (timers == null) {
+			timers = new IntMap<SimEvent>();
+		}
+		SimEvent previous = timers.get(tag);
+		timers.put(tag, e);
+		return previous;
+	}
+
+	/**
+	 * Removes a timer of the entity.
+	 * 
+	 * @param tag the tag of the timer
+	 * @return the pending event of the timer, or null if there was none
+	 */
+	SimEvent removeTimer(int tag) {
+		if (timers == null) {
+			return null;
+		}
+		SimEvent previous = timers.get(tag);
+		if (previous != null) {
+			timers.remove(tag);
+		}
+		return previous;
+	}
+
+	/**
+	 * Checks if the entity has suspended timers.
+	 * 
+	 * @return true, if at least one timer is suspended
+	 */
+	boolean hasSuspendedTimers() {
+		return suspended != null;
+	}
+
+	/**
+	 * Gets the suspended timers of the entity.
+	 * 
+	 * @param markers the list the markers of the suspended timers are added to
+	 */
+	void getSuspendedTimers(List<SimEvent> markers) {
+		if (suspended != null) {
+			suspended.values(markers);
+		}
+	}
+
+	/**
+	 * Suspends a timer of the entity.
+	 * 
+	 * @param tag the tag of the timer
+	 * @param marker the marker of the suspended timer, whose time is its next period boundary
+	 */
+	void putSuspendedTimer(int tag, SimEvent marker) {
+		if (suspended == null) {
+			suspended = new IntMap<SimEvent>();
+		}
+		suspended.put(tag, marker);
+	}
+
+	/**
+	 * Forgets a suspended timer of the entity.
+	 * 
+	 * @param tag the tag of the timer
+	 * @return the marker of the suspended timer, or null if it was not suspended
+	 */
+	SimEvent removeSuspendedTimer(int tag) {
+		if (suspended == null) {
+			return null;
+		}
+		SimEvent marker = suspended.get(tag);
+		if (marker != null) {
+			suspended.remove(tag);
+			if (suspended.size() == 0) {
+				suspended = null;
+			}
+		}
+		return marker;
+	}
+
+	/**
+	 * Forgets all the suspended timers of the entity.
+	 * 
+	 * @return the markers of the suspended timers
+	 */
+	List<SimEvent> removeSuspendedTimers() {
+		List<SimEvent> markers = new ArrayList<SimEvent>();
+		getSuspendedTimers(markers);
+		suspended = null;
+		return markers;
+	}
+
+	/**
+	 * Sets the statistics of the events handled by the entity.
+	 * 
+	 * @param profile the statistics, or null to stop profiling the entity
+	 */
+	void setProfile(EventProfiler.EntityProfile profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * Gets the deferred queue of the entity.
+	 * 
+	 * @return the deferred queue
+	 */
+	DeferredQueue getDeferredQueue() {
+		return deferred;
+	}
+
 	// The entity states
 	/** The Constant RUNNABLE. */
 	public static final int RUNNABLE = 0;
@@ -8,6 +8,8 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
+
 /**
  * This class represents a simulation event which is passed between the entities in the simulation.
  * 
@@ -15,7 +17,9 @@ package org.cloudbus.cloudsim.core;
  * @see Simulation
  * @see org.cloudbus.cloudsim.core.SimEntity
  */
-public class SimEvent implements Cloneable, Comparable<SimEvent> {
+public class SimEvent implements Cloneable, Comparable<SimEvent>, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	/** internal event type **/
 	private final int etype;
@@ -40,6 +44,23 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 
 	private long serial = -1;
 
+	/** the position of the event in the order of a distributed simulation, null otherwise **/
+	private long[] order;
+
+	/** the state of this event in the future queue **/
+	private int queueState = NOT_QUEUED;
+
+	/** the period of the timer this event belongs to, 0 for a one-shot timer, -1 if it is not a timer **/
+	private double period = -1;
+
+	// States of an event in the future queue
+
+	static final int NOT_QUEUED = 0;
+
+	static final int QUEUED = 1;
+
+	static final int CANCELLED = 2;
+
 	// Internal event types
 
 	public static final int ENULL = 0;
@@ -86,6 +107,105 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		this.serial = serial;
 	}
 
+	/**
+	 * Gets the serial number assigned by the future queue.
+	 * 
+	 * @return the serial
+	 */
+	long getSerial() {
+		return serial;
+	}
+
+	/**
+	 * Gets the position of this event in the order of a distributed simulation, which replaces its
+	 * serial number.
+	 * 
+	 * @return the position, or null if the simulation is not distributed
+	 */
+	long[] getOrder() {
+		return order;
+	}
+
+	/**
+	 * Sets the position of this event in the order of a distributed simulation.
+	 * 
+	 * @param order the position
+	 */
+	void setOrder(long[] order) {
+		this.order = order;
+	}
+
+	/**
+	 * Checks whether an event with the same time precedes another one, by serial number, or by
+	 * position in a distributed simulation. The positions are compared in lexicographic order.
+	 * 
+	 * @param a the first event
+	 * @param b the second event
+	 * @return true, if <tt>a</tt> precedes <tt>b</tt>
+	 */
+	static boolean precedes(SimEvent a, SimEvent b) {
+		long[] x = a.order;
+		if (x == null) {
+			return a.serial < b.serial;
+		}
+		long[] y = b.order;
+		int n = Math.min(x.length, y.length);
+		for (int i = 0; i < n; i++) {
+			if (x[i] != y[i]) {
+				return x[i] < y[i];
+			}
+		}
+		return x.length < y.length;
+	}
+
+	/**
+	 * Gets the state of this event in the future queue.
+	 * 
+	 * @return the queue state
+	 */
+	int getQueueState() {
+		return queueState;
+	}
+
+	/**
+	 * Sets the state of this event in the future queue.
+	 * 
+	 * @param queueState the queue state
+	 */
+	void setQueueState(int queueState) {
+		this.queueState = queueState;
+	}
+
+	/**
+	 * Gets the period of the timer this event belongs to.
+	 * 
+	 * @return the period, 0 for a one-shot timer, or -1 if the event is not a timer event
+	 */
+	double getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Checks if this event is the pending event of a timer, armed with
+	 * {@link SimEntity#schedulePeriodic(int, double)} or
+	 * {@link SimEntity#scheduleCoalesced(int, double)}. Such an event is only to be cancelled
+	 * through its timer, e.g. with {@link SimEntity#cancelTimer(int)}.
+	 * 
+	 * @return true, if the event belongs to a timer
+	 */
+	public boolean isTimerEvent() {
+		return period >= 0;
+	}
+
+	/**
+	 * Makes this event a timer event.
+	 * 
+	 * @param period the period of the timer, 0 for a one-shot timer
+	 */
+	void setPeriod(double period) {
+		this.period = period;
+	}
+
 	/**
 	 * Used to set the time at which this event finished waiting in the event
 	 * 
@@ -123,7 +243,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 			return -1;
 		} else if (time > event.time) {
 			return 1;
-		} else if (serial < event.serial) {
+		} else if (precedes(this, event)) {
 			return -1;
 		} else if (this == event) {
 			return 0;
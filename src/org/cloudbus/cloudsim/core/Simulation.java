@@ -0,0 +1,2140 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * The state of one simulation: its clock, its entities, its future event queue and the settings
+ * given to {@link CloudSim#init(int, Calendar, boolean)}. The static methods of {@link CloudSim}
+ * act on the simulation of the current thread, which is a default instance shared by all threads
+ * unless another one has been bound with {@link CloudSim#setSimulation(Simulation)}. Binding a new
+ * instance to each thread allows several independent simulations to run concurrently in the same
+ * JVM, e.g. the runs of a parameter sweep.
+ * <p>
+ * The entities, hosts and policies of a simulation call back into {@link CloudSim}, so the
+ * simulation must be bound to the thread which creates and runs them. The global state kept
+ * outside of the simulation, such as the {@link Log} output and the network topology, is still
+ * shared by all the simulations.
+ * 
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim#setSimulation(Simulation)
+ */
+public class Simulation implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The Constant CLOUDSIM_VERSION_STRING. */
+	private static final String CLOUDSIM_VERSION_STRING = "3.0";
+
+	/** The id of CIS entity. */
+	private int cisId = -1;
+
+	/** The id of CloudSimShutdown entity. */
+	@SuppressWarnings("unused")
+	private int shutdownId = -1;
+
+	/** The CIS object. */
+	private CloudInformationService cis = null;
+
+	/** The Constant NOT_FOUND. */
+	private static final int NOT_FOUND = -1;
+
+	/** The trace flag. */
+	@SuppressWarnings("unused")
+	private boolean traceFlag = false;
+
+	/** The calendar. */
+	private Calendar calendar = null;
+
+	/** The termination time. */
+	private double terminateAt = -1;
+
+	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
+	private double minTimeBetweenEvents = 0.1;
+
+	/** The length of a clock tick, or 0 if the event times are not rounded. */
+	private double timeResolution = 0;
+
+	/** The pool running the entities of a clock tick in parallel, or null to run them sequentially. */
+	private transient ForkJoinPool pool = null;
+
+	/** The time after which a checkpoint is written, or -1 if none has been requested. */
+	private transient double checkpointTime = -1;
+
+	/** The name of the checkpoint file. */
+	private transient String checkpointFile = null;
+
+	/** The state attached to the checkpoint. */
+	private transient Serializable checkpointAttachment = null;
+
+	/** The profiler of the events handled by the entities, or null if they are not profiled. */
+	private transient EventProfiler profiler = null;
+
+	/** The recorder of the processed events, or null if they are not recorded. */
+	private transient EventTraceWriter eventTrace = null;
+
+	/** The process of a distributed simulation, or null if the simulation runs in this process only. */
+	private transient LogicalProcess logicalProcess = null;
+	
+	/**
+	 * Initialises all the common attributes.
+	 * 
+	 * @param _calendar the _calendar
+	 * @param _traceFlag the _trace flag
+	 * @param numUser number of users
+	 * @throws Exception This happens when creating this entity before initialising CloudSim package
+	 *             or this entity name is <tt>null</tt> or empty
+	 * @pre $none
+	 * @post $none
+	 */
+	private void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser)
+			throws Exception {
+		initialize();
+		// NOTE: the order for the below 3 lines are important
+		traceFlag = _traceFlag;
+
+		// Set the current Wall clock time as the starting time of
+		// simulation
+		if (_calendar == null) {
+			calendar = Calendar.getInstance();
+		} else {
+			calendar = _calendar;
+		}
+
+		// creates a CloudSimShutdown object
+		CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
+		shutdownId = shutdown.getId();
+	}
+
+	/**
+	 * Initialises CloudSim parameters. This method should be called before creating any entities.
+	 * <p>
+	 * Inside this method, it will create the following CloudSim entities:
+	 * <ul>
+	 * <li>CloudInformationService.
+	 * <li>CloudSimShutdown
+	 * </ul>
+	 * <p>
+	 * 
+	 * @param numUser the number of User Entities created. This parameters indicates that
+	 *            {@link gridsim.CloudSimShutdown} first waits for all user entities's
+	 *            END_OF_SIMULATION signal before issuing terminate signal to other entities
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @see gridsim.CloudSimShutdown
+	 * @see org.cloudbus.cloudsim.core.CloudInformationService.CloudInformationService
+	 * @pre numUser >= 0
+	 * @post $none
+	 */
+	public void init(int numUser, Calendar cal, boolean traceFlag) {
+		try {
+			initCommonVariable(cal, traceFlag, numUser);
+
+			// create a GIS object
+			cis = new CloudInformationService("CloudInformationService");
+
+			// set all the above entity IDs
+			cisId = cis.getId();
+		} catch (IllegalArgumentException s) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(s.getMessage());
+		} catch (Exception e) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(e.getMessage());
+		}
+	}
+
+	/**
+	 * Initialises CloudSim parameters. This method should be called before creating any entities.
+	 * <p>
+	 * Inside this method, it will create the following CloudSim entities:
+	 * <ul>
+	 * <li>CloudInformationService.
+	 * <li>CloudSimShutdown
+	 * </ul>
+	 * <p>
+	 * 
+	 * @param numUser the number of User Entities created. This parameters indicates that
+	 *            {@link gridsim.CloudSimShutdown} first waits for all user entities's
+	 *            END_OF_SIMULATION signal before issuing terminate signal to other entities
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param periodBetweenEvents - the minimal period between events. Events within shorter periods
+	 * after the last event are discarded.
+	 * @see gridsim.CloudSimShutdown
+	 * @see org.cloudbus.cloudsim.core.CloudInformationService.CloudInformationService
+	 * @pre numUser >= 0
+	 * @post $none
+	 */
+	public void init(int numUser, Calendar cal, boolean traceFlag, double periodBetweenEvents) {
+	    if (periodBetweenEvents <= 0) {
+		throw new IllegalArgumentException("The minimal time between events should be positive, but is:" + periodBetweenEvents);
+	    }
+	    
+	    init(numUser, cal, traceFlag);
+	    minTimeBetweenEvents = periodBetweenEvents;
+	}
+
+	/**
+	 * Initialises CloudSim parameters using the given storage for the future event queue. This
+	 * method should be called before creating any entities.
+	 * <p>
+	 * The default future event queue is a {@link HeapEventQueue}. A {@link CalendarEventQueue} may
+	 * perform better when many events are spread over time, as in simulations with periodic
+	 * scheduling intervals.
+	 * 
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param futureEventQueue the empty event queue used to store the future events
+	 * @see #init(int, Calendar, boolean)
+	 * @pre numUser >= 0
+	 * @pre futureEventQueue != null
+	 * @post $none
+	 */
+	public void init(int numUser, Calendar cal, boolean traceFlag, EventQueue futureEventQueue) {
+		if (futureEventQueue == null || futureEventQueue.size() > 0) {
+			throw new IllegalArgumentException("The future event queue should be empty and not null.");
+		}
+
+		init(numUser, cal, traceFlag);
+		future = new FutureQueue(futureEventQueue);
+	}
+	
+	
+	
+	/**
+	 * Starts the execution of CloudSim simulation. It waits for complete execution of all entities,
+	 * i.e. until all entities threads reach non-RUNNABLE state or there are no more events in the
+	 * future event queue.
+	 * <p>
+	 * <b>Note</b>: This method should be called after all the entities have been setup and added.
+	 * 
+	 * @return the double
+	 * @throws NullPointerException This happens when creating this entity before initialising
+	 *             CloudSim package or this entity name is <tt>null</tt> or empty.
+	 * @see gridsim.CloudSim#init(int, java.util.Calendar, boolean)
+	 * @pre $none
+	 * @post $none
+	 */
+	public double startSimulation() throws NullPointerException {
+		Log.printLine("Starting CloudSim version " + CLOUDSIM_VERSION_STRING);
+		try {
+			double clock = run();
+
+			// reset the settings of the simulation
+			cisId = -1;
+			shutdownId = -1;
+			cis = null;
+			calendar = null;
+			traceFlag = false;
+
+			return clock;
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			throw new NullPointerException("CloudSim.startCloudSimulation() :"
+					+ " Error - you haven't initialized CloudSim.");
+		}
+	}
+
+	/**
+	 * Stops Cloud Simulation (based on {@link Simulation#runStop()}). This should be only called if
+	 * any of the user defined entities <b>explicitly</b> want to terminate simulation during
+	 * execution.
+	 * 
+	 * @throws NullPointerException This happens when creating this entity before initialising
+	 *             CloudSim package or this entity name is <tt>null</tt> or empty
+	 * @see gridsim.CloudSim#init(int, java.util.Calendar, boolean)
+	 * @see Simulation#runStop()
+	 * @pre $none
+	 * @post $none
+	 */
+	public void stopSimulation() throws NullPointerException {
+		try {
+			runStop();
+		} catch (IllegalArgumentException e) {
+			throw new NullPointerException("CloudSim.stopCloudSimulation() : "
+					+ "Error - can't stop Cloud Simulation.");
+		}
+	}
+
+	/**
+	 * This method is called if one wants to terminate the simulation.
+	 * 
+	 * @return true, if successful; false otherwise.
+	 */
+	public boolean terminateSimulation() {
+		running = false;
+		printMessage("Simulation: Reached termination time.");
+		return true;
+	}
+
+	/**
+	 * This method is called if one wants to terminate the simulation at a given time.
+	 * 
+	 * @param time the time at which the simulation has to be terminated
+	 * @return true, if successful otherwise.
+	 */
+	public boolean terminateSimulation(double time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			terminateAt = time;
+		}
+		return true;
+	}
+
+	
+	/**
+	 * Returns the minimum time between events. Events within shorter periods after the last event are discarded. 
+	 * @return the minimum time between events.
+	 */
+	public double getMinTimeBetweenEvents() {
+	    return minTimeBetweenEvents;
+	}
+
+	/**
+	 * Sets a fixed resolution of the simulation time. The time of every event sent from now on is
+	 * rounded to the nearest whole number of ticks of this length, so the events due in the same
+	 * tick have exactly the same time and are delivered together, and times can be compared as
+	 * whole numbers of ticks with {@link #toTicks(double)}. The times are still given as
+	 * <tt>double</tt> values to the rest of the API; the time of a given tick is always the same
+	 * value, so it can be compared with <tt>==</tt>.
+	 * 
+	 * @param resolution the length of a tick, or 0 to keep the event times as they are, as by
+	 *            default
+	 * @throws IllegalArgumentException if the resolution is negative
+	 */
+	public void setTimeResolution(double resolution) {
+		if (resolution < 0 || Double.isNaN(resolution) || Double.isInfinite(resolution)) {
+			throw new IllegalArgumentException("The time resolution should be positive or 0, but is:" + resolution);
+		}
+		timeResolution = resolution;
+	}
+
+	/**
+	 * Gets the resolution of the simulation time.
+	 * 
+	 * @return the length of a tick, or 0 if the event times are not rounded
+	 * @see #setTimeResolution(double)
+	 */
+	public double getTimeResolution() {
+		return timeResolution;
+	}
+
+	/**
+	 * Converts a time to a number of ticks.
+	 * 
+	 * @param time the time
+	 * @return the nearest whole number of ticks
+	 * @throws IllegalStateException if no time resolution has been set
+	 * @see #setTimeResolution(double)
+	 */
+	public long toTicks(double time) {
+		if (timeResolution == 0) {
+			throw new IllegalStateException("No time resolution has been set.");
+		}
+		return Math.round(time / timeResolution);
+	}
+
+	/**
+	 * Converts a number of ticks to a time.
+	 * 
+	 * @param ticks the number of ticks
+	 * @return the time of the tick
+	 * @throws IllegalStateException if no time resolution has been set
+	 * @see #setTimeResolution(double)
+	 */
+	public double toTime(long ticks) {
+		if (timeResolution == 0) {
+			throw new IllegalStateException("No time resolution has been set.");
+		}
+		return ticks * timeResolution;
+	}
+
+	/**
+	 * Gets the current simulation time as a number of ticks.
+	 * 
+	 * @return the number of ticks
+	 * @throws IllegalStateException if no time resolution has been set
+	 * @see #setTimeResolution(double)
+	 */
+	public long clockTicks() {
+		return toTicks(clock);
+	}
+
+	/**
+	 * Checks if a time is a whole number of periods. With a time resolution, the times are
+	 * compared as numbers of ticks, which is exact. Otherwise, the remainder of the division is
+	 * compared with 0, which only holds if neither time carries a rounding error: the check is
+	 * only robust once a time resolution has been set with {@link #setTimeResolution(double)}.
+	 * 
+	 * @param time the time
+	 * @param period the period
+	 * @return true, if the time is a multiple of the period
+	 */
+	public boolean isPeriodBoundary(double time, double period) {
+		if (timeResolution == 0) {
+			return time % period == 0;
+		}
+		long ticks = toTicks(period);
+		return ticks != 0 && toTicks(time) % ticks == 0;
+	}
+
+	/**
+	 * Gets the time of an event sent now with a delay, rounded to the time resolution if one has
+	 * been set.
+	 * 
+	 * @param delay the delay
+	 * @return the time of the event, not before the current time
+	 */
+	private double eventTime(double delay) {
+		return roundTime(clock + delay);
+	}
+
+	/**
+	 * Rounds a time to the time resolution if one has been set.
+	 * 
+	 * @param time the time
+	 * @return the rounded time, not before the current time
+	 */
+	private double roundTime(double time) {
+		if (timeResolution > 0) {
+			double rounded = Math.round(time / timeResolution) * timeResolution;
+			time = rounded < clock ? clock : rounded;
+		}
+		return time;
+	}
+
+	/**
+	 * Sets the number of threads running the entities which have work to do in the same clock
+	 * tick. With more than one thread, the entities given events with the same time which return
+	 * true from {@link SimEntity#isParallelizable()} are run in parallel, one task per entity; the
+	 * other entities are run on their own, in the order of the entity ids. The events the entities
+	 * run in parallel send or cancel, the entities they create and the messages they log are
+	 * buffered and applied after the tick in the order of the entity ids, as they would be when run
+	 * sequentially. The entities they create get their ids only after the tick.
+	 * <p>
+	 * This only protects the state held by the simulation. The simulation gives the same results
+	 * as when run sequentially only if the entities run in parallel do not share any other mutable
+	 * state, such as the objects handed from one entity to another (VMs, cloudlets, hosts) or
+	 * static state like {@link org.cloudbus.cloudsim.util.ExecutionTimeMeasurer}. No entity of the
+	 * toolkit is run in parallel by default.
+	 * 
+	 * @param parallelism the number of threads; 1 runs the entities sequentially, as by default
+	 * @throws IllegalArgumentException if the parallelism is not positive
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism should be positive, but is:" + parallelism);
+		}
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		if (parallelism > 1) {
+			pool = new ForkJoinPool(parallelism);
+		}
+	}
+
+	/**
+	 * Gets the number of threads running the entities which have work to do in the same clock
+	 * tick.
+	 * 
+	 * @return the parallelism, 1 if the entities are run sequentially
+	 * @see #setParallelism(int)
+	 */
+	public int getParallelism() {
+		return pool == null ? 1 : pool.getParallelism();
+	}
+
+	/**
+	 * Enables or disables the profiling of the events handled by the entities. While it is
+	 * enabled, the number of events, the time they stay in the deferred queues and the wall-clock
+	 * time spent handling them are collected by entity and by tag, and printed when the simulation
+	 * finishes. The statistics are kept until the next call to this method or to
+	 * {@link #init(int, Calendar, boolean)}, which starts them again if the profiling is enabled.
+	 * When it is disabled, the profiling costs nothing.
+	 * 
+	 * @param enabled true to profile the events
+	 * @see #getEventProfiler()
+	 */
+	public void setProfiling(boolean enabled) {
+		profiler = enabled ? new EventProfiler(this) : null;
+		if (entities != null) {
+			for (SimEntity ent : entities) {
+				if (profiler == null) {
+					ent.setProfile(null);
+				} else {
+					profiler.attach(ent);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the events handled by the entities are profiled.
+	 * 
+	 * @return true, if the profiling is enabled
+	 */
+	public boolean isProfiling() {
+		return profiler != null;
+	}
+
+	/**
+	 * Gets the statistics of the events handled by the entities.
+	 * 
+	 * @return the profiler, or null if the profiling is disabled
+	 * @see #setProfiling(boolean)
+	 */
+	public EventProfiler getEventProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * Requests a checkpoint of the simulation to be written once all the events up to the given
+	 * time have been processed. The simulation then goes on as usual. A new simulation can be
+	 * resumed from the checkpoint with {@link CloudSim#restore(String)}, e.g. to compare several policies
+	 * from the same warm state without simulating the warm-up again.
+	 * <p>
+	 * All the entities and the objects they reference, including the data of the pending events,
+	 * must be serializable. Static fields are not saved, so any other state needed to carry on the
+	 * simulation, such as the lists kept by a runner, should be passed as the attachment. This
+	 * method should be called after {@link #init(int, Calendar, boolean)}.
+	 * 
+	 * @param time the simulation time of the checkpoint
+	 * @param fileName the name of the checkpoint file
+	 * @param attachment the state to save with the checkpoint, may be null
+	 * @throws IllegalArgumentException if the time is negative or the file name is null
+	 */
+	public void checkpointAt(double time, String fileName, Serializable attachment) {
+		if (time < 0 || fileName == null) {
+			throw new IllegalArgumentException("A checkpoint needs a positive time and a file name.");
+		}
+		checkpointTime = time;
+		checkpointFile = fileName;
+		checkpointAttachment = attachment;
+	}
+
+	/**
+	 * Writes the requested checkpoint if all the events up to its time have been delivered and
+	 * handled. It should be called once the entities with work to do have been run, so that the
+	 * first future event is the next one of the simulation.
+	 */
+	private void checkpointIfDue() {
+		if (checkpointTime >= 0 && future.size() > 0 && future.first().eventTime() > checkpointTime) {
+			writeCheckpoint();
+		}
+	}
+
+	/**
+	 * Writes the requested checkpoint.
+	 */
+	private void writeCheckpoint() {
+		Checkpoint checkpoint = new Checkpoint(this, checkpointAttachment);
+		try {
+			checkpoint.write(checkpointFile);
+			printMessage("Checkpoint written at " + clock + " to " + checkpointFile);
+		} catch (IOException e) {
+			new File(checkpointFile).delete();
+			Log.printLine("CloudSim.checkpoint(): The checkpoint could not be written");
+			Log.printLine(e.toString());
+		}
+		checkpointTime = -1;
+		checkpointFile = null;
+		checkpointAttachment = null;
+	}
+
+	/**
+	 * Records every event processed from now on in a binary trace file, which can be inspected
+	 * with {@link EventTraceReader}. Each event takes a fixed-width record appended to a part of
+	 * the file mapped in memory, so the recording is cheap enough to be left on for long runs,
+	 * unlike the trace written by {@link Log}. The file is completed and closed when the simulation
+	 * finishes. This method should be called after {@link #init(int, Calendar, boolean)}.
+	 * 
+	 * @param fileName the name of the trace file, replaced if it exists
+	 * @throws IOException if the file cannot be created
+	 * @see EventTraceReader#main(String[])
+	 */
+	public void recordEventTrace(String fileName) throws IOException {
+		if (eventTrace != null) {
+			eventTrace.close(entities);
+		}
+		eventTrace = new EventTraceWriter(fileName);
+	}
+
+	/**
+	 * Runs the simulation as one of the processes of a distributed simulation. Only the entities of
+	 * the partition of the process are run, and the events sent to the entities of the other
+	 * partitions are forwarded to their processes. This method should be called after all the
+	 * entities have been created, before starting the simulation; the process is used by the next
+	 * run only.
+	 * 
+	 * @param process the process, or null to run the simulation in this process only
+	 * @see LogicalProcess
+	 */
+	public void setLogicalProcess(LogicalProcess process) {
+		logicalProcess = process;
+	}
+
+	/**
+	 * Gets the process of the distributed simulation.
+	 * 
+	 * @return the process, or null if the simulation runs in this process only
+	 */
+	public LogicalProcess getLogicalProcess() {
+		return logicalProcess;
+	}
+
+	/**
+	 * Gets a new copy of initial simulation Calendar.
+	 * 
+	 * @return a new copy of Calendar object or if CloudSim hasn't been initialized
+	 * @see gridsim.CloudSim#init(int, java.util.Calendar, boolean, String[], String[], String)
+	 * @see gridsim.CloudSim#init(int, java.util.Calendar, boolean)
+	 * @pre $none
+	 * @post $none
+	 */
+	public Calendar getSimulationCalendar() {
+		// make a new copy
+		Calendar clone = calendar;
+		if (calendar != null) {
+			clone = (Calendar) calendar.clone();
+		}
+
+		return clone;
+	}
+
+	/**
+	 * Gets the entity ID of <tt>CloudInformationService</tt>.
+	 * 
+	 * @return the Entity ID or if it is not found
+	 * @pre $none
+	 * @post $result >= -1
+	 */
+	public int getCloudInfoServiceEntityId() {
+		return cisId;
+	}
+
+	/**
+	 * Sends a request to Cloud Information Service (GIS) entity to get the list of all Cloud
+	 * hostList.
+	 * 
+	 * @return A List containing CloudResource ID (as an Integer object) or if a CIS entity hasn't
+	 *         been created before
+	 * @pre $none
+	 * @post $none
+	 */
+	public List<Integer> getCloudResourceList() {
+		if (cis == null) {
+			return null;
+		}
+
+		return cis.getList();
+	}
+
+	// ======== SIMULATION METHODS ===============//
+
+	/** The entities. */
+	private List<SimEntity> entities;
+
+	/** The future event queue. */
+	private FutureQueue future;
+
+	/** The simulation clock. */
+	private double clock;
+
+	/** Flag for checking if the simulation is running. */
+	private boolean running;
+
+	/** The entities by name. */
+	private Map<String, SimEntity> entitiesByName;
+
+	/** The ids of the entities which may have work to do in the next clock tick. */
+	private int[] readyIds;
+
+	/** The number of ids in {@link #readyIds}. */
+	private int readyCount;
+
+	/** The ids of the entities being run in the current clock tick, swapped with {@link #readyIds}. */
+	private transient int[] dispatchIds;
+
+	/** The membership flags of {@link #readyIds}. */
+	private BitSet ready;
+
+	/** The runnable entities of the current clock tick, when they are run in parallel. */
+	private transient SimEntity[] batch;
+
+	/** The number of entities in {@link #batch}. */
+	private transient int batchSize;
+
+	// The predicates used in entity wait methods
+	/** The wait predicates. */
+	private IntMap<Predicate> waitPredicates;
+
+	/** The paused. */
+	private transient volatile boolean paused = false;
+
+	/** The pause at. */
+	private transient double pauseAt = -1;
+
+	/** The abrupt terminate. */
+	private transient boolean abruptTerminate = false;
+
+	// The phases of a clock tick, in the order in which they send events
+
+	/** The phase delivering the events of the tick, which resumes the suspended timers. */
+	private static final int DELIVER = -1;
+
+	/** The phase running the entities which have been given events. */
+	private static final int RUN = 0;
+
+	/** The phase firing the suspended timers before the termination time. */
+	private static final int FIRE = 1;
+
+	/** The number of ticks with the same time as the current one before it. */
+	private transient int generation;
+
+	/** The phase of the current tick. */
+	private transient int phase;
+
+	/** The entity being run or started, or -1. */
+	private transient int runningEntity = -1;
+
+	/** The event being delivered, or null. */
+	private transient SimEvent deliveredEvent;
+
+	/** The number of events sent by this process of a distributed simulation. */
+	private transient long sent;
+
+	/**
+	 * Initialise the simulation for stand alone simulations. This function should be called at the
+	 * start of the simulation.
+	 */
+	void initialize() {
+		Log.printLine("Initialising...");
+		entities = new ArrayList<SimEntity>();
+		entitiesByName = new LinkedHashMap<String, SimEntity>();
+		readyIds = new int[16];
+		readyCount = 0;
+		dispatchIds = new int[16];
+		ready = new BitSet();
+		batch = new SimEntity[16];
+		batchSize = 0;
+		future = new FutureQueue();
+		waitPredicates = new IntMap<Predicate>();
+		clock = 0;
+		running = false;
+		if (profiler != null) {
+			profiler = new EventProfiler(this);
+		}
+	}
+
+	// Public access methods
+
+	/**
+	 * Get the current simulation time.
+	 * 
+	 * @return the simulation time
+	 */
+	public double clock() {
+		return clock;
+	}
+
+	/**
+	 * Get the current number of entities in the simulation.
+	 * 
+	 * @return The number of entities
+	 */
+	public int getNumEntities() {
+		return entities.size();
+	}
+
+	/**
+	 * Get the entity with a given id.
+	 * 
+	 * @param id the entity's unique id number
+	 * @return The entity, or if it could not be found
+	 */
+	public SimEntity getEntity(int id) {
+		return entities.get(id);
+	}
+
+	/**
+	 * Get the entity with a given name.
+	 * 
+	 * @param name The entity's name
+	 * @return The entity
+	 */
+	public SimEntity getEntity(String name) {
+		return entitiesByName.get(name);
+	}
+
+	/**
+	 * Get the id of an entity with a given name.
+	 * 
+	 * @param name The entity's name
+	 * @return The entity's unique id number
+	 */
+	public int getEntityId(String name) {
+		SimEntity obj = entitiesByName.get(name);
+		if (obj == null) {
+			return NOT_FOUND;
+		} else {
+			return obj.getId();
+		}
+	}
+
+	/**
+	 * Gets name of the entity given its entity ID.
+	 * 
+	 * @param entityID the entity ID
+	 * @return the Entity name or if this object does not have one
+	 * @pre entityID > 0
+	 * @post $none
+	 */
+	public String getEntityName(int entityID) {
+		try {
+			return getEntity(entityID).getName();
+		} catch (IllegalArgumentException e) {
+			return null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets name of the entity given its entity ID.
+	 * 
+	 * @param entityID the entity ID
+	 * @return the Entity name or if this object does not have one
+	 * @pre entityID > 0
+	 * @post $none
+	 */
+	public String getEntityName(Integer entityID) {
+		if (entityID != null) {
+			return getEntityName(entityID.intValue());
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a list of entities created for the simulation.
+	 * 
+	 * @return the entity iterator
+	 */
+	public List<SimEntity> getEntityList() {
+		// create a new list to prevent the user from changing
+		// the list of entities used by Simulation
+		List<SimEntity> list = new LinkedList<SimEntity>();
+		list.addAll(entities);
+		return list;
+	}
+
+	// Public update methods
+
+	/**
+	 * Add a new entity to the simulation. This is present for compatibility with existing
+	 * simulations since entities are automatically added to the simulation upon instantiation.
+	 * 
+	 * @param e The new entity
+	 */
+	public void addEntity(SimEntity e) {
+		if (buffer(EntityTask.ADD_ENTITY, -1, e)) {
+			return;
+		}
+		SimEvent evt;
+		if (running && logicalProcess != null) {
+			throw new IllegalStateException("A distributed simulation cannot create entities while it runs.");
+		}
+		if (running) {
+			// Post an event to make this entity
+			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
+			future.addEvent(evt);
+		}
+		if (e.getId() == -1) { // Only add once!
+			int id = entities.size();
+			e.setId(id);
+			entities.add(e);
+			entitiesByName.put(e.getName(), e);
+			markReady(id);
+			if (profiler != null) {
+				profiler.attach(e);
+			}
+		}
+	}
+
+	/**
+	 * Internal method used to add a new entity to the simulation when the simulation is running. It
+	 * should <b>not</b> be called from user simulations.
+	 * 
+	 * @param e The new entity
+	 */
+	void addEntityDynamically(SimEntity e) {
+		if (e == null) {
+			throw new IllegalArgumentException("Adding null entity.");
+		} else {
+			printMessage("Adding: " + e.getName());
+		}
+		e.startEntity();
+	}
+
+	/**
+	 * Internal method used to run one tick of the simulation. This method should <b>not</b> be
+	 * called in simulations.
+	 * 
+	 * @return true, if successful otherwise
+	 */
+	public boolean runClockTick() {
+		runReadyEntities();
+		if (processNextEvents() > 0) {
+			return false;
+		}
+		running = false;
+		printMessage("Simulation: No more future events");
+		return true;
+	}
+
+	/**
+	 * Runs the entities made runnable or given events since the last tick.
+	 */
+	private void runReadyEntities() {
+		SimEntity ent;
+		int entities_size = entities.size();
+
+		// only the entities made runnable or given events since the last tick have work to do;
+		// they are run in the order of their ids, as if all the entities were checked in turn
+		int count = readyCount;
+		int[] ids = readyIds;
+		readyIds = dispatchIds;
+		dispatchIds = ids;
+		readyCount = 0;
+		Arrays.sort(ids, 0, count);
+		for (int i = 0; i < count; i++) {
+			int id = ids[i];
+			if (id >= entities_size) {
+				// added while running this tick, it will be run in the next one
+				readyIds[readyCount++] = id;
+				continue;
+			}
+			ready.clear(id);
+			ent = entities.get(id);
+			if (ent.getState() == SimEntity.RUNNABLE) {
+				if (pool == null) {
+					runningEntity = id;
+					ent.run();
+				} else if (!ent.isParallelizable()) {
+					if (batchSize > 0) {
+						runBatch();
+					}
+					ent.run();
+				} else {
+					if (batchSize == batch.length) {
+						batch = Arrays.copyOf(batch, batchSize * 2);
+					}
+					batch[batchSize++] = ent;
+				}
+			}
+		}
+		if (batchSize > 0) {
+			runBatch();
+		}
+		runningEntity = -1;
+	}
+
+	/**
+	 * Removes the events of the next time from the future queue and delivers them.
+	 * 
+	 * @return the number of events delivered, 0 if the future queue is empty
+	 */
+	private int processNextEvents() {
+		if (logicalProcess == null && terminateAt > 0.0
+				&& (future.size() == 0 || future.first().eventTime() > terminateAt)) {
+			// the suspended timers account for the skipped interval before the simulation ends
+			fireSuspendedTimers();
+		}
+		if (future.size() == 0) {
+			return 0;
+		}
+		SimEvent first = future.removeFirst();
+		generation = first.eventTime() > clock ? 0 : generation + 1;
+		phase = DELIVER;
+		deliveredEvent = first;
+		processEvent(first);
+		int count = 1;
+
+		// Check if next events are at same time...
+		SimEvent next = future.first();
+		while (next != null && next.eventTime() == first.eventTime()) {
+			deliveredEvent = future.removeFirst();
+			processEvent(deliveredEvent);
+			count++;
+			next = future.first();
+		}
+		deliveredEvent = null;
+		phase = RUN;
+		return count;
+	}
+
+	/**
+	 * Runs one tick of the simulation and checks whether it has to stop: because there are no more
+	 * future events, an entity has terminated it or its termination time has been reached. The
+	 * checkpoint requested with {@link #checkpointAt(double, String, Serializable)} is written at the
+	 * start of the first tick past its time, once the entities have handled the earlier events.
+	 * 
+	 * @return the number of events delivered in the tick, or -1 if the simulation has to stop
+	 */
+	private int tick() {
+		runReadyEntities();
+		// once the entities have run, no event up to the time of the next one can be sent any more
+		checkpointIfDue();
+		int count = processNextEvents();
+		if (count == 0) {
+			running = false;
+			printMessage("Simulation: No more future events");
+			return -1;
+		}
+		if (abruptTerminate) {
+			return -1;
+		}
+
+		// this block allows termination of simulation at a specific time
+		if (terminateAt > 0.0 && clock >= terminateAt) {
+			terminateSimulation();
+			clock = terminateAt;
+			return -1;
+		}
+		return count;
+	}
+
+	/**
+	 * Runs the entities of {@link #batch} in parallel and applies the operations they have buffered
+	 * in the order of their ids.
+	 */
+	private void runBatch() {
+		int size = batchSize;
+		batchSize = 0;
+		if (size == 1) {
+			SimEntity ent = batch[0];
+			batch[0] = null;
+			ent.run();
+			return;
+		}
+
+		EntityTask[] tasks = new EntityTask[size];
+		for (int i = 0; i < size; i++) {
+			tasks[i] = new EntityTask(this, batch[i], future);
+			batch[i] = null;
+		}
+
+		EntityTask.LogOutput logOutput = null;
+		if (!Log.isDisabled()) {
+			logOutput = EntityTask.LogOutput.install();
+		}
+		for (int i = 1; i < size; i++) {
+			pool.execute(tasks[i]);
+		}
+		tasks[0].invoke();
+		for (int i = 1; i < size; i++) {
+			tasks[i].join();
+		}
+
+		for (EntityTask task : tasks) {
+			for (int i = 0; i < task.size(); i++) {
+				apply(task.getOperation(i), task.getSource(i), task.getArgument(i));
+			}
+			if (logOutput != null) {
+				try {
+					task.flushLog(logOutput.getOutput());
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Buffers an operation on the shared simulation state if the current thread is running an
+	 * entity in parallel.
+	 * 
+	 * @param operation the operation, as defined in {@link EntityTask}
+	 * @param src the id of the entity performing the operation
+	 * @param argument the argument of the operation
+	 * @return true, if the operation has been buffered and should not be performed now
+	 */
+	private boolean buffer(int operation, int src, Object argument) {
+		EntityTask task = getCurrentTask();
+		if (task == null) {
+			return false;
+		}
+		task.buffer(operation, src, argument);
+		return true;
+	}
+
+	/**
+	 * Gets the task of the entity run in parallel by the current thread.
+	 * 
+	 * @return the task, or null if the current thread is not running an entity in parallel
+	 */
+	private EntityTask getCurrentTask() {
+		return pool == null ? null : EntityTask.current();
+	}
+
+	/**
+	 * Applies an operation buffered by an entity run in parallel.
+	 * 
+	 * @param operation the operation, as defined in {@link EntityTask}
+	 * @param src the id of the entity which performed the operation
+	 * @param argument the argument of the operation
+	 */
+	private void apply(int operation, int src, Object argument) {
+		switch (operation) {
+			case EntityTask.ADD_EVENT:
+				future.addEvent((SimEvent) argument);
+				break;
+			case EntityTask.ADD_EVENT_FIRST:
+				future.addEventFirst((SimEvent) argument);
+				break;
+			case EntityTask.WAIT:
+				waitPredicates.put(src, (Predicate) argument);
+				break;
+			case EntityTask.ADD_ENTITY:
+				addEntity((SimEntity) argument);
+				break;
+			case EntityTask.REMOVE_EVENT:
+				future.remove((SimEvent) argument);
+				break;
+			default:
+				throw new IllegalStateException("Unknown buffered operation: " + operation);
+		}
+	}
+
+	/**
+	 * Marks an entity as having work to do in the next clock tick.
+	 * 
+	 * @param id the id of the entity
+	 */
+	private void markReady(int id) {
+		if (ready.get(id)) {
+			return;
+		}
+		ready.set(id);
+		if (readyCount == readyIds.length) {
+			readyIds = Arrays.copyOf(readyIds, readyCount * 2);
+		}
+		readyIds[readyCount++] = id;
+	}
+
+	/**
+	 * Internal method used to stop the simulation. This method should <b>not</b> be used directly.
+	 */
+	public void runStop() {
+		printMessage("Simulation completed.");
+	}
+
+	/**
+	 * Used to hold an entity for some time.
+	 * 
+	 * @param src the src
+	 * @param delay the delay
+	 */
+	public void hold(int src, long delay) {
+		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, eventTime(delay), src);
+		if (logicalProcess != null) {
+			order(e, false);
+		}
+		if (!buffer(EntityTask.ADD_EVENT, src, e)) {
+			future.addEvent(e);
+		}
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * Used to pause an entity for some time.
+	 * 
+	 * @param src the src
+	 * @param delay the delay
+	 */
+	public void pause(int src, double delay) {
+		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, eventTime(delay), src);
+		if (logicalProcess != null) {
+			order(e, false);
+		}
+		if (!buffer(EntityTask.ADD_EVENT, src, e)) {
+			future.addEvent(e);
+		}
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * Used to send an event from one entity to another.
+	 * 
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 */
+	public void send(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+
+		SimEvent e = new SimEvent(SimEvent.SEND, eventTime(delay), src, dest, tag, data);
+		if (logicalProcess != null && !logicalProcess.route(order(e, false), false, clock)) {
+			return;
+		}
+		if (!buffer(EntityTask.ADD_EVENT, src, e)) {
+			future.addEvent(e);
+		}
+	}
+
+	/**
+	 * Used to send an event from one entity to another, with priority in the queue.
+	 * 
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 */
+	public void sendFirst(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+
+		SimEvent e = new SimEvent(SimEvent.SEND, eventTime(delay), src, dest, tag, data);
+		if (logicalProcess != null && !logicalProcess.route(order(e, true), true, clock)) {
+			return;
+		}
+		if (!buffer(EntityTask.ADD_EVENT_FIRST, src, e)) {
+			future.addEventFirst(e);
+		}
+	}
+
+	/**
+	 * Arms a timer of an entity: an event with the given tag sent by the entity to itself after a
+	 * delay, and every period after that if the timer is periodic. An entity has at most one timer
+	 * per tag, so the pending event of the timer with the same tag, if any, is cancelled. Both
+	 * steps take constant time besides adding the event to the future queue.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @param delay the delay of the first event
+	 * @param period the period of the timer, 0 for a one-shot timer
+	 */
+	public void setTimer(int src, int tag, double delay, double period) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+		if (period < 0) {
+			throw new IllegalArgumentException("The period of a timer can't be negative.");
+		}
+
+		entities.get(src).removeSuspendedTimer(tag);
+		armTimer(src, tag, eventTime(delay), period);
+	}
+
+	/**
+	 * Arms a timer of an entity at a given time, replacing its pending event if any.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @param time the time of the next event
+	 * @param period the period of the timer, 0 for a one-shot timer
+	 */
+	private void armTimer(int src, int tag, double time, double period) {
+		if (logicalProcess != null && !logicalProcess.isLocal(src)) {
+			// the timers of an entity of another partition are armed by its own process
+			return;
+		}
+		SimEvent e = new SimEvent(SimEvent.SEND, time, src, src, tag, null);
+		e.setPeriod(period);
+		if (logicalProcess != null) {
+			order(e, false);
+		}
+		SimEvent pending = entities.get(src).putTimer(tag, e);
+		if (pending != null && !buffer(EntityTask.REMOVE_EVENT, src, pending)) {
+			future.remove(pending);
+		}
+		if (!buffer(EntityTask.ADD_EVENT, src, e)) {
+			future.addEvent(e);
+		}
+	}
+
+	/**
+	 * Sets the position of an event sent by this process of a distributed simulation, so that the
+	 * events with the same time are delivered in the order of their serial numbers in a single
+	 * process, whatever the partitions of their sources. The serial numbers are given in the order
+	 * the events are sent: by the time and the generation of the tick, then by its phase; in the
+	 * delivery phase, by the event being delivered, otherwise by the entity being run, since the
+	 * entities are run in the order of their ids; and last in the order this process sends them.
+	 * The events put ahead of the events with the same time come before all the others.
+	 * 
+	 * @param e the event
+	 * @param first whether the event is put ahead of the events with the same time
+	 * @return the event
+	 */
+	private SimEvent order(SimEvent e, boolean first) {
+		long[] order;
+		if (phase == DELIVER) {
+			// only the events sent by an entity resume timers, so the cause has no cause
+			long[] cause = deliveredEvent.getOrder();
+			order = new long[cause.length + 5];
+			System.arraycopy(cause, 0, order, 4, cause.length);
+		} else {
+			order = new long[6];
+			order[4] = runningEntity;
+		}
+		order[0] = first ? 0 : 1;
+		order[1] = Double.doubleToLongBits(clock);
+		order[2] = generation;
+		order[3] = phase;
+		order[order.length - 1] = sent++;
+		e.setOrder(order);
+		return e;
+	}
+
+	/**
+	 * Cancels a timer of an entity and its pending event.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @return true, if the entity had a timer with that tag
+	 */
+	public boolean cancelTimer(int src, int tag) {
+		entities.get(src).removeSuspendedTimer(tag);
+		SimEvent pending = entities.get(src).removeTimer(tag);
+		if (pending == null) {
+			return false;
+		}
+		if (!buffer(EntityTask.REMOVE_EVENT, src, pending)) {
+			future.remove(pending);
+		}
+		return true;
+	}
+
+	/**
+	 * Called once an entity has handled the event of one of its timers, which is then re-armed if
+	 * it is periodic. Like the timers written by hand, the next event is scheduled after the
+	 * events sent while handling this one.
+	 * 
+	 * @param src the id of the entity
+	 * @param e the timer event
+	 */
+	void timerHandled(int src, SimEvent e) {
+		SimEntity ent = entities.get(src);
+		if (ent.getTimer(e.getTag()) != e) {
+			// the timer has been cancelled or re-armed in the meantime
+			return;
+		}
+		if (e.getPeriod() > 0) {
+			setTimer(src, e.getTag(), e.getPeriod(), e.getPeriod());
+		} else {
+			ent.removeTimer(e.getTag());
+		}
+	}
+
+	/**
+	 * Suspends a periodic timer of an entity whose next events are known to be no-ops until the
+	 * entity receives another event. The events of the timer are skipped without running the entity
+	 * until then: the first event sent to the entity, other than the events of its timers, resumes
+	 * the timer at its first period boundary from the current time. Unless it is resumed before,
+	 * the timer also fires again at its first period boundary after the given delay, and, if the
+	 * simulation has a termination time, at its last period boundary before that time, so that the
+	 * entity can account for the skipped interval.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @param maxDelay the longest time to suspend the timer for, or
+	 *            {@link Double#POSITIVE_INFINITY}
+	 * @return true, if the entity has a periodic timer with that tag
+	 */
+	public boolean suspendTimer(int src, int tag, double maxDelay) {
+		if (maxDelay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+		SimEntity ent = entities.get(src);
+		SimEvent timer = ent.getTimer(tag);
+		if (timer == null || timer.getPeriod() <= 0) {
+			return false;
+		}
+
+		// the timer is either pending, or being handled by the entity
+		double period = timer.getPeriod();
+		double due = timer.eventTime() > clock ? timer.eventTime() : roundTime(timer.eventTime() + period);
+		SimEvent marker = new SimEvent(SimEvent.SEND, due, src, src, tag, null);
+		marker.setPeriod(period);
+		ent.putSuspendedTimer(tag, marker);
+		if (Double.isInfinite(maxDelay) || clock + maxDelay >= Double.MAX_VALUE) {
+			SimEvent pending = ent.putTimer(tag, marker);
+			if (pending != null && !buffer(EntityTask.REMOVE_EVENT, src, pending)) {
+				future.remove(pending);
+			}
+		} else {
+			armTimer(src, tag, nextBoundary(marker, clock + maxDelay), period);
+		}
+		return true;
+	}
+
+	/**
+	 * Resumes the suspended timers of an entity which has received an event.
+	 * 
+	 * @param ent the entity
+	 */
+	private void resumeTimers(SimEntity ent) {
+		for (SimEvent marker : ent.removeSuspendedTimers()) {
+			resumeTimer(ent, marker);
+		}
+	}
+
+	/**
+	 * Resumes a suspended timer of an entity at its first period boundary from the current time,
+	 * e.g. when the entity has changed its state while handling the events of another timer.
+	 * 
+	 * @param src the id of the entity
+	 * @param tag the tag of the timer events
+	 * @return true, if the timer was suspended
+	 */
+	public boolean resumeTimer(int src, int tag) {
+		SimEntity ent = entities.get(src);
+		SimEvent marker = ent.removeSuspendedTimer(tag);
+		if (marker == null) {
+			return false;
+		}
+		resumeTimer(ent, marker);
+		return true;
+	}
+
+	/**
+	 * Resumes a suspended timer of an entity at its first period boundary from the current time,
+	 * unless its pending event is due before.
+	 * 
+	 * @param ent the entity
+	 * @param marker the marker of the suspended timer
+	 */
+	private void resumeTimer(SimEntity ent, SimEvent marker) {
+		double next = nextBoundary(marker, clock);
+		SimEvent pending = ent.getTimer(marker.getTag());
+		if (pending != marker && (pending == null || pending.getQueueState() != SimEvent.QUEUED)) {
+			// the pending event has been cancelled in the meantime
+			return;
+		}
+		if (pending == marker || pending.eventTime() > next) {
+			armTimer(ent.getId(), marker.getTag(), next, marker.getPeriod());
+		}
+	}
+
+	/**
+	 * Arms the timers suspended without a limit at their last period boundary before the
+	 * termination time, once no other event is due before it.
+	 * 
+	 * @return true, if at least one timer has been armed
+	 */
+	private boolean fireSuspendedTimers() {
+		boolean armed = false;
+		List<SimEvent> markers = new ArrayList<SimEvent>();
+		phase = FIRE;
+		for (SimEntity ent : entities) {
+			if (!ent.hasSuspendedTimers()) {
+				continue;
+			}
+			runningEntity = ent.getId();
+			markers.clear();
+			ent.getSuspendedTimers(markers);
+			for (SimEvent marker : markers) {
+				if (ent.getTimer(marker.getTag()) != marker || marker.eventTime() > terminateAt) {
+					continue;
+				}
+				double period = marker.getPeriod();
+				double time = roundTime(marker.eventTime() + Math.floor((terminateAt - marker.eventTime()) / period)
+						* period);
+				if (time < clock) {
+					time = clock;
+				}
+				ent.removeSuspendedTimer(marker.getTag());
+				armTimer(ent.getId(), marker.getTag(), time, period);
+				armed = true;
+			}
+		}
+		runningEntity = -1;
+		phase = RUN;
+		return armed;
+	}
+
+	/**
+	 * Gets the first period boundary of a suspended timer at or after a given time.
+	 * 
+	 * @param marker the marker of the suspended timer, whose time is its next period boundary
+	 * @param time the time
+	 * @return the time of the boundary, not before the current time
+	 */
+	private double nextBoundary(SimEvent marker, double time) {
+		double due = marker.eventTime();
+		if (time <= due) {
+			return due < clock ? clock : due;
+		}
+		double period = marker.getPeriod();
+		return roundTime(due + Math.ceil((time - due) / period) * period);
+	}
+
+	/**
+	 * Sets an entity's state to be waiting. The predicate used to wait for an event is now passed
+	 * to Sim_system. Only events that satisfy the predicate will be passed to the entity. This is
+	 * done to avoid unnecessary context switches.
+	 * 
+	 * @param src the src
+	 * @param p the p
+	 */
+	public void wait(int src, Predicate p) {
+		entities.get(src).setState(SimEntity.WAITING);
+		if (p != CloudSim.SIM_ANY && !buffer(EntityTask.WAIT, src, p)) {
+			// If a predicate has been used store it in order to check it
+			waitPredicates.put(src, p);
+		}
+	}
+
+	/**
+	 * Checks if events for a specific entity are present in the deferred event queue.
+	 * 
+	 * @param d the d
+	 * @param p the p
+	 * @return the int
+	 */
+	public int waiting(int d, Predicate p) {
+		return entities.get(d).getDeferredQueue().count(p);
+	}
+
+	/**
+	 * Selects an event matching a predicate.
+	 * 
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event, or <tt>null</tt> if no deferred event matches
+	 */
+	public SimEvent select(int src, Predicate p) {
+		return entities.get(src).getDeferredQueue().removeFirst(p);
+	}
+
+	/**
+	 * Find first deferred event matching a predicate.
+	 * 
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event, or <tt>null</tt> if no deferred event matches
+	 */
+	public SimEvent findFirstDeferred(int src, Predicate p) {
+		return entities.get(src).getDeferredQueue().findFirst(p);
+	}
+
+	/**
+	 * Removes an event from the event queue.
+	 * 
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event
+	 */
+	public SimEvent cancel(int src, Predicate p) {
+		EntityTask task = getCurrentTask();
+		if (task == null) {
+			return future.cancel(src, p);
+		}
+
+		// the future queue is not modified while the entities run in parallel
+		SimEvent first = null;
+		for (SimEvent event : task.findPending(future, src, p)) {
+			if (first == null || HeapEventQueue.before(event, first)) {
+				first = event;
+			}
+		}
+		if (first != null) {
+			task.buffer(EntityTask.REMOVE_EVENT, src, first);
+		}
+		return first;
+	}
+
+	/**
+	 * Removes all events that match a given predicate from the future event queue returns true if
+	 * at least one event has been cancelled; false otherwise.
+	 * 
+	 * @param src the src
+	 * @param p the p
+	 * @return true, if successful
+	 */
+	public boolean cancelAll(int src, Predicate p) {
+		EntityTask task = getCurrentTask();
+		if (task == null) {
+			return future.cancelAll(src, p);
+		}
+
+		List<SimEvent> events = task.findPending(future, src, p);
+		for (SimEvent event : events) {
+			task.buffer(EntityTask.REMOVE_EVENT, src, event);
+		}
+		return !events.isEmpty();
+	}
+
+	//
+	// Private internal methods
+	//
+
+	/**
+	 * Processes an event.
+	 * 
+	 * @param e the e
+	 */
+	private void processEvent(SimEvent e) {
+		int dest, src;
+		SimEntity dest_ent;
+		// Update the system's clock
+		if (e.eventTime() < clock) {
+			throw new IllegalArgumentException("Past event detected.");
+		}
+		clock = e.eventTime();
+		if (eventTrace != null && !eventTrace.isClosed()) {
+			eventTrace.record(e);
+		}
+
+		// Ok now process it
+		switch (e.getType()) {
+			case SimEvent.ENULL:
+				throw new IllegalArgumentException("Event has a null type.");
+
+			case SimEvent.CREATE:
+				SimEntity newe = (SimEntity) e.getData();
+				addEntityDynamically(newe);
+				break;
+
+			case SimEvent.SEND:
+				// Check for matching wait
+				dest = e.getDestination();
+				if (dest < 0) {
+					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
+				} else {
+					int tag = e.getTag();
+					dest_ent = entities.get(dest);
+					if (e.getPeriod() < 0 && dest_ent.hasSuspendedTimers()) {
+						resumeTimers(dest_ent);
+					}
+					if (dest_ent.getState() == SimEntity.WAITING) {
+						Predicate p = waitPredicates.get(dest);
+						if ((p == null) || (tag == 9999) || (p.match(e))) {
+							// the event has left the future queue, so it is handed over as it is
+							dest_ent.setEventBuffer(e);
+							dest_ent.setState(SimEntity.RUNNABLE);
+							markReady(dest);
+							waitPredicates.remove(dest);
+						} else {
+							dest_ent.getDeferredQueue().addEvent(e);
+						}
+					} else {
+						dest_ent.getDeferredQueue().addEvent(e);
+						if (dest_ent.getState() == SimEntity.RUNNABLE) {
+							markReady(dest);
+						}
+					}
+				}
+				break;
+
+			case SimEvent.HOLD_DONE:
+				src = e.getSource();
+				if (src < 0) {
+					throw new IllegalArgumentException("Null entity holding.");
+				} else {
+					entities.get(src).setState(SimEntity.RUNNABLE);
+					markReady(src);
+				}
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Internal method used to start the simulation. This method should <b>not</b> be used by user
+	 * simulations.
+	 */
+	public void runStart() {
+		running = true;
+		// Start all the entities; the events they send come before those of the first tick
+		generation = -1;
+		for (SimEntity ent : entities) {
+			runningEntity = ent.getId();
+			ent.startEntity();
+		}
+		runningEntity = -1;
+		generation = 0;
+		if (logicalProcess != null) {
+			// the entities of the other partitions are only started, to register with the
+			// replicated entities
+			for (SimEntity ent : entities) {
+				if (!logicalProcess.isLocal(ent.getId())) {
+					ent.setState(SimEntity.FINISHED);
+				}
+			}
+		}
+
+		printMessage("Entities started.");
+	}
+
+	/**
+	 * Check if the simulation is still running. This method should be used by entities to check if
+	 * they should continue executing.
+	 * 
+	 * @return if the simulation is still running, otherwise
+	 */
+	public boolean running() {
+		return running;
+	}
+
+	/**
+	 * This method is called if one wants to pause the simulation.
+	 * 
+	 * @return true, if successful otherwise.
+	 */
+	public boolean pauseSimulation() {
+		paused = true;
+		return paused;
+	}
+
+	/**
+	 * This method is called if one wants to pause the simulation at a given time.
+	 * 
+	 * @param time the time at which the simulation has to be paused
+	 * @return true, if successful otherwise.
+	 */
+	public boolean pauseSimulation(long time) {
+		return pauseSimulation((double) time);
+	}
+
+	/**
+	 * This method is called if one wants to pause the simulation at a given time.
+	 * 
+	 * @param time the time at which the simulation has to be paused
+	 * @return true, if successful otherwise.
+	 * @see #runUntil(double)
+	 */
+	public boolean pauseSimulation(double time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			pauseAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * This method is called if one wants to resume the simulation that has previously been paused.
+	 * 
+	 * @return if the simulation has been restarted or or otherwise.
+	 */
+	public synchronized boolean resumeSimulation() {
+		paused = false;
+
+		if (pauseAt <= clock) {
+			pauseAt = -1;
+		}
+		notifyAll();
+
+		return !paused;
+	}
+
+	/**
+	 * Start the simulation running. This should be called after all the entities have been setup
+	 * and added, and their ports linked.
+	 * 
+	 * @return the double last clock value
+	 */
+	public double run() {
+		if (logicalProcess != null) {
+			return runDistributed();
+		}
+		if (!running) {
+			runStart();
+		}
+		while (tick() >= 0) {
+			if (pauseAt != -1
+					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.first().eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+				pauseSimulation();
+				clock = pauseAt;
+			}
+
+			if (paused) {
+				waitForResume();
+			}
+		}
+		return end();
+	}
+
+	/**
+	 * Runs the simulation as one of the processes of a distributed simulation, in rounds: the
+	 * processes exchange the events sent to each other, then the time of their next event, and
+	 * each one delivers its events due before the earliest of these times plus the lookahead.
+	 * 
+	 * @return the last clock value
+	 * @see LogicalProcess
+	 */
+	private double runDistributed() {
+		if (pool != null) {
+			throw new IllegalStateException("A distributed simulation runs its entities sequentially.");
+		}
+		LogicalProcess process = logicalProcess;
+		try {
+			process.connect(entities);
+			printMessage("Partition " + process.getPartition() + " of " + process.getPartitions()
+					+ " connected, lookahead " + process.getLookahead());
+			runStart();
+			runReadyEntities();
+			boolean fired = false;
+			while (true) {
+				process.exchangeEvents(future);
+				double next = future.size() == 0 || abruptTerminate ? Double.POSITIVE_INFINITY
+						: future.first().eventTime();
+				double bound = process.exchangeBounds(next, abruptTerminate, clock, generation);
+				if (process.isTerminated()) {
+					abruptTerminate = true;
+					break;
+				}
+				if (terminateAt > 0.0 && bound > terminateAt && !fired) {
+					// as in a single process, the suspended timers account for the skipped interval
+					// once no event is due before the termination time, from the last tick of all
+					// the processes
+					clock = process.getLastClock();
+					generation = process.getLastGeneration();
+					fireSuspendedTimers();
+					fired = true;
+					continue;
+				}
+				if (bound == Double.POSITIVE_INFINITY) {
+					running = false;
+					printMessage("Simulation: No more future events");
+					break;
+				}
+				if (terminateAt > 0.0 && bound >= terminateAt) {
+					// the first events at or after the termination time are delivered, as by run()
+					if (next == bound) {
+						processNextEvents();
+					}
+					terminateSimulation();
+					clock = terminateAt;
+					break;
+				}
+				double end = bound + process.getLookahead();
+				if (terminateAt > 0.0 && end > terminateAt) {
+					end = terminateAt;
+				}
+				fired = false;
+				while (!abruptTerminate && future.size() > 0 && future.first().eventTime() < end) {
+					processNextEvents();
+					runReadyEntities();
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("The distributed simulation has failed: " + e.getMessage(), e);
+		} finally {
+			process.close();
+		}
+		return end();
+	}
+
+	/**
+	 * Runs the simulation until the given time and returns. All the events up to that time are
+	 * delivered and the entities which receive them are run, then the clock is set to the given
+	 * time, so the caller can inspect the state of the simulation and send new events from there.
+	 * The simulation is started by the first call, and may be carried on by further calls, by
+	 * {@link #step(int)} or by {@link #run()}. It is finished as by {@link #run()} once it has no
+	 * more future events, has been terminated or has reached its termination time.
+	 * <p>
+	 * Unlike {@link #pauseSimulation(double)}, this method does not need another thread to resume
+	 * the simulation, and pause requests are ignored by it.
+	 * 
+	 * @param time the time to run the simulation until
+	 * @return true if the simulation can be carried on, false if it has finished
+	 * @throws IllegalArgumentException if the time is before the current time
+	 */
+	public boolean runUntil(double time) {
+		if (entities == null) {
+			return false;
+		}
+		checkNotDistributed();
+		if (time < clock) {
+			throw new IllegalArgumentException("The simulation cannot run until " + time
+					+ ", before the current time " + clock);
+		}
+		if (!running) {
+			runStart();
+		}
+		do {
+			while (future.size() > 0 && future.first().eventTime() <= time) {
+				if (tick() < 0) {
+					end();
+					return false;
+				}
+			}
+
+			// the entities may send new events due before the time
+			runReadyEntities();
+		} while (!abruptTerminate && future.size() > 0 && future.first().eventTime() <= time);
+		if (!carryOn()) {
+			return false;
+		}
+		if (terminateAt > 0.0 && time >= terminateAt) {
+			terminateSimulation();
+			clock = terminateAt;
+			end();
+			return false;
+		}
+		clock = time;
+		return true;
+	}
+
+	/**
+	 * Runs the simulation for a number of events and returns. The events are delivered one clock
+	 * tick at a time, i.e. all the events with the same time at once, until at least the given
+	 * number has been delivered, and the entities which receive them are run. The simulation is
+	 * started and finished as by {@link #runUntil(double)}.
+	 * 
+	 * @param events the number of events to deliver
+	 * @return true if the simulation can be carried on, false if it has finished
+	 * @throws IllegalArgumentException if the number of events is not positive
+	 */
+	public boolean step(int events) {
+		if (events < 1) {
+			throw new IllegalArgumentException("The number of events should be positive, but is:" + events);
+		}
+		if (entities == null) {
+			return false;
+		}
+		checkNotDistributed();
+		if (!running) {
+			runStart();
+		}
+		int delivered = 0;
+		while (delivered < events) {
+			int count = tick();
+			if (count < 0) {
+				end();
+				return false;
+			}
+			delivered += count;
+		}
+		return settle();
+	}
+
+	/**
+	 * Gets an iterator which runs the simulation one clock tick at a time. Each call to
+	 * {@link Iterator#next()} delivers the events of the next time, runs the entities which receive
+	 * them, as {@link #step(int)} does, and returns that time. The iterator has no more elements once
+	 * the simulation has finished.
+	 * 
+	 * @return the iterator over the times of the clock ticks
+	 */
+	public Iterator<Double> ticks() {
+		return new ClockTickIterator(this);
+	}
+
+	/**
+	 * Checks that the simulation is not distributed, since the stepping methods need all the
+	 * events in this process.
+	 * 
+	 * @throws IllegalStateException if the simulation is distributed
+	 */
+	private void checkNotDistributed() {
+		if (logicalProcess != null) {
+			throw new IllegalStateException("A distributed simulation can only be run to its end.");
+		}
+	}
+
+	/**
+	 * Checks if the simulation has been initialised and has not finished yet.
+	 * 
+	 * @return true, if the simulation can be run
+	 */
+	boolean hasWork() {
+		return entities != null;
+	}
+
+	/**
+	 * Gets the time of the next future event.
+	 * 
+	 * @return the time of the next event, or the current time if there are none
+	 */
+	double getNextEventTime() {
+		SimEvent next = future.first();
+		return next == null ? clock : next.eventTime();
+	}
+
+	/**
+	 * Runs the entities given events in the last tick, so that a stepping method returns with all
+	 * the delivered events handled, and finishes the simulation if it has nothing left to do.
+	 * 
+	 * @return true if the simulation can be carried on, false if it has finished
+	 */
+	private boolean settle() {
+		runReadyEntities();
+		return carryOn();
+	}
+
+	/**
+	 * Finishes the simulation if it has no more future events or has been terminated.
+	 * 
+	 * @return true if the simulation can be carried on, false if it has finished
+	 */
+	private boolean carryOn() {
+		if (future.size() == 0) {
+			running = false;
+			printMessage("Simulation: No more future events");
+		} else if (!abruptTerminate) {
+			return true;
+		}
+		end();
+		return false;
+	}
+
+	/**
+	 * Finishes the simulation.
+	 * 
+	 * @return the last clock value
+	 */
+	private double end() {
+		double clock = clock();
+
+		finishSimulation();
+		runStop();
+
+		return clock;
+	}
+
+	/**
+	 * Blocks the thread running the simulation until {@link #resumeSimulation()} is called.
+	 */
+	private synchronized void waitForResume() {
+		while (paused) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Internal method that allows the entities to terminate. This method should <b>not</b> be used
+	 * in user simulations.
+	 */
+	public void finishSimulation() {
+		// Allow all entities to exit their body method
+		if (!abruptTerminate) {
+			for (SimEntity ent : entities) {
+				if (ent.getState() != SimEntity.FINISHED) {
+					ent.run();
+				}
+			}
+		}
+
+		for (SimEntity ent : entities) {
+			if (logicalProcess == null || logicalProcess.isLocal(ent.getId())) {
+				ent.shutdownEntity();
+			}
+		}
+		logicalProcess = null;
+		if (eventTrace != null) {
+			eventTrace.close(entities);
+			eventTrace = null;
+		}
+		if (profiler != null) {
+			profiler.print();
+		}
+
+		// reset the state of the simulation
+		entities = null;
+		entitiesByName = null;
+		readyIds = null;
+		dispatchIds = null;
+		ready = null;
+		batch = null;
+		future = null;
+		clock = 0L;
+		running = false;
+
+		waitPredicates = null;
+		checkpointTime = -1;
+		checkpointFile = null;
+		checkpointAttachment = null;
+		paused = false;
+		pauseAt = -1;
+		abruptTerminate = false;
+	}
+
+	/**
+	 * Abruptally terminate.
+	 */
+	public void abruptallyTerminate() {
+		abruptTerminate = true;
+	}
+
+	/**
+	 * Prints a message about the progress of the simulation.
+	 * 
+	 * @param message the message
+	 */
+	private void printMessage(String message) {
+		Log.printLine(message);
+	}
+
+	/**
+	 * Checks if is paused.
+	 * 
+	 * @return true, if is paused
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Reads a simulation from a checkpoint and re-creates the state which is not saved with it.
+	 * The restored simulation is not paused and runs its entities sequentially.
+	 * 
+	 * @param in the input stream
+	 * @throws IOException if the stream cannot be read
+	 * @throws ClassNotFoundException if a class of the simulation cannot be found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		dispatchIds = new int[readyIds.length];
+		batch = new SimEntity[16];
+		batchSize = 0;
+		checkpointTime = -1;
+		paused = false;
+		pauseAt = -1;
+		abruptTerminate = false;
+	}
+
+}
@@ -21,6 +21,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  */
 public class PredicateFrom extends Predicate {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The ids. */
 	private final int[] ids;
 
@@ -42,6 +44,15 @@ public class PredicateFrom extends Predicate {
 		ids = sourceIds.clone();
 	}
 
+	/**
+	 * Gets the ids of the source entities selected by this predicate.
+	 * 
+	 * @return a copy of the ids
+	 */
+	public int[] getSourceIds() {
+		return ids.clone();
+	}
+
 	/**
 	 * The match function called by <code>Simulation</code>, not used directly by the user.
 	 * 
@@ -20,6 +20,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  */
 public class PredicateType extends Predicate {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The tags. */
 	private final int[] tags;
 
@@ -41,6 +43,15 @@ public class PredicateType extends Predicate {
 		this.tags = tags.clone();
 	}
 
+	/**
+	 * Gets the tags selected by this predicate.
+	 * 
+	 * @return a copy of the tags
+	 */
+	public int[] getTags() {
+		return tags.clone();
+	}
+
 	/**
 	 * The match function called by <code>Sim_system</code>, not used directly by the user.
 	 * 
@@ -18,6 +18,8 @@ import java.util.Random;
  */
 public class LognormalDistr implements ContinuousDistribution {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The num gen. */
 	private final Random numGen;
 
@@ -19,6 +19,8 @@ import java.util.Random;
  */
 public class ParetoDistr implements ContinuousDistribution {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The num gen. */
 	private final Random numGen;
 
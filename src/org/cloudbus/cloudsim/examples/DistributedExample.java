@@ -0,0 +1,267 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation
+ *               of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.examples;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
+import org.cloudbus.cloudsim.Datacenter;
+import org.cloudbus.cloudsim.DatacenterBroker;
+import org.cloudbus.cloudsim.DatacenterCharacteristics;
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.NetworkTopology;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmAllocationPolicySimple;
+import org.cloudbus.cloudsim.VmSchedulerTimeShared;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.LogicalProcess;
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+
+/**
+ * An example showing how to run a simulation with three datacenters and one broker in three
+ * processes, one per datacenter, the broker running with the first datacenter. It is run in a
+ * single process without arguments, and in three processes with the argument <tt>dist</tt>; the
+ * cloudlets printed are the same. The datacenters are linked to the broker by the network
+ * topology, whose shortest delay is the lookahead of the processes.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see LogicalProcess
+ */
+public class DistributedExample {
+
+	/** The number of datacenters, and of processes in the distributed mode. */
+	private static final int DATACENTERS = 3;
+
+	/** The port of the first process. */
+	private static final int PORT = 47300;
+
+	/** The cloudlet list. */
+	private static List<Cloudlet> cloudletList;
+
+	/** The vmlist. */
+	private static List<Vm> vmlist;
+
+	/**
+	 * Creates main() to run this example
+	 *
+	 * @param args <tt>dist</tt> to run the simulation in three processes
+	 */
+	public static void main(String[] args) {
+
+		Log.printLine("Starting DistributedExample...");
+
+		try {
+			boolean distributed = args.length > 0 && args[0].equals("dist");
+
+			// The first process launches the others, which run this program with the same
+			// arguments and find their partition in the system properties
+			LogicalProcess process = null;
+			if (distributed) {
+				process = LogicalProcess.fromSystemProperties();
+				if (process == null) {
+					process = new LogicalProcess(0, DATACENTERS, PORT);
+					process.launch(DistributedExample.class, args);
+				}
+			}
+
+			// First step: Initialize the CloudSim package. Every process creates all the
+			// entities, in the same order, so that they get the same ids.
+			int num_user = 1;   // number of cloud users
+			Calendar calendar = Calendar.getInstance();
+			boolean trace_flag = false;  // mean trace events
+
+			CloudSim.init(num_user, calendar, trace_flag);
+
+			// Second step: Create Datacenters
+			Datacenter[] datacenters = new Datacenter[DATACENTERS];
+			for (int i = 0; i < DATACENTERS; i++) {
+				datacenters[i] = createDatacenter("Datacenter_" + i);
+			}
+
+			//Third step: Create Broker
+			DatacenterBroker broker = new DatacenterBroker("Broker");
+			int brokerId = broker.getId();
+
+			//Fourth step: Create the virtual machines
+			vmlist = new ArrayList<Vm>();
+
+			//VM description
+			int mips = 1000;
+			long size = 10000; //image size (MB)
+			int ram = 512; //vm memory (MB)
+			long bw = 1000;
+			int pesNumber = 1; //number of cpus
+			String vmm = "Xen"; //VMM name
+
+			for (int vmid = 0; vmid < 12; vmid++) {
+				vmlist.add(new Vm(vmid, brokerId, mips, pesNumber, ram, bw, size, vmm, new CloudletSchedulerTimeShared()));
+			}
+
+			//submit vm list to the broker
+			broker.submitVmList(vmlist);
+
+			//Fifth step: Create the Cloudlets, of various lengths
+			cloudletList = new ArrayList<Cloudlet>();
+
+			//Cloudlet properties
+			long fileSize = 300;
+			long outputSize = 300;
+			UtilizationModel utilizationModel = new UtilizationModelFull();
+
+			for (int id = 0; id < 40; id++) {
+				long length = 20000 + 7919L * id % 50000;
+				Cloudlet cloudlet = new Cloudlet(id, length, pesNumber, fileSize, outputSize, utilizationModel, utilizationModel, utilizationModel);
+				cloudlet.setUserId(brokerId);
+				cloudletList.add(cloudlet);
+			}
+
+			//submit cloudlet list to the broker
+			broker.submitCloudletList(cloudletList);
+
+			// Sixth step: Link the datacenters to the broker. The events between processes
+			// need a delay: the shortest one, 0.5, is the lookahead
+			for (int i = 0; i < DATACENTERS; i++) {
+				NetworkTopology.addLink(datacenters[i].getId(), brokerId, 10.0, 0.5 + 0.25 * i);
+			}
+
+			// Seventh step: Assign the datacenters to the processes. The broker shares the VMs
+			// and the cloudlets with the datacenters it talks to, but only receives copies of
+			// those of the other processes, which it does not change.
+			if (process != null) {
+				for (int i = 1; i < DATACENTERS; i++) {
+					process.assign(datacenters[i].getName(), i);
+				}
+				CloudSim.setLogicalProcess(process);
+			}
+
+			// Eighth step: Starts the simulation
+			CloudSim.startSimulation();
+
+			// Final step: Print results when simulation is over; the broker runs in the first
+			// process, so the others have no results
+			List<Cloudlet> newList = new ArrayList<Cloudlet>(broker.<Cloudlet> getCloudletReceivedList());
+
+			CloudSim.stopSimulation();
+
+			if (process == null || process.getPartition() == 0) {
+				Collections.sort(newList, new Comparator<Cloudlet>() {
+
+					@Override
+					public int compare(Cloudlet a, Cloudlet b) {
+						return a.getCloudletId() - b.getCloudletId();
+					}
+
+				});
+				printCloudletList(newList);
+			}
+			if (process != null && process.getPartition() == 0 && !process.waitForPartitions()) {
+				Log.printLine("A partition has failed, see the cloudsim-partition-*.log files");
+			}
+
+			Log.printLine("DistributedExample finished!");
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Log.printLine("The simulation has been terminated due to an unexpected error");
+		}
+	}
+
+	/**
+	 * Creates a datacenter of two hosts with two PEs each.
+	 *
+	 * @param name the name of the datacenter
+	 * @return the datacenter
+	 * @throws Exception if the datacenter cannot be created
+	 */
+	private static Datacenter createDatacenter(String name) throws Exception {
+		List<Host> hostList = new ArrayList<Host>();
+
+		int mips = 1000;
+		int ram = 2048; //host memory (MB)
+		long storage = 1000000; //host storage
+		int bw = 10000;
+
+		for (int hostId = 0; hostId < 2; hostId++) {
+			List<Pe> peList = new ArrayList<Pe>();
+			peList.add(new Pe(0, new PeProvisionerSimple(mips)));
+			peList.add(new Pe(1, new PeProvisionerSimple(mips)));
+
+			hostList.add(
+				new Host(
+					hostId,
+					new RamProvisionerSimple(ram),
+					new BwProvisionerSimple(bw),
+					storage,
+					peList,
+					new VmSchedulerTimeShared(peList)
+				)
+			);
+		}
+
+		String arch = "x86";      // system architecture
+		String os = "Linux";          // operating system
+		String vmm = "Xen";
+		double time_zone = 10.0;         // time zone this resource located
+		double cost = 3.0;              // the cost of using processing in this resource
+		double costPerMem = 0.05;		// the cost of using memory in this resource
+		double costPerStorage = 0.001;	// the cost of using storage in this resource
+		double costPerBw = 0.0;			// the cost of using bw in this resource
+		LinkedList<Storage> storageList = new LinkedList<Storage>();	//we are not adding SAN devices by now
+
+		DatacenterCharacteristics characteristics = new DatacenterCharacteristics(
+				arch, os, vmm, hostList, time_zone, cost, costPerMem, costPerStorage, costPerBw);
+
+		return new Datacenter(name, characteristics, new VmAllocationPolicySimple(hostList), storageList, 0);
+	}
+
+	/**
+	 * Prints the Cloudlet objects
+	 * @param list  list of Cloudlets
+	 */
+	private static void printCloudletList(List<Cloudlet> list) {
+		int size = list.size();
+		Cloudlet cloudlet;
+
+		String indent = "    ";
+		Log.printLine();
+		Log.printLine("========== OUTPUT ==========");
+		Log.printLine("Cloudlet ID" + indent + "STATUS" + indent +
+				"Data center ID" + indent + "VM ID" + indent + "Time" + indent + "Start Time" + indent + "Finish Time");
+
+		DecimalFormat dft = new DecimalFormat("###.##");
+		for (int i = 0; i < size; i++) {
+			cloudlet = list.get(i);
+			Log.print(indent + cloudlet.getCloudletId() + indent + indent);
+
+			if (cloudlet.getCloudletStatus() == Cloudlet.SUCCESS){
+				Log.print("SUCCESS");
+
+				Log.printLine( indent + indent + cloudlet.getResourceId() + indent + indent + indent + cloudlet.getVmId() +
+						indent + indent + dft.format(cloudlet.getActualCPUTime()) + indent + indent + dft.format(cloudlet.getExecStartTime())+
+						indent + indent + dft.format(cloudlet.getFinishTime()));
+			}
+		}
+
+	}
+}
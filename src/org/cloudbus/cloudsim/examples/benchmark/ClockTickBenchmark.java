@@ -0,0 +1,145 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation
+ *               of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.examples.benchmark;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+
+/**
+ * A microbenchmark of the cost of a clock tick as the number of entities grows. Two entities
+ * exchange a fixed number of events while a growing number of idle entities (standing for the
+ * switches of a large network topology) are registered in the simulation. Since only the entities
+ * with pending work are dispatched, the cost per tick should stay flat.
+ */
+public class ClockTickBenchmark {
+
+	/** The tag of the events exchanged by the two active entities. */
+	private static final int PING = 424242;
+
+	/** The number of events exchanged per run. */
+	private static final int EVENTS = 200000;
+
+	/** The numbers of idle entities to try. */
+	private static final int[] IDLE_ENTITIES = { 10, 100, 1000, 10000, 50000 };
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the args
+	 */
+	public static void main(String[] args) {
+		Log.disable();
+
+		// warm up
+		run(IDLE_ENTITIES[0]);
+		run(IDLE_ENTITIES[0]);
+
+		System.out.println("idle entities    ns per tick");
+		for (int idle : IDLE_ENTITIES) {
+			double nsPerTick = run(idle);
+			System.out.println(String.format("%13d %14.1f", idle, nsPerTick));
+		}
+	}
+
+	/**
+	 * Runs one simulation.
+	 *
+	 * @param idle the number of idle entities
+	 * @return the average wall time of a clock tick, in nanoseconds
+	 */
+	private static double run(int idle) {
+		CloudSim.init(0, null, false);
+		for (int i = 0; i < idle; i++) {
+			new IdleEntity("Idle_" + i);
+		}
+		PingEntity ping = new PingEntity("Ping", EVENTS);
+		PingEntity pong = new PingEntity("Pong", EVENTS);
+		ping.setPeer(pong.getId());
+
+		long start = System.nanoTime();
+		CloudSim.startSimulation();
+		long elapsed = System.nanoTime() - start;
+
+		return (double) elapsed / (ping.getReceived() + pong.getReceived());
+	}
+
+	/**
+	 * An entity that never receives events.
+	 */
+	private static class IdleEntity extends SimEntity {
+
+		private static final long serialVersionUID = 1L;
+
+		public IdleEntity(String name) {
+			super(name);
+		}
+
+		@Override
+		public void startEntity() {
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+	}
+
+	/**
+	 * An entity that sends back every event it receives, one time unit later.
+	 */
+	private static class PingEntity extends SimEntity {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int limit;
+
+		private int peer = -1;
+
+		private int received = 0;
+
+		public PingEntity(String name, int limit) {
+			super(name);
+			this.limit = limit;
+		}
+
+		public void setPeer(int peer) {
+			this.peer = peer;
+		}
+
+		public int getReceived() {
+			return received;
+		}
+
+		@Override
+		public void startEntity() {
+			if (peer >= 0) {
+				schedule(peer, 1, PING);
+			}
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			received++;
+			if (received < limit) {
+				schedule(ev.getSource(), 1, PING);
+			}
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation
+ *               of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.examples.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.CloudletSchedulerDynamicWorkload;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.examples.power.Constants;
+import org.cloudbus.cloudsim.examples.power.Helper;
+import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.power.PowerVm;
+import org.cloudbus.cloudsim.power.PowerVmAllocationPolicyMigrationGlobalTuning;
+import org.cloudbus.cloudsim.power.PowerVmAllocationPolicyMigrationGlobalTuningHierarchical;
+import org.cloudbus.cloudsim.power.PowerVmSelectionPolicyMinimumMigrationTime;
+
+/**
+ * A microbenchmark of a round of {@link PowerVmAllocationPolicyMigrationGlobalTuning} as the number
+ * of hosts grows. The VMs are placed at random on the hosts and, before each round, the CPU usage
+ * of the VMs of a fraction of the hosts is changed, so that the rounds where every host changed and
+ * those where only a few did can be compared. Each configuration is run with a sequential search
+ * and with a parallel search using all the processors, over all the hosts and over pods of
+ * {@link Constants#POD_SIZE} hosts with
+ * {@link PowerVmAllocationPolicyMigrationGlobalTuningHierarchical}.
+ */
+public class GlobalTuningBenchmark {
+
+	/** The numbers of hosts to try. */
+	private static final int[] HOSTS = { 100, 1000, 10000 };
+
+	/** The number of VMs per host, as in the PlanetLab tuning example. */
+	private static final int VMS_PER_HOST = 4;
+
+	/** The fractions of the hosts whose VMs change before each round. */
+	private static final double[] DIRTY_FRACTIONS = { 1.0, 0.1 };
+
+	/** The minimum wall time of the rounds of a configuration, in nanoseconds. */
+	private static final long MIN_TIME = 1000000000L;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args the args
+	 */
+	public static void main(String[] args) {
+		Log.disable();
+
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		// warm up
+		run(HOSTS[0], 1.0, 1, false);
+		run(HOSTS[0], 0.1, processors, true);
+
+		System.out.println("        hosts   dirty hosts  threads    pods  rounds    ms per round");
+		for (int hosts : HOSTS) {
+			for (double dirty : DIRTY_FRACTIONS) {
+				for (int parallelism : new int[] { 1, processors }) {
+					for (boolean hierarchical : new boolean[] { false, true }) {
+						double[] result = run(hosts, dirty, parallelism, hierarchical);
+						System.out.println(String.format("%13d %12.0f%% %8d %7s %7d %15.3f", hosts,
+								dirty * 100, parallelism, hierarchical ? "yes" : "no",
+								(int) result[0], result[1]));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs rounds of the policy until the minimum time has elapsed.
+	 *
+	 * @param hostsNumber the number of hosts
+	 * @param dirty the fraction of the hosts whose VMs change before each round
+	 * @param parallelism the number of threads searching the migrations
+	 * @param hierarchical whether the hosts are tuned by pods
+	 * @return the number of rounds and the average wall time of a round, in milliseconds
+	 */
+	private static double[] run(int hostsNumber, double dirty, int parallelism,
+			boolean hierarchical) {
+		Random random = new Random(42);
+		List<PowerHost> hostList = Helper.createHostList(hostsNumber);
+		List<Vm> vmList = new ArrayList<Vm>();
+		for (int i = 0; i < hostsNumber * VMS_PER_HOST; i++) {
+			int vmType = i % Constants.VM_TYPES;
+			Vm vm = new LoadedVm(i, Constants.VM_MIPS[vmType], Constants.VM_RAM[vmType]);
+			if (hostList.get(random.nextInt(hostsNumber)).vmCreate(vm)) {
+				vmList.add(vm);
+			}
+		}
+		PowerVmAllocationPolicyMigrationGlobalTuning policy;
+		if (hierarchical) {
+			policy = new PowerVmAllocationPolicyMigrationGlobalTuningHierarchical(
+					hostList,
+					new PowerVmSelectionPolicyMinimumMigrationTime());
+		} else {
+			policy = new PowerVmAllocationPolicyMigrationGlobalTuning(
+					hostList,
+					new PowerVmSelectionPolicyMinimumMigrationTime());
+		}
+		policy.setParallelism(parallelism);
+
+		for (Vm vm : vmList) {
+			setCpuUsage((LoadedVm) vm, random);
+		}
+		policy.optimizeAllocation(vmList);
+
+		int changed = (int) Math.ceil(hostsNumber * dirty);
+		int rounds = 0;
+		long elapsed = 0;
+		while (rounds == 0 || elapsed < MIN_TIME) {
+			for (int i = 0; i < changed; i++) {
+				for (Vm vm : hostList.get(random.nextInt(hostsNumber)).getVmList()) {
+					setCpuUsage((LoadedVm) vm, random);
+				}
+			}
+			long start = System.nanoTime();
+			policy.optimizeAllocation(vmList);
+			elapsed += System.nanoTime() - start;
+			rounds++;
+		}
+		policy.setParallelism(1);
+		return new double[] { rounds, elapsed / 1e6 / rounds };
+	}
+
+	/**
+	 * Sets a random CPU usage of a VM during the last round.
+	 *
+	 * @param vm the VM
+	 * @param random the random generator
+	 */
+	private static void setCpuUsage(LoadedVm vm, Random random) {
+		vm.cpuUsageTime = random.nextDouble() * vm.getMips() * Constants.GLOBAL_INTERVIAL;
+	}
+
+	/**
+	 * A VM whose CPU usage is set by the benchmark instead of coming from its cloudlets.
+	 */
+	private static class LoadedVm extends PowerVm {
+
+		private static final long serialVersionUID = 1L;
+
+		private double cpuUsageTime;
+
+		public LoadedVm(int id, int mips, int ram) {
+			super(id, 0, mips, 1, ram, Constants.VM_BW, Constants.VM_SIZE, 1, "Xen",
+					new CloudletSchedulerDynamicWorkload(mips, 1), Constants.SCHEDULING_INTERVAL);
+		}
+
+		@Override
+		public double getCpuUsageTime() {
+			return cpuUsageTime;
+		}
+	}
+
+}
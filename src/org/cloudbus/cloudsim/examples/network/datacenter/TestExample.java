@@ -75,8 +75,8 @@ public class TestExample {
 			List<Cloudlet> newList = broker.getCloudletReceivedList();
 			printCloudletList(newList);
 			System.out.println("numberofcloudlet " + newList.size() + " Cached "
-					+ NetDatacenterBroker.cachedcloudlet + " Data transfered "
-					+ NetworkConstants.totaldatatransfer);
+					+ broker.getCachedcloudlet() + " Data transfered "
+					+ datacenter0.getTotalDataTransfer());
 
 			Log.printLine("CloudSimExample1 finished!");
 		} catch (Exception e) {
@@ -69,8 +69,18 @@ public class Constants {
     public final static int CLOUDLET_NUM = 1000; //姣忔鍒涘缓Cloudlet涓暟
     public final static int VM_NUM = 400;
     public final static double GLOBAL_INTERVIAL = 100.0;//GlobalTuning 鎵ц闂撮殧锛堟湭閲囩敤锛屽悗鏀逛负鐢⊿CHEDULING_INTERVAL璋冩暣锛�
+    public final static double GLOBAL_INTERVIAL_MIN = GLOBAL_INTERVIAL / 4; // shortest adaptive global tuning interval
+    public final static double GLOBAL_INTERVIAL_MAX = 1600.0; // longest adaptive global tuning interval
+    public final static double GLOBAL_DRIFT_HIGH = 0.1; // cost drift above which the interval is halved
+    public final static double GLOBAL_DRIFT_LOW = 0.01; // cost drift below which the interval is doubled
     public final static double LOCAL_INTERVIAL = 20.0;//LocalTuning闂撮殧
     public final static double MIGRATION_THR = 2.0;//杩佺Щ闃堝�
+    public final static int MIGRATION_OUT_CAP = 1; // max migrations from a host per global tuning round
+    public final static int MIGRATION_IN_CAP = 1; // max migrations to a host per global tuning round
+    public final static long ROUND_EVALUATION_BUDGET = 0; // max cost evaluations per global tuning round, 0 for no limit
+    public final static double ROUND_TIME_BUDGET = 0.0; // max wall time per global tuning round in seconds, 0 for no limit
+    public final static int POD_SIZE = 500; // hosts per pod of hierarchical global tuning
+    public final static int INTER_POD_MIGRATIONS = 4; // max migrations between a pair of pods per hierarchical global tuning round
 
     public final static int WORKLOAD_DOWN = 0;//涓暟涓嬮檺
 
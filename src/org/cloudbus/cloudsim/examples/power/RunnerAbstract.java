@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.List;
 
 import org.cloudbus.cloudsim.Cloudlet;
@@ -25,24 +26,46 @@ import org.cloudbus.cloudsim.power.*;
  * Cloud Data Centers", Concurrency and Computation: Practice and Experience (CCPE), Volume 24,
  * Issue 13, Pages: 1397-1420, John Wiley & Sons, Ltd, New York, USA, 2012
  * 
+ * A checkpoint of the simulation can be written by setting the system properties
+ * {@value #CHECKPOINT_PROPERTY} and {@value #CHECKPOINT_TIME_PROPERTY}, e.g. to run several
+ * policies from the same warm state; the simulation is then resumed from it by setting
+ * {@value #RESTORE_PROPERTY}. The checkpoint holds the entities and the lists of the runner. It
+ * does not hold static state: the constants are final, and {@link org.cloudbus.cloudsim.util.ExecutionTimeMeasurer}
+ * only measures calls which complete within an event, whose times are kept by the policies.
+ * 
+ * The quiescence detection of the datacenter is enabled by setting the system property
+ * {@value #QUIESCENCE_PROPERTY} to true, see {@link PowerDatacenter#setQuiescenceDetection(boolean)}.
+ * 
  * @author Anton Beloglazov
  */
 public abstract class RunnerAbstract {
 
+	/** The system property giving the name of the checkpoint file to write. */
+	public static final String CHECKPOINT_PROPERTY = "cloudsim.checkpoint";
+
+	/** The system property giving the simulation time at which the checkpoint is written. */
+	public static final String CHECKPOINT_TIME_PROPERTY = "cloudsim.checkpoint.time";
+
+	/** The system property giving the name of the checkpoint file to resume the simulation from. */
+	public static final String RESTORE_PROPERTY = "cloudsim.restore";
+
+	/** The system property enabling the quiescence detection of the datacenter. */
+	public static final String QUIESCENCE_PROPERTY = "cloudsim.quiescence";
+
 	/** The enable output. */
-	private static boolean enableOutput;
+	private boolean enableOutput;
 
 	/** The broker. */
-	protected static DatacenterBroker broker;
+	protected DatacenterBroker broker;
 
 	/** The cloudlet list. */
-	protected static List<Cloudlet> cloudletList;
+	protected List<Cloudlet> cloudletList;
 
 	/** The vm list. */
-	protected static List<Vm> vmList;
+	protected List<Vm> vmList;
 
 	/** The host list. */
-	protected static List<PowerHost> hostList;
+	protected List<PowerHost> hostList;
 
 	/**
 	 * Run.
@@ -79,6 +102,15 @@ public abstract class RunnerAbstract {
 			System.exit(0);
 		}
 
+		String restoreFile = System.getProperty(RESTORE_PROPERTY);
+		if (restoreFile != null) {
+			resume(
+					getExperimentName(workload, vmAllocationPolicy, vmSelectionPolicy, parameter),
+					outputFolder,
+					restoreFile);
+			return;
+		}
+
 		init(inputFolder + "/" + workload);
 		start(
 				getExperimentName(workload, vmAllocationPolicy, vmSelectionPolicy, parameter),
@@ -152,27 +184,53 @@ public abstract class RunnerAbstract {
                     vmAllocationPolicy);
 
 			datacenter.setDisableMigrations(false);
+			datacenter.setQuiescenceDetection(Boolean.getBoolean(QUIESCENCE_PROPERTY));
 
 			broker.submitVmList(vmList);
 			broker.submitCloudletList(cloudletList);
 
 			CloudSim.terminateSimulation(org.cloudbus.cloudsim.examples.power.Constants.SIMULATION_LIMIT);
-			double lastClock = CloudSim.startSimulation();
+			String checkpointFile = System.getProperty(CHECKPOINT_PROPERTY);
+			if (checkpointFile != null) {
+				String checkpointTime = System.getProperty(CHECKPOINT_TIME_PROPERTY);
+				if (checkpointTime == null) {
+					throw new IllegalArgumentException("The time of the checkpoint should be set with the "
+							+ CHECKPOINT_TIME_PROPERTY + " property");
+				}
+				CloudSim.checkpointAt(
+						Double.parseDouble(checkpointTime),
+						checkpointFile,
+						new State(broker, cloudletList, vmList, hostList));
+			}
 
-			List<Cloudlet> newList = broker.getCloudletReceivedList();
-			Log.printLine("Received " + newList.size() + " cloudlets");
+			run(experimentName, outputFolder, datacenter);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Log.printLine("The simulation has been terminated due to an unexpected error");
+			System.exit(0);
+		}
 
-			CloudSim.stopSimulation();
+		Log.printLine("Finished " + experimentName);
+	}
 
-			org.cloudbus.cloudsim.examples.power.Helper.printResults(
-                    datacenter,
-                    (PowerDatacenterBroker)broker,
-                    vmList,
-                    lastClock,
-                    experimentName,
-                    org.cloudbus.cloudsim.examples.power.Constants.OUTPUT_CSV,
-                    outputFolder);
+	/**
+	 * Resumes the simulation from a checkpoint written by an earlier run.
+	 * 
+	 * @param experimentName the experiment name
+	 * @param outputFolder the output folder
+	 * @param fileName the name of the checkpoint file
+	 */
+	protected void resume(String experimentName, String outputFolder, String fileName) {
+		System.out.println("Resuming " + experimentName);
 
+		try {
+			State state = (State) CloudSim.restore(fileName);
+			broker = state.broker;
+			cloudletList = state.cloudletList;
+			vmList = state.vmList;
+			hostList = state.hostList;
+
+			run(experimentName, outputFolder, (PowerDatacenter) CloudSim.getEntity("Datacenter"));
 		} catch (Exception e) {
 			e.printStackTrace();
 			Log.printLine("The simulation has been terminated due to an unexpected error");
@@ -182,6 +240,31 @@ public abstract class RunnerAbstract {
 		Log.printLine("Finished " + experimentName);
 	}
 
+	/**
+	 * Runs the simulation and prints the results.
+	 * 
+	 * @param experimentName the experiment name
+	 * @param outputFolder the output folder
+	 * @param datacenter the datacenter
+	 */
+	private void run(String experimentName, String outputFolder, PowerDatacenter datacenter) {
+		double lastClock = CloudSim.startSimulation();
+
+		List<Cloudlet> newList = broker.getCloudletReceivedList();
+		Log.printLine("Received " + newList.size() + " cloudlets");
+
+		CloudSim.stopSimulation();
+
+		org.cloudbus.cloudsim.examples.power.Helper.printResults(
+				datacenter,
+				(PowerDatacenterBroker)broker,
+				vmList,
+				lastClock,
+				experimentName,
+				org.cloudbus.cloudsim.examples.power.Constants.OUTPUT_CSV,
+				outputFolder);
+	}
+
 	/**
 	 * Gets the experiment name.
 	 * 
@@ -277,6 +360,11 @@ public abstract class RunnerAbstract {
             vmAllocationPolicy = new PowerVmAllocationPolicyMigrationGlobalTuning(hostList,
                     vmSelectionPolicy);
 
+        } else if (vmAllocationPolicyName.equals("lgh")) {
+            vmAllocationPolicy = new PowerVmAllocationPolicyMigrationGlobalTuningHierarchical(
+                    hostList,
+                    vmSelectionPolicy);
+
         } else {
 			System.out.println("Unknown VM allocation policy: " + vmAllocationPolicyName);
 			System.exit(0);
@@ -314,7 +402,7 @@ public abstract class RunnerAbstract {
 	 * @param enableOutput the new enable output
 	 */
 	public void setEnableOutput(boolean enableOutput) {
-		RunnerAbstract.enableOutput = enableOutput;
+		this.enableOutput = enableOutput;
 	}
 
 	/**
@@ -326,4 +414,39 @@ public abstract class RunnerAbstract {
 		return enableOutput;
 	}
 
+	/**
+	 * The lists of the runner, saved as the attachment of a checkpoint.
+	 */
+	private static class State implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The broker. */
+		private final DatacenterBroker broker;
+
+		/** The cloudlet list. */
+		private final List<Cloudlet> cloudletList;
+
+		/** The vm list. */
+		private final List<Vm> vmList;
+
+		/** The host list. */
+		private final List<PowerHost> hostList;
+
+		/**
+		 * Creates the state of a runner.
+		 * 
+		 * @param broker the broker
+		 * @param cloudletList the cloudlet list
+		 * @param vmList the vm list
+		 * @param hostList the host list
+		 */
+		State(DatacenterBroker broker, List<Cloudlet> cloudletList, List<Vm> vmList, List<PowerHost> hostList) {
+			this.broker = broker;
+			this.cloudletList = cloudletList;
+			this.vmList = vmList;
+			this.hostList = hostList;
+		}
+	}
+
 }
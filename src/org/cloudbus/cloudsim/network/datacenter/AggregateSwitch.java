@@ -12,10 +12,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
-import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
-import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
  * This class allows to simulate aggregate switch for Datacenter network. It interacts with other
@@ -32,6 +30,8 @@ import org.cloudbus.cloudsim.core.predicates.PredicateType;
  */
 public class AggregateSwitch extends Switch {
 
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Constructor for Aggregate Switch We have to specify switches that are connected to its
 	 * downlink and uplink ports, and corresponding bandwidths
@@ -67,8 +67,7 @@ public class AggregateSwitch extends Switch {
 		// add packet in the host list
 		NetworkPacket hspkt = (NetworkPacket) ev.getData();
 		int recvVMid = hspkt.pkt.reciever;
-		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
-		schedule(getId(), latency, CloudSimTags.Network_Event_send);
+		scheduleCoalesced(CloudSimTags.Network_Event_send, latency);
 
 		if (level == NetworkConstants.Agg_LEVEL) {
 			// packet is coming from root so need to be sent to edgelevel swich
@@ -100,8 +99,7 @@ public class AggregateSwitch extends Switch {
 		// int src=ev.getSource();
 		NetworkPacket hspkt = (NetworkPacket) ev.getData();
 		int recvVMid = hspkt.pkt.reciever;
-		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
-		schedule(getId(), switching_delay, CloudSimTags.Network_Event_send);
+		scheduleCoalesced(CloudSimTags.Network_Event_send, switching_delay);
 
 		if (level == NetworkConstants.Agg_LEVEL) {
 			// packet is coming from edge level router so need to be sent to
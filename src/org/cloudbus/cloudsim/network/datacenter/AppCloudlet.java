@@ -8,6 +8,7 @@
 
 package org.cloudbus.cloudsim.network.datacenter;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,7 +29,9 @@ import org.cloudbus.cloudsim.core.CloudSim;
  * @author Saurabh Kumar Garg
  * @since CloudSim Toolkit 1.0
  */
-public class AppCloudlet {
+public class AppCloudlet implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	public static final int APP_MC = 1;
 
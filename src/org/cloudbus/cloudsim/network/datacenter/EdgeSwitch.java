@@ -14,10 +14,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 
-import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
-import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
  * This class allows to simulate Edge switch for Datacenter network. It interacts with other
@@ -34,6 +32,8 @@ import org.cloudbus.cloudsim.core.predicates.PredicateType;
  */
 public class EdgeSwitch extends Switch {
 
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Constructor for Edge Switch We have to specify switches that are connected to its downlink
 	 * and uplink ports, and corresponding bandwidths. In this switch downlink ports are connected
@@ -70,8 +70,7 @@ public class EdgeSwitch extends Switch {
 		// int src=ev.getSource();
 		NetworkPacket hspkt = (NetworkPacket) ev.getData();
 		int recvVMid = hspkt.pkt.reciever;
-		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
-		schedule(getId(), switching_delay, CloudSimTags.Network_Event_send);
+		scheduleCoalesced(CloudSimTags.Network_Event_send, switching_delay);
 
 		// packet is recieved from host
 		// packet is to be sent to aggregate level or to another host in the same level
@@ -36,6 +36,8 @@ import org.cloudbus.cloudsim.lists.VmList;
  */
 public class NetDatacenterBroker extends SimEntity {
 
+	private static final long serialVersionUID = 1L;
+
 	// TODO: remove unnecessary variables
 
 	/** The vm list. */
@@ -81,11 +83,13 @@ public class NetDatacenterBroker extends SimEntity {
 	/** The datacenter characteristics list. */
 	private Map<Integer, DatacenterCharacteristics> datacenterCharacteristicsList;
 
-	public static NetworkDatacenter linkDC;
+	/** The datacenter the VMs and cloudlets of this broker are submitted to. */
+	private NetworkDatacenter linkDC;
 
 	public boolean createvmflag = true;
 
-	public static int cachedcloudlet = 0;
+	/** The number of cloudlets served from a cache. */
+	private int cachedcloudlet = 0;
 
 	/**
 	 * Created a new DatacenterBroker object.
@@ -150,6 +154,24 @@ public class NetDatacenterBroker extends SimEntity {
 		linkDC = alinkDC;
 	}
 
+	/**
+	 * Gets the datacenter the VMs and cloudlets of this broker are submitted to.
+	 * 
+	 * @return the datacenter
+	 */
+	public NetworkDatacenter getLinkDC() {
+		return linkDC;
+	}
+
+	/**
+	 * Gets the number of cloudlets served from a cache.
+	 * 
+	 * @return the number of cached cloudlets
+	 */
+	public int getCachedcloudlet() {
+		return cachedcloudlet;
+	}
+
 	/**
 	 * Processes events available for this Broker.
 	 * 
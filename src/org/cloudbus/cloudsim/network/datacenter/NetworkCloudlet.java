@@ -29,6 +29,8 @@ import org.cloudbus.cloudsim.UtilizationModel;
  */
 public class NetworkCloudlet extends Cloudlet implements Comparable<Object> {
 
+	private static final long serialVersionUID = 1L;
+
 	long memory;
 
 	public NetworkCloudlet(
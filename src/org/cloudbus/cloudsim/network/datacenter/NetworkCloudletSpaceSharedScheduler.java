@@ -33,6 +33,8 @@ import org.cloudbus.cloudsim.core.CloudSimTags;
  */
 public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The cloudlet waiting list. */
 	private List<? extends ResCloudlet> cloudletWaitingList;
 
@@ -155,15 +157,19 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 				cl.timetostartStage = CloudSim.clock();
 
 				if (cl.stages.get(0).type == NetworkConstants.EXECUTION) {
-					NetDatacenterBroker.linkDC.schedule(
-							NetDatacenterBroker.linkDC.getId(),
+					CloudSim.send(
+							cl.getResourceId(),
+							cl.getResourceId(),
 							cl.stages.get(0).time,
-							CloudSimTags.VM_DATACENTER_EVENT);
+							CloudSimTags.VM_DATACENTER_EVENT,
+							null);
 				} else {
-					NetDatacenterBroker.linkDC.schedule(
-							NetDatacenterBroker.linkDC.getId(),
+					CloudSim.send(
+							cl.getResourceId(),
+							cl.getResourceId(),
 							0.0001,
-							CloudSimTags.VM_DATACENTER_EVENT);
+							CloudSimTags.VM_DATACENTER_EVENT,
+							null);
 					// /sendstage///
 				}
 			}
@@ -260,19 +266,23 @@ public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 				}
 
 			}
-			NetDatacenterBroker.linkDC.schedule(
-					NetDatacenterBroker.linkDC.getId(),
+			CloudSim.send(
+					cl.getResourceId(),
+					cl.getResourceId(),
 					0.0001,
-					CloudSimTags.VM_DATACENTER_EVENT);
+					CloudSimTags.VM_DATACENTER_EVENT,
+					null);
 			if (i == cl.stages.size()) {
 				cl.currStagenum = NetworkConstants.FINISH;
 			} else {
 				cl.currStagenum = i;
 				if (cl.stages.get(i).type == NetworkConstants.EXECUTION) {
-					NetDatacenterBroker.linkDC.schedule(
-							NetDatacenterBroker.linkDC.getId(),
+					CloudSim.send(
+							cl.getResourceId(),
+							cl.getResourceId(),
 							cl.stages.get(i).time,
-							CloudSimTags.VM_DATACENTER_EVENT);
+							CloudSimTags.VM_DATACENTER_EVENT,
+							null);
 				}
 
 			}
@@ -57,6 +57,4 @@ public class NetworkConstants {
 
 	public static int iteration = 10;
 	public static int nexttime = 1000;
-
-	public static int totaldatatransfer = 0;
 }
@@ -45,6 +45,8 @@ import org.cloudbus.cloudsim.core.SimEvent;
  */
 public class NetworkDatacenter extends Datacenter {
 
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Allocates a new NetworkDatacenter object.
 	 * 
@@ -88,6 +90,27 @@ public class NetworkDatacenter extends Datacenter {
 
 	public Map<Integer, Integer> VmtoHostlist;
 
+	/** The amount of data sent by the hosts of this datacenter to their switches. */
+	private int totalDataTransfer = 0;
+
+	/**
+	 * Gets the amount of data sent by the hosts of this datacenter to their switches.
+	 * 
+	 * @return the amount of data transferred
+	 */
+	public int getTotalDataTransfer() {
+		return totalDataTransfer;
+	}
+
+	/**
+	 * Adds the data of a packet sent by a host of this datacenter to its switch.
+	 * 
+	 * @param data the amount of data of the packet
+	 */
+	public void addDataTransfer(double data) {
+		totalDataTransfer += data;
+	}
+
 	/**
 	 * Get list of all EdgeSwitches in the Datacenter network One can design similar functions for
 	 * other type of switches.
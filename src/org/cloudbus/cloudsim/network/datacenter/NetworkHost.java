@@ -40,6 +40,8 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  */
 public class NetworkHost extends Host {
 
+	private static final long serialVersionUID = 1L;
+
 	public List<NetworkPacket> packetTosendLocal;
 
 	public List<NetworkPacket> packetTosendGlobal;
@@ -187,7 +189,7 @@ public class NetworkHost extends Host {
 		double avband = bandwidth / packetTosendGlobal.size();
 		for (NetworkPacket hs : packetTosendGlobal) {
 			double delay = (1000 * hs.pkt.data) / avband;
-			NetworkConstants.totaldatatransfer += hs.pkt.data;
+			((NetworkDatacenter) getDatacenter()).addDataTransfer(hs.pkt.data);
 
 			CloudSim.send(getDatacenter().getId(), sw.getId(), delay, CloudSimTags.Network_Event_UP, hs);
 			// send to switch with delay
@@ -12,10 +12,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
-import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
-import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
  * This class allows to simulate Root switch which connects Datacenter to external network. It
@@ -32,6 +30,8 @@ import org.cloudbus.cloudsim.core.predicates.PredicateType;
  */
 public class RootSwitch extends Switch {
 
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Constructor for Root Switch We have to specify switches that are connected to its downlink
 	 * ports, and corresponding bandwidths
@@ -65,8 +65,7 @@ public class RootSwitch extends Switch {
 
 		NetworkPacket hspkt = (NetworkPacket) ev.getData();
 		int recvVMid = hspkt.pkt.reciever;
-		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
-		schedule(getId(), switching_delay, CloudSimTags.Network_Event_send);
+		scheduleCoalesced(CloudSimTags.Network_Event_send, switching_delay);
 
 		if (level == NetworkConstants.ROOT_LEVEL) {
 			// get id of edge router
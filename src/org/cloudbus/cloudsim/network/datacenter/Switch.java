@@ -18,15 +18,15 @@ import java.util.TreeMap;
 
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Vm;
-import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
-import org.cloudbus.cloudsim.core.predicates.PredicateType;
 import org.cloudbus.cloudsim.lists.VmList;
 
 public class Switch extends SimEntity {
 
+	private static final long serialVersionUID = 1L;
+
 	// switch level
 	public int id;
 
@@ -131,8 +131,7 @@ public class Switch extends SimEntity {
 		// int src=ev.getSource();
 		NetworkPacket hspkt = (NetworkPacket) ev.getData();
 		int recvVMid = hspkt.pkt.reciever;
-		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
-		schedule(getId(), latency, CloudSimTags.Network_Event_send);
+		scheduleCoalesced(CloudSimTags.Network_Event_send, latency);
 		if (level == NetworkConstants.EDGE_LEVEL) {
 			// packet is to be recieved by host
 			int hostid = dc.VmtoHostlist.get(recvVMid);
@@ -169,8 +168,7 @@ public class Switch extends SimEntity {
 		// int src=ev.getSource();
 		NetworkPacket hspkt = (NetworkPacket) ev.getData();
 		int recvVMid = hspkt.pkt.reciever;
-		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_send));
-		schedule(getId(), switching_delay, CloudSimTags.Network_Event_send);
+		scheduleCoalesced(CloudSimTags.Network_Event_send, switching_delay);
 		if (level == NetworkConstants.EDGE_LEVEL) {
 			// packet is recieved from host
 			// packet is to be sent to aggregate level or to another host in the
@@ -265,8 +263,7 @@ public class Switch extends SimEntity {
 
 	protected void processpacket(SimEvent ev) {
 		// send packet to itself with switching delay (discarding other)
-		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.Network_Event_UP));
-		schedule(getId(), switching_delay, CloudSimTags.Network_Event_UP);
+		scheduleCoalesced(CloudSimTags.Network_Event_UP, switching_delay);
 		pktlist.add((NetworkPacket) ev.getData());
 
 		// add the packet in the list
@@ -8,6 +8,8 @@
 
 package org.cloudbus.cloudsim.network.datacenter;
 
+import java.io.Serializable;
+
 /**
  * Taskstage represents various stages a networkCloudlet can have during execution. Four stage types
  * which are possible-> EXECUTION=0; WAIT_SEND=1; WAIT_RECV=2; FINISH=-2; Check NeworkConstants.java
@@ -22,7 +24,9 @@ package org.cloudbus.cloudsim.network.datacenter;
  * @author Saurabh Kumar Garg
  * @since CloudSim Toolkit 1.0
  */
-public class TaskStage {
+public class TaskStage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	public TaskStage(int type, double data, double time, double stageid, long memory, int peer, int vpeer) {
 		super();
@@ -29,6 +29,8 @@ import org.cloudbus.cloudsim.core.CloudSim;
  */
 public class WorkflowApp extends AppCloudlet {
 
+	private static final long serialVersionUID = 1L;
+
 	public WorkflowApp(int type, int appID, double deadline, int numbervm, int userId) {
 		super(type, appID, deadline, numbervm, userId);
 		exeTime = 100;
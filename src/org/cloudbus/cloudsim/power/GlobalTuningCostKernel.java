@@ -0,0 +1,53 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.io.Serializable;
+
+/**
+ * The GlobalTuningCostKernel interface needs to be implemented in order to provide the shape of
+ * the costs of {@link PowerVmAllocationPolicyMigrationGlobalTuning}. The cost of a VM on a host is
+ * <tt>f(x) - f(S - x)</tt> for each resource, and <tt>f(x + S) - f(S)</tt> on a target host, where
+ * <tt>x</tt> is the usage of the VM and <tt>S</tt> the sum over the VMs of the host. The kernel is
+ * the function <tt>f</tt>, evaluated several times for each VM and each target host.
+ * <p>
+ * The kernels of the policy are exponentials <tt>base^x</tt> computed with a bounded relative
+ * error. The index of the hosts relies on the properties of the exponential to skip the hosts that
+ * cannot be the best target of a VM, widening its bounds by the error of the kernel. Other kernels
+ * have to return false from {@link #isExponential()}, and every host is then searched.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public interface GlobalTuningCostKernel extends Serializable {
+
+    /**
+     * Gets the value of the kernel.
+     *
+     * @param x the usage, or a sum of usages
+     * @return the value
+     */
+    double getValue(double x);
+
+    /**
+     * Checks if the kernel is an exponential <tt>base^x</tt>, with <tt>base &gt; 1</tt>.
+     *
+     * @return true if the kernel is an exponential
+     */
+    boolean isExponential();
+
+    /**
+     * Gets the largest relative error of {@link #getValue(double)} from <tt>base^x</tt>, for the
+     * values of <tt>x</tt> where <tt>base^x</tt> is a normal double. Only meaningful if the kernel
+     * is an exponential.
+     *
+     * @return the relative error
+     */
+    double getRelativeError();
+
+}
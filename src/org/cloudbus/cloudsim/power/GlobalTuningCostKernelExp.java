@@ -0,0 +1,71 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+/**
+ * The exponential kernel computed as <tt>exp(x ln(base))</tt>, with the logarithm of the base
+ * computed once. {@link Math#exp(double)} is about three times faster than
+ * {@link Math#pow(double, double)}. The rounding of <tt>x ln(base)</tt> is at most
+ * <tt>|x ln(base)| 2^-52</tt>, which is below <tt>1.6e-13</tt> wherever <tt>base^x</tt> is a
+ * normal double, and the exponential adds one ulp, hence the documented error of <tt>2e-13</tt>.
+ * This is the default kernel of the policy.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class GlobalTuningCostKernelExp implements GlobalTuningCostKernel {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The relative error of the kernel. */
+    private static final double ERROR = 2e-13;
+
+    /** The base. */
+    private final double base;
+
+    /** The natural logarithm of the base. */
+    private final double logBase;
+
+    /**
+     * Instantiates a new exp kernel.
+     *
+     * @param base the base, greater than 1
+     */
+    public GlobalTuningCostKernelExp(double base) {
+        if (!(base > 1)) {
+            throw new IllegalArgumentException("The base must be greater than 1");
+        }
+        this.base = base;
+        logBase = Math.log(base);
+    }
+
+    @Override
+    public double getValue(double x) {
+        return Math.exp(x * logBase);
+    }
+
+    @Override
+    public boolean isExponential() {
+        return true;
+    }
+
+    @Override
+    public double getRelativeError() {
+        return ERROR;
+    }
+
+    /**
+     * Gets the base.
+     *
+     * @return the base
+     */
+    public double getBase() {
+        return base;
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+/**
+ * The exponential kernel computed with {@link Math#pow(double, double)}, which is within one ulp
+ * of <tt>base^x</tt>. It is the slowest kernel, and gives the costs the policy computed before the
+ * kernels were introduced.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class GlobalTuningCostKernelPow implements GlobalTuningCostKernel {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The relative error of {@link Math#pow(double, double)}, one ulp. */
+    private static final double ERROR = Math.ulp(1.0);
+
+    /** The base. */
+    private final double base;
+
+    /**
+     * Instantiates a new pow kernel.
+     *
+     * @param base the base, greater than 1
+     */
+    public GlobalTuningCostKernelPow(double base) {
+        if (!(base > 1)) {
+            throw new IllegalArgumentException("The base must be greater than 1");
+        }
+        this.base = base;
+    }
+
+    @Override
+    public double getValue(double x) {
+        return Math.pow(base, x);
+    }
+
+    @Override
+    public boolean isExponential() {
+        return true;
+    }
+
+    @Override
+    public double getRelativeError() {
+        return ERROR;
+    }
+
+    /**
+     * Gets the base.
+     *
+     * @return the base
+     */
+    public double getBase() {
+        return base;
+    }
+
+}
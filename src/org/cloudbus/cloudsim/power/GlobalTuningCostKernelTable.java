@@ -0,0 +1,110 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+/**
+ * The exponential kernel computed from a table. With <tt>y = x ln(base)</tt>, the kernel writes
+ * <tt>y / ln(2) = n + j / 256 + r / ln(2)</tt>, with <tt>|r| &lt;= ln(2) / 512</tt>, and returns
+ * <tt>2^n 2^(j / 256) p(r)</tt>, where <tt>2^(j / 256)</tt> comes from a table of 256 entries,
+ * <tt>p</tt> is the Taylor polynomial of degree 3 of the exponential and the power of two is
+ * built from its bits. It is about twice as fast as {@link GlobalTuningCostKernelExp}.
+ * <p>
+ * The polynomial is within <tt>r^4 / 24 &lt; 1.4e-13</tt> of <tt>exp(r)</tt>, and the rounding of
+ * <tt>y</tt> and of <tt>r</tt> adds at most <tt>3e-13</tt> wherever <tt>base^x</tt> is a normal
+ * double, hence the documented error of <tt>5e-13</tt>. Unlike {@link Math#exp(double)}, the
+ * kernel is not guaranteed to be monotonic from one entry of the table to the next, which the
+ * bounds of the host index cover with the error. The values of <tt>y</tt> beyond +/-693 are passed
+ * to {@link Math#exp(double)}.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class GlobalTuningCostKernelTable implements GlobalTuningCostKernel {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The relative error of the kernel. */
+    private static final double ERROR = 5e-13;
+
+    /** The number of bits of the index in the table. */
+    private static final int BITS = 8;
+
+    /** The number of entries of the table. */
+    private static final int SIZE = 1 << BITS;
+
+    /** The step of the table, <tt>ln(2) / 256</tt>. */
+    private static final double STEP = Math.log(2) / SIZE;
+
+    /** The inverse of the step. */
+    private static final double INVERSE_STEP = SIZE / Math.log(2);
+
+    /** The number of steps beyond which the values are passed to the exponential. */
+    private static final double LIMIT = 1000 * SIZE;
+
+    /** The values <tt>2^(j / 256)</tt>. */
+    private static final double[] TABLE = new double[SIZE];
+
+    static {
+        for (int j = 0; j < SIZE; j++) {
+            TABLE[j] = Math.pow(2, (double) j / SIZE);
+        }
+    }
+
+    /** The base. */
+    private final double base;
+
+    /** The natural logarithm of the base. */
+    private final double logBase;
+
+    /**
+     * Instantiates a new table kernel.
+     *
+     * @param base the base, greater than 1
+     */
+    public GlobalTuningCostKernelTable(double base) {
+        if (!(base > 1)) {
+            throw new IllegalArgumentException("The base must be greater than 1");
+        }
+        this.base = base;
+        logBase = Math.log(base);
+    }
+
+    @Override
+    public double getValue(double x) {
+        double y = x * logBase;
+        double k = Math.rint(y * INVERSE_STEP);
+        if (!(Math.abs(k) < LIMIT)) {
+            return Math.exp(y);
+        }
+        long n = (long) k;
+        double r = y - k * STEP;
+        double p = 1 + r * (1 + r * (0.5 + r * (1.0 / 6)));
+        double scale = Double.longBitsToDouble(((n >> BITS) + 1023) << 52);
+        return TABLE[(int) (n & (SIZE - 1))] * p * scale;
+    }
+
+    @Override
+    public boolean isExponential() {
+        return true;
+    }
+
+    @Override
+    public double getRelativeError() {
+        return ERROR;
+    }
+
+    /**
+     * Gets the base.
+     *
+     * @return the base
+     */
+    public double getBase() {
+        return base;
+    }
+
+}
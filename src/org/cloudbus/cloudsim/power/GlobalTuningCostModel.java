@@ -0,0 +1,606 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+
+/**
+ * The cost model of {@link PowerVmAllocationPolicyMigrationGlobalTuning}. It keeps, for each host,
+ * the CPU, memory and network usage of its VMs, their sums and the cost of each VM, which is
+ * <tt>f(x) - f(S - x)</tt> for each resource, where <tt>f</tt> is the kernel of the costs,
+ * <tt>x</tt> is the usage of the VM and <tt>S</tt> the sum over the VMs of the host, both
+ * normalised by the capacity of the host.
+ * <p>
+ * The model persists between the rounds of the policy. {@link #update()} reads the usage of
+ * every VM, which is cheap, and only recomputes the sums and the costs of the hosts whose VMs or
+ * usage changed since the previous round.
+ * <p>
+ * The state is kept in primitive arrays reused from a round to the next. The values of the VMs are
+ * stored in compressed sparse row layout: the VMs of host <tt>h</tt> are at the indices
+ * <tt>[offset[h], offset[h + 1])</tt>, in the order of the VM list of the host. The values of the
+ * hosts are stored in one array per field, so that scanning the target hosts of a VM reads
+ * contiguous memory.
+ * <p>
+ * The usage of the VMs and its sums are kept as read from the VMs, and normalised when a cost is
+ * computed, by the capacity of the host the cost is computed for. The capacity of each host is
+ * read once, when the host is first seen, into a table of the reciprocals of its total MIPS, memory
+ * and bandwidth, so that a fleet mixing types of hosts is normalised host by host and
+ * computing the cost of a VM on a target host only takes three multiplications by its entries.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+class GlobalTuningCostModel implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The hosts. */
+    private final List<? extends Host> hostList;
+
+    /** The kernel of the costs. */
+    private final GlobalTuningCostKernel kernel;
+
+    /** The number of hosts of the model. */
+    private int hostCount;
+
+    /** The index of the first VM of each host, and the number of VMs at index hostCount. */
+    private int[] offset = new int[1];
+
+    /** The VMs. */
+    private Vm[] vms = new Vm[0];
+
+    /** The CPU usage of the VMs: their currently requested MIPS. */
+    private double[] cpu = new double[0];
+
+    /** The requested memory of the VMs. */
+    private double[] mem = new double[0];
+
+    /** The requested bandwidth of the VMs. */
+    private double[] net = new double[0];
+
+    /** The cost of the VMs on their current host. */
+    private double[] cost = new double[0];
+
+    /** Whether the VMs have been moved off their host by {@link #moveVm(int, int, int)}. */
+    private boolean[] moved = new boolean[0];
+
+    /** The offsets computed by the last layout, swapped with the current ones when they change. */
+    private int[] nextOffset = new int[1];
+
+    /** The VMs moved to the new offsets when the number of VMs of a host changes. */
+    private Vm[] nextVms = new Vm[0];
+
+    /** The values moved to the new offsets when the number of VMs of a host changes. */
+    private double[] nextCpu = new double[0], nextMem = new double[0], nextNet = new double[0],
+            nextCost = new double[0];
+
+    /** The sums of the usage of the VMs of each host. */
+    private double[] cpuSum = new double[0], memSum = new double[0], netSum = new double[0];
+
+    /** The cost terms of the sums of each host: <tt>f(S)</tt>, the sums being normalised. */
+    private double[] cpuPow = new double[0], memPow = new double[0], netPow = new double[0];
+
+    /**
+     * The capacity table: the reciprocals of the total MIPS, of the memory and of the bandwidth of
+     * each host, by which the usage on the host is multiplied to normalise it.
+     */
+    private double[] cpuScale = new double[0], memScale = new double[0], netScale = new double[0];
+
+    /** Whether each host has to be recomputed whatever the usage of its VMs. */
+    private boolean[] stale = new boolean[0];
+
+    /** The number of hosts recomputed by the last update. */
+    private int dirtyHosts;
+
+    /**
+     * Creates an empty model.
+     *
+     * @param hostList the hosts
+     * @param kernel the kernel of the costs
+     */
+    GlobalTuningCostModel(List<? extends Host> hostList, GlobalTuningCostKernel kernel) {
+        this.hostList = hostList;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Reads the usage of the VMs and recomputes the hosts which changed. The CPU usage of a VM is
+     * the MIPS it currently requests, normalised by the total MIPS of the host like the memory and
+     * the bandwidth are by the capacity of the host, so it does not depend on the length of the
+     * rounds.
+     *
+     * @return the number of hosts recomputed
+     */
+    int update() {
+        layout();
+        dirtyHosts = 0;
+        for (int h = 0; h < hostCount; h++) {
+            if (update(h, hostList.get(h))) {
+                dirtyHosts++;
+            }
+        }
+        return dirtyHosts;
+    }
+
+    /**
+     * Gets the number of hosts recomputed by the last update.
+     *
+     * @return the number of hosts
+     */
+    int getDirtyHosts() {
+        return dirtyHosts;
+    }
+
+    /**
+     * Gets the number of hosts, as of the last update.
+     *
+     * @return the number of hosts
+     */
+    int getHostCount() {
+        return hostCount;
+    }
+
+    /**
+     * Gets the number of VMs of a host, as of the last update.
+     *
+     * @param host the index of the host
+     * @return the number of VMs
+     */
+    int getVmCount(int host) {
+        return offset[host + 1] - offset[host];
+    }
+
+    /**
+     * Gets the cost of a VM on its current host.
+     *
+     * @param host the index of the host
+     * @param vm the index of the VM in the VM list of the host
+     * @return the cost
+     */
+    double getCost(int host, int vm) {
+        return cost[offset[host] + vm];
+    }
+
+    /**
+     * Gets the sum of the costs of the VMs on their hosts. The VMs whose cost is not finite, e.g.
+     * those with no usage and no MIPS, are left out. Once VMs have been moved with
+     * {@link #moveVm(int, int, int)}, the sum is only meaningful again after the next update.
+     *
+     * @return the total cost
+     */
+    double getTotalCost() {
+        double total = 0;
+        for (int i = 0; i < offset[hostCount]; i++) {
+            if (!Double.isInfinite(cost[i]) && !Double.isNaN(cost[i])) {
+                total += cost[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the sum of the absolute values of the finite costs of the VMs on their hosts, the scale
+     * of the changes of the total cost.
+     *
+     * @return the sum of the absolute costs
+     */
+    double getTotalCostMagnitude() {
+        double total = 0;
+        for (int i = 0; i < offset[hostCount]; i++) {
+            if (!Double.isInfinite(cost[i]) && !Double.isNaN(cost[i])) {
+                total += Math.abs(cost[i]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the kernel of the costs.
+     *
+     * @return the kernel
+     */
+    GlobalTuningCostKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Gets the CPU usage of a VM, not normalised.
+     *
+     * @param host the index of the host
+     * @param vm the index of the VM in the VM list of the host
+     * @return the CPU usage
+     */
+    double getCpu(int host, int vm) {
+        return cpu[offset[host] + vm];
+    }
+
+    /**
+     * Gets the requested memory of a VM, not normalised.
+     *
+     * @param host the index of the host
+     * @param vm the index of the VM in the VM list of the host
+     * @return the requested memory
+     */
+    double getMem(int host, int vm) {
+        return mem[offset[host] + vm];
+    }
+
+    /**
+     * Gets the requested bandwidth of a VM, not normalised.
+     *
+     * @param host the index of the host
+     * @param vm the index of the VM in the VM list of the host
+     * @return the requested bandwidth
+     */
+    double getNet(int host, int vm) {
+        return net[offset[host] + vm];
+    }
+
+    /**
+     * Gets the factor normalising the CPU usage on a host: the reciprocal of its total MIPS.
+     *
+     * @param host the index of the host
+     * @return the factor
+     */
+    double getCpuScale(int host) {
+        return cpuScale[host];
+    }
+
+    /**
+     * Gets the factor normalising the memory on a host: the reciprocal of its memory.
+     *
+     * @param host the index of the host
+     * @return the factor
+     */
+    double getMemScale(int host) {
+        return memScale[host];
+    }
+
+    /**
+     * Gets the factor normalising the bandwidth on a host: the reciprocal of its bandwidth.
+     *
+     * @param host the index of the host
+     * @return the factor
+     */
+    double getNetScale(int host) {
+        return netScale[host];
+    }
+
+    /**
+     * Gets the sum of the CPU usage of the VMs of a host, not normalised.
+     *
+     * @param host the index of the host
+     * @return the sum
+     */
+    double getCpuSum(int host) {
+        return cpuSum[host];
+    }
+
+    /**
+     * Gets the CPU cost term of a host: <tt>f(S / pes)</tt>, where <tt>S</tt> is its CPU usage.
+     *
+     * @param host the index of the host
+     * @return the cost term
+     */
+    double getCpuPow(int host) {
+        return cpuPow[host];
+    }
+
+    /**
+     * Gets the memory cost term of a host: <tt>f(S / ram)</tt>.
+     *
+     * @param host the index of the host
+     * @return the cost term
+     */
+    double getMemPow(int host) {
+        return memPow[host];
+    }
+
+    /**
+     * Gets the network cost term of a host: <tt>f(S / bw)</tt>.
+     *
+     * @param host the index of the host
+     * @return the cost term
+     */
+    double getNetPow(int host) {
+        return netPow[host];
+    }
+
+    /**
+     * Gets the cost a VM would have on another host. The usage of the VMs already on the target
+     * host is taken from their running sums, so each call is constant time.
+     *
+     * @param fromHost the index of the current host of the VM
+     * @param toHost the index of the target host
+     * @param vm the index of the VM in the VM list of its current host
+     * @return the cost
+     */
+    double getNewCost(int fromHost, int toHost, int vm) {
+        int i = offset[fromHost] + vm;
+        double cpuFirst = (cpu[i] + cpuSum[toHost]) * cpuScale[toHost];
+        double cpuCost = kernel.getValue(cpuFirst) - cpuPow[toHost];
+        double memCost = kernel.getValue(mem[i] * memScale[toHost]) - memPow[toHost];
+        double netCost = kernel.getValue(net[i] * netScale[toHost]) - netPow[toHost];
+        return cpuCost + memCost + netCost;
+    }
+
+    /**
+     * Gets the cost a VM would have on a host of another model, sharing the kernel of this one, as
+     * {@link #getNewCost(int, int, int)} does within a model.
+     *
+     * @param fromHost the index of the current host of the VM
+     * @param vm the index of the VM in the VM list of its current host
+     * @param target the model of the target host
+     * @param toHost the index of the target host in its model
+     * @return the cost
+     */
+    double getNewCost(int fromHost, int vm, GlobalTuningCostModel target, int toHost) {
+        int i = offset[fromHost] + vm;
+        double cpuFirst = (cpu[i] + target.cpuSum[toHost]) * target.cpuScale[toHost];
+        double cpuCost = kernel.getValue(cpuFirst) - target.cpuPow[toHost];
+        double memCost = kernel.getValue(mem[i] * target.memScale[toHost]) - target.memPow[toHost];
+        double netCost = kernel.getValue(net[i] * target.netScale[toHost]) - target.netPow[toHost];
+        return cpuCost + memCost + netCost;
+    }
+
+    /**
+     * Checks if a VM has been moved off its host since the last update.
+     *
+     * @param host the index of the host
+     * @param vm the index of the VM in the VM list of the host
+     * @return true if the VM has been moved
+     */
+    boolean isMoved(int host, int vm) {
+        return moved[offset[host] + vm];
+    }
+
+    /**
+     * Moves a VM to another host in the model only, to get the costs of the other VMs once it has
+     * been migrated. The usage of the VM is taken off the sums of its host and added to those of
+     * the target host, as in {@link #getNewCost(int, int, int)}, and the costs of the VMs of both
+     * hosts are recomputed. The VM keeps its index and is excluded from the costs of its host.
+     * Both hosts are read again from the actual placement at the next update.
+     *
+     * @param fromHost the index of the current host of the VM
+     * @param vm the index of the VM in the VM list of its current host
+     * @param toHost the index of the target host
+     */
+    void moveVm(int fromHost, int vm, int toHost) {
+        moveVm(fromHost, vm, this, toHost);
+    }
+
+    /**
+     * Moves a VM to a host of another model, sharing the kernel of this one, in the models only, as
+     * {@link #moveVm(int, int, int)} does within a model.
+     *
+     * @param fromHost the index of the current host of the VM
+     * @param vm the index of the VM in the VM list of its current host
+     * @param target the model of the target host
+     * @param toHost the index of the target host in its model
+     */
+    void moveVm(int fromHost, int vm, GlobalTuningCostModel target, int toHost) {
+        int i = offset[fromHost] + vm;
+        moved[i] = true;
+        cpuSum[fromHost] -= cpu[i];
+        memSum[fromHost] -= mem[i];
+        netSum[fromHost] -= net[i];
+        target.cpuSum[toHost] += cpu[i];
+        target.memSum[toHost] += mem[i];
+        target.netSum[toHost] += net[i];
+        refresh(fromHost);
+        target.refresh(toHost);
+        stale[fromHost] = true;
+        target.stale[toHost] = true;
+    }
+
+    /**
+     * Gets a lower bound of the cost any VM would have on a host, the kernel being an exponential.
+     * The CPU term of the cost is not negative, and the memory and network terms are at least
+     * <tt>1 - base^S</tt>, since the usage of the VM is not negative. The bound holds for the
+     * values computed by {@link #getNewCost(int, int, int)} too, the operations being monotonic,
+     * once widened by the error of the kernel.
+     *
+     * @param toHost the index of the host
+     * @return the lower bound
+     */
+    double getNewCostFloor(int toHost) {
+        double floor = (0.0 + (1.0 - memPow[toHost])) + (1.0 - netPow[toHost]);
+        double error = kernel.getRelativeError();
+        if (error == 0) {
+            return floor;
+        }
+        return floor - 4 * error
+                * (cpuPow[toHost] + Math.abs(memPow[toHost]) + Math.abs(netPow[toHost]) + 2);
+    }
+
+    /**
+     * Resizes the arrays to the hosts and their numbers of VMs. If the number of VMs of a host
+     * changed, the values of all the hosts are moved to their new offsets, and the hosts whose
+     * number of VMs changed are marked stale. The capacity of the hosts not seen before is read
+     * into the capacity table, the capacity of a host not changing during a simulation.
+     */
+    private void layout() {
+        int count = hostList.size();
+        if (nextOffset.length < count + 1) {
+            nextOffset = new int[count + 1];
+        }
+        boolean relayout = count != hostCount;
+        for (int h = 0; h < count; h++) {
+            nextOffset[h + 1] = nextOffset[h] + hostList.get(h).getVmList().size();
+            if (h < hostCount && nextOffset[h + 1] - nextOffset[h] != offset[h + 1] - offset[h]) {
+                relayout = true;
+            }
+        }
+        if (!relayout) {
+            return;
+        }
+
+        if (cpuSum.length < count) {
+            int capacity = Math.max(count, cpuSum.length * 2);
+            cpuSum = Arrays.copyOf(cpuSum, capacity);
+            memSum = Arrays.copyOf(memSum, capacity);
+            netSum = Arrays.copyOf(netSum, capacity);
+            cpuPow = Arrays.copyOf(cpuPow, capacity);
+            memPow = Arrays.copyOf(memPow, capacity);
+            netPow = Arrays.copyOf(netPow, capacity);
+            cpuScale = Arrays.copyOf(cpuScale, capacity);
+            memScale = Arrays.copyOf(memScale, capacity);
+            netScale = Arrays.copyOf(netScale, capacity);
+            stale = Arrays.copyOf(stale, capacity);
+        }
+        int total = nextOffset[count];
+        if (nextVms.length < total) {
+            int capacity = Math.max(total, nextVms.length * 2);
+            nextVms = new Vm[capacity];
+            nextCpu = new double[capacity];
+            nextMem = new double[capacity];
+            nextNet = new double[capacity];
+            nextCost = new double[capacity];
+        }
+        for (int h = 0; h < count; h++) {
+            int size = nextOffset[h + 1] - nextOffset[h];
+            int oldSize = h < hostCount ? offset[h + 1] - offset[h] : 0;
+            int kept = Math.min(size, oldSize);
+            if (kept > 0) {
+                System.arraycopy(vms, offset[h], nextVms, nextOffset[h], kept);
+                System.arraycopy(cpu, offset[h], nextCpu, nextOffset[h], kept);
+                System.arraycopy(mem, offset[h], nextMem, nextOffset[h], kept);
+                System.arraycopy(net, offset[h], nextNet, nextOffset[h], kept);
+                System.arraycopy(cost, offset[h], nextCost, nextOffset[h], kept);
+            }
+            Arrays.fill(nextVms, nextOffset[h] + kept, nextOffset[h + 1], null);
+            if (h >= hostCount) {
+                Host host = hostList.get(h);
+                cpuScale[h] = 1.0 / host.getTotalMips();
+                memScale[h] = 1.0 / host.getRam();
+                netScale[h] = 1.0 / host.getBw();
+            }
+            if (h >= hostCount || size != oldSize) {
+                stale[h] = true;
+            }
+        }
+        Arrays.fill(nextVms, total, nextVms.length, null);
+
+        int[] swapOffset = offset;
+        offset = nextOffset;
+        nextOffset = swapOffset;
+        Vm[] swapVms = vms;
+        vms = nextVms;
+        nextVms = swapVms;
+        double[] swap = cpu;
+        cpu = nextCpu;
+        nextCpu = swap;
+        swap = mem;
+        mem = nextMem;
+        nextMem = swap;
+        swap = net;
+        net = nextNet;
+        nextNet = swap;
+        swap = cost;
+        cost = nextCost;
+        nextCost = swap;
+        if (moved.length < vms.length) {
+            moved = new boolean[vms.length];
+        } else {
+            Arrays.fill(moved, false);
+        }
+        hostCount = count;
+    }
+
+    /**
+     * Reads the usage of the VMs of a host and recomputes its costs if anything changed.
+     *
+     * @param h the index of the host
+     * @param host the host
+     * @return true if the costs have been recomputed
+     */
+    private boolean update(int h, Host host) {
+        List<Vm> vmList = host.getVmList();
+        int from = offset[h];
+        int to = offset[h + 1];
+        boolean dirty = stale[h];
+        for (int i = from; i < to; i++) {
+            Vm vm = vmList.get(i - from);
+            double vmCpu = getCpu(vm);
+            double vmMem = vm.getCurrentRequestedRam();
+            double vmNet = vm.getCurrentRequestedBw();
+            if (vms[i] != vm || cpu[i] != vmCpu || mem[i] != vmMem || net[i] != vmNet) {
+                vms[i] = vm;
+                cpu[i] = vmCpu;
+                mem[i] = vmMem;
+                net[i] = vmNet;
+                dirty = true;
+            }
+        }
+        if (!dirty) {
+            return false;
+        }
+        stale[h] = false;
+
+        double cpuTotal = 0.0;
+        double memTotal = 0.0;
+        double netTotal = 0.0;
+        for (int i = from; i < to; i++) {
+            moved[i] = false;
+            cpuTotal += cpu[i];
+            memTotal += mem[i];
+            netTotal += net[i];
+        }
+        cpuSum[h] = cpuTotal;
+        memSum[h] = memTotal;
+        netSum[h] = netTotal;
+        refresh(h);
+        return true;
+    }
+
+    /**
+     * Recomputes the cost terms of the sums of a host and the costs of the VMs which have not been
+     * moved off it.
+     *
+     * @param h the index of the host
+     */
+    private void refresh(int h) {
+        double cpuTotal = cpuSum[h];
+        double memTotal = memSum[h];
+        double netTotal = netSum[h];
+        double cpuFactor = cpuScale[h];
+        double memFactor = memScale[h];
+        double netFactor = netScale[h];
+        cpuPow[h] = kernel.getValue(cpuTotal * cpuFactor);
+        memPow[h] = kernel.getValue(memTotal * memFactor);
+        netPow[h] = kernel.getValue(netTotal * netFactor);
+        for (int i = offset[h]; i < offset[h + 1]; i++) {
+            if (moved[i]) {
+                continue;
+            }
+            double cpuCost = kernel.getValue(cpu[i] * cpuFactor)
+                    - kernel.getValue((cpuTotal - cpu[i]) * cpuFactor);
+            double memCost = kernel.getValue(mem[i] * memFactor)
+                    - kernel.getValue((memTotal - mem[i]) * memFactor);
+            double netCost = kernel.getValue(net[i] * netFactor)
+                    - kernel.getValue((netTotal - net[i]) * netFactor);
+            cost[i] = cpuCost + memCost + netCost;
+        }
+    }
+
+    /**
+     * Gets the CPU usage of a VM: the MIPS it currently requests, not normalised.
+     *
+     * @param vm the VM
+     * @return the CPU usage
+     */
+    private double getCpu(Vm vm) {
+        return ((PowerVm) vm).getCpuUsageTime();
+    }
+
+}
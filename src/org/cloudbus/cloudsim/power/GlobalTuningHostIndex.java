@@ -0,0 +1,501 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.io.Serializable;
+
+/**
+ * An index of the hosts of a {@link GlobalTuningCostModel}, to find the best target of a VM
+ * without computing its cost on every host. The index is a k-d tree over the CPU, memory and
+ * network cost terms of the hosts: each node splits its hosts at the median of the term with the
+ * largest spread, down to buckets of a few hosts. Each node keeps the extremes of the capacities
+ * and of the cost terms of its hosts, which give a lower bound of the cost of a VM on any host of
+ * the node, so the nodes which cannot beat the best target found so far are skipped. Since the
+ * hosts of a node have close cost terms, the bounds are tight.
+ * <p>
+ * The cost of a VM on a target host is, for the CPU, <tt>base^((x + S) c) - base^(S c)</tt>, where
+ * <tt>c</tt> is the entry of the host in the capacity table, which is at least
+ * <tt>min(base^(S c)) (base^(min(c) x) - 1)</tt>, and for the memory <tt>base^(x c) - P</tt>, which
+ * is at least <tt>base^(min(c) x) - max(P)</tt>, and the same for the network. The bound
+ * is widened by a small fraction of the magnitude of the terms to cover the rounding errors and
+ * the error of the {@link GlobalTuningCostKernel}. The bounds only hold if the kernel is an
+ * exponential; with other kernels, every host is searched.
+ * <p>
+ * The search first goes down to the bucket with the highest bound of the cost reduction to get a
+ * good candidate, then visits the whole tree. A host replaces the best target if its cost reduction
+ * is higher, or equal with a lower index, and a node is only skipped if its bound is strictly below
+ * the best reduction (or not above the floor while no target has been found), so the target found
+ * is the one a scan of the hosts in order would find, whatever the order the nodes are visited in.
+ * The tree is built at the start of each round; when the sums of a host change during the round,
+ * the host stays in its bucket and only the extremes of the nodes above it are updated. The search
+ * only reads the index and the model, so it can be run by several threads.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+class GlobalTuningHostIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The number of hosts of a bucket. */
+    private static final int BUCKET = 16;
+
+    /** The fraction of the magnitude of the terms added to the bounds, with the kernel error. */
+    private static final double SLACK = 1e-12;
+
+    /** The cost model. */
+    private final GlobalTuningCostModel model;
+
+    /** The number of hosts indexed. */
+    private int hosts;
+
+    /** The number of leaves of the tree, a power of two at least equal to the number of buckets. */
+    private int leaves;
+
+    /** The hosts, in the order of the buckets of the tree. */
+    private int[] hostAt = new int[0];
+
+    /** The position of each host in {@link #hostAt}. */
+    private int[] position = new int[0];
+
+    /** The cost terms the tree is built on, by host. */
+    private double[][] keys = new double[3][0];
+
+    /** The extremes of the CPU entries of the capacity table of the hosts of each node. */
+    private double[] minCpuScale = new double[0], maxCpuScale = new double[0];
+
+    /** The extremes of the memory and bandwidth entries of the capacity table of each node. */
+    private double[] minMemScale = new double[0], maxMemScale = new double[0],
+            minNetScale = new double[0], maxNetScale = new double[0];
+
+    /** The highest CPU usage of the hosts of each node. */
+    private double[] maxCpuSum = new double[0];
+
+    /** The lowest CPU cost term of the hosts of each node. */
+    private double[] minCpuPow = new double[0];
+
+    /** The highest memory and network cost terms of the hosts of each node. */
+    private double[] maxMemPow = new double[0], maxNetPow = new double[0];
+
+    /**
+     * Creates an empty index.
+     *
+     * @param model the cost model
+     */
+    GlobalTuningHostIndex(GlobalTuningCostModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Builds the index from the model.
+     */
+    void rebuild() {
+        hosts = model.getHostCount();
+        int buckets = (hosts + BUCKET - 1) / BUCKET;
+        leaves = 1;
+        while (leaves < buckets) {
+            leaves *= 2;
+        }
+        if (minCpuScale.length < 2 * leaves) {
+            int size = 2 * leaves;
+            minCpuScale = new double[size];
+            maxCpuScale = new double[size];
+            minMemScale = new double[size];
+            maxMemScale = new double[size];
+            minNetScale = new double[size];
+            maxNetScale = new double[size];
+            maxCpuSum = new double[size];
+            minCpuPow = new double[size];
+            maxMemPow = new double[size];
+            maxNetPow = new double[size];
+        }
+        if (hostAt.length < hosts) {
+            hostAt = new int[hosts];
+            position = new int[hosts];
+            keys = new double[3][hosts];
+        }
+        for (int host = 0; host < hosts; host++) {
+            hostAt[host] = host;
+            keys[0][host] = model.getCpuPow(host);
+            keys[1][host] = model.getMemPow(host);
+            keys[2][host] = model.getNetPow(host);
+        }
+        split(0, leaves);
+        for (int i = 0; i < hosts; i++) {
+            position[hostAt[i]] = i;
+        }
+        for (int bucket = 0; bucket < leaves; bucket++) {
+            setLeaf(bucket);
+        }
+        for (int node = leaves - 1; node >= 1; node--) {
+            merge(node);
+        }
+    }
+
+    /**
+     * Orders the hosts of a node so that the hosts of its first child have the lowest values of
+     * the cost term with the largest spread, and does the same for the children.
+     *
+     * @param lo the first bucket of the node
+     * @param width the number of buckets of the node
+     */
+    private void split(int lo, int width) {
+        int from = lo * BUCKET;
+        int to = Math.min((lo + width) * BUCKET, hosts);
+        int middle = (lo + width / 2) * BUCKET;
+        if (width == 1 || middle >= to) {
+            if (width > 1) {
+                split(lo, width / 2);
+            }
+            return;
+        }
+        double[] key = null;
+        double spread = -1;
+        for (double[] candidate : keys) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, candidate[hostAt[i]]);
+                max = Math.max(max, candidate[hostAt[i]]);
+            }
+            if (max - min > spread) {
+                spread = max - min;
+                key = candidate;
+            }
+        }
+        if (key != null) {
+            select(key, from, to, middle);
+        }
+        split(lo, width / 2);
+        split(lo + width / 2, width / 2);
+    }
+
+    /**
+     * Partially sorts a range of {@link #hostAt} so that the host at a position has the value of
+     * the key it would have if the range was sorted, the hosts before it having lower or equal
+     * values and those after it higher or equal values.
+     *
+     * @param key the key, by host
+     * @param from the first position of the range
+     * @param to the position after the last one
+     * @param k the position
+     */
+    private void select(double[] key, int from, int to, int k) {
+        int left = from;
+        int right = to - 1;
+        while (left < right) {
+            double pivot = key[hostAt[(left + right) >>> 1]];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (key[hostAt[i]] < pivot) {
+                    i++;
+                }
+                while (key[hostAt[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = hostAt[i];
+                    hostAt[i] = hostAt[j];
+                    hostAt[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Updates the index after the sums of a host have changed in the model.
+     *
+     * @param host the index of the host
+     */
+    void update(int host) {
+        int bucket = position[host] / BUCKET;
+        setLeaf(bucket);
+        for (int node = (leaves + bucket) / 2; node >= 1; node /= 2) {
+            merge(node);
+        }
+    }
+
+    /**
+     * Finds the host to which migrating a VM most reduces its cost, if it reduces it by more than
+     * a floor.
+     *
+     * @param fromHost the index of the host of the VM
+     * @param vm the index of the VM in the VM list of its host
+     * @param closed the hosts which cannot be targets, may be null
+     * @param floor the reduction of the cost the target has to exceed
+     * @return the index of the target host, or -1 if no host reduces the cost of the VM by more
+     *         than the floor
+     */
+    int findTarget(int fromHost, int vm, boolean[] closed, double floor) {
+        return search(fromHost, vm, closed, floor).getTarget();
+    }
+
+    /**
+     * Searches the host to which migrating a VM most reduces its cost, if it reduces it by more
+     * than a floor, as {@link #findTarget(int, int, boolean[], double)} does.
+     *
+     * @param fromHost the index of the host of the VM
+     * @param vm the index of the VM in the VM list of its host
+     * @param closed the hosts which cannot be targets, may be null
+     * @param floor the reduction of the cost the target has to exceed
+     * @return the completed search, with its target and its number of cost evaluations
+     */
+    Search search(int fromHost, int vm, boolean[] closed, double floor) {
+        Search search = new Search(fromHost, vm, closed, floor);
+        if (hosts == 0) {
+            return search;
+        }
+        if (search.pruning) {
+            int node = 1;
+            int lo = 0;
+            int width = leaves;
+            while (node < leaves) {
+                width /= 2;
+                int left = 2 * node;
+                if (lo + width >= bucketCount()
+                        || search.bound(left) >= search.bound(left + 1)) {
+                    node = left;
+                } else {
+                    node = left + 1;
+                    lo += width;
+                }
+            }
+            search.scanBucket(lo);
+            search.scanned = lo;
+        }
+        search.visit(1, 0, leaves);
+        return search;
+    }
+
+    /**
+     * Gets the number of buckets holding hosts.
+     *
+     * @return the number of buckets
+     */
+    private int bucketCount() {
+        return (hosts + BUCKET - 1) / BUCKET;
+    }
+
+    /**
+     * Sets the extremes of a leaf from the hosts of its bucket. A leaf without hosts gets extremes
+     * which are ignored, the searches not visiting it.
+     *
+     * @param bucket the index of the bucket
+     */
+    private void setLeaf(int bucket) {
+        int node = leaves + bucket;
+        minCpuScale[node] = Double.POSITIVE_INFINITY;
+        maxCpuScale[node] = 0.0;
+        minMemScale[node] = Double.POSITIVE_INFINITY;
+        maxMemScale[node] = 0.0;
+        minNetScale[node] = Double.POSITIVE_INFINITY;
+        maxNetScale[node] = 0.0;
+        maxCpuSum[node] = Double.NEGATIVE_INFINITY;
+        minCpuPow[node] = Double.POSITIVE_INFINITY;
+        maxMemPow[node] = Double.NEGATIVE_INFINITY;
+        maxNetPow[node] = Double.NEGATIVE_INFINITY;
+        int end = Math.min((bucket + 1) * BUCKET, hosts);
+        for (int i = bucket * BUCKET; i < end; i++) {
+            int host = hostAt[i];
+            minCpuScale[node] = Math.min(minCpuScale[node], model.getCpuScale(host));
+            maxCpuScale[node] = Math.max(maxCpuScale[node], model.getCpuScale(host));
+            minMemScale[node] = Math.min(minMemScale[node], model.getMemScale(host));
+            maxMemScale[node] = Math.max(maxMemScale[node], model.getMemScale(host));
+            minNetScale[node] = Math.min(minNetScale[node], model.getNetScale(host));
+            maxNetScale[node] = Math.max(maxNetScale[node], model.getNetScale(host));
+            maxCpuSum[node] = Math.max(maxCpuSum[node], model.getCpuSum(host));
+            minCpuPow[node] = Math.min(minCpuPow[node], model.getCpuPow(host));
+            maxMemPow[node] = Math.max(maxMemPow[node], model.getMemPow(host));
+            maxNetPow[node] = Math.max(maxNetPow[node], model.getNetPow(host));
+        }
+    }
+
+    /**
+     * Sets the extremes of an inner node from its children.
+     *
+     * @param node the node
+     */
+    private void merge(int node) {
+        int left = 2 * node;
+        int right = left + 1;
+        minCpuScale[node] = Math.min(minCpuScale[left], minCpuScale[right]);
+        maxCpuScale[node] = Math.max(maxCpuScale[left], maxCpuScale[right]);
+        minMemScale[node] = Math.min(minMemScale[left], minMemScale[right]);
+        maxMemScale[node] = Math.max(maxMemScale[left], maxMemScale[right]);
+        minNetScale[node] = Math.min(minNetScale[left], minNetScale[right]);
+        maxNetScale[node] = Math.max(maxNetScale[left], maxNetScale[right]);
+        maxCpuSum[node] = Math.max(maxCpuSum[left], maxCpuSum[right]);
+        minCpuPow[node] = Math.min(minCpuPow[left], minCpuPow[right]);
+        maxMemPow[node] = Math.max(maxMemPow[left], maxMemPow[right]);
+        maxNetPow[node] = Math.max(maxNetPow[left], maxNetPow[right]);
+    }
+
+    /**
+     * The search of the best target of a VM.
+     */
+    class Search {
+
+        /** The index of the host of the VM. */
+        private final int fromHost;
+
+        /** The index of the VM in the VM list of its host. */
+        private final int vm;
+
+        /** The hosts which cannot be targets, may be null. */
+        private final boolean[] closed;
+
+        /** The usage of the VM, not normalised. */
+        private final double cpu, mem, net;
+
+        /** The cost of the VM on its host. */
+        private final double cost;
+
+        /** The kernel of the costs. */
+        private final GlobalTuningCostKernel kernel;
+
+        /** The fraction of the magnitude of the cost terms added to the bounds. */
+        private final double slack;
+
+        /**
+         * Whether the bounds hold, which needs an exponential kernel, a non-negative usage and a
+         * finite cost.
+         */
+        private final boolean pruning;
+
+        /** The best target found so far, or -1. */
+        private int target = -1;
+
+        /** The cost reduction of the best target, or the floor. */
+        private double diff;
+
+        /** The number of hosts on which the cost of the VM has been computed. */
+        private int evaluations;
+
+        /** The bucket scanned before visiting the tree, which is not scanned again, or -1. */
+        private int scanned = -1;
+
+        /**
+         * Starts a search.
+         *
+         * @param fromHost the index of the host of the VM
+         * @param vm the index of the VM in the VM list of its host
+         * @param closed the hosts which cannot be targets, may be null
+         * @param floor the reduction of the cost the target has to exceed
+         */
+        Search(int fromHost, int vm, boolean[] closed, double floor) {
+            this.fromHost = fromHost;
+            this.vm = vm;
+            this.closed = closed;
+            diff = floor;
+            cpu = model.getCpu(fromHost, vm);
+            mem = model.getMem(fromHost, vm);
+            net = model.getNet(fromHost, vm);
+            cost = model.getCost(fromHost, vm);
+            kernel = model.getKernel();
+            slack = SLACK + 8 * kernel.getRelativeError();
+            pruning = kernel.isExponential() && cpu >= 0 && mem >= 0 && net >= 0
+                    && !Double.isInfinite(cost) && !Double.isNaN(cost);
+        }
+
+        /**
+         * Gets an upper bound of the cost reduction of the VM on the hosts of a node.
+         *
+         * @param node the node
+         * @return the bound, NaN or infinite if it cannot be computed
+         */
+        double bound(int node) {
+            double cpuFloor = minCpuPow[node] * (kernel.getValue(cpu * minCpuScale[node]) - 1);
+            double memFloor = kernel.getValue(mem * minMemScale[node]) - maxMemPow[node];
+            double netFloor = kernel.getValue(net * minNetScale[node]) - maxNetPow[node];
+            double magnitude = Math.abs(cost)
+                    + kernel.getValue((cpu + maxCpuSum[node]) * maxCpuScale[node])
+                    + Math.max(kernel.getValue(mem * maxMemScale[node]), Math.abs(maxMemPow[node]))
+                    + Math.max(kernel.getValue(net * maxNetScale[node]), Math.abs(maxNetPow[node]));
+            return cost - (cpuFloor + memFloor + netFloor) + slack * magnitude;
+        }
+
+        /**
+         * Visits a node, skipping it if it cannot beat the best target.
+         *
+         * @param node the node
+         * @param lo the first bucket of the node
+         * @param width the number of buckets of the node
+         */
+        void visit(int node, int lo, int width) {
+            if (lo >= bucketCount()) {
+                return;
+            }
+            if (pruning) {
+                double bound = bound(node);
+                if (bound < diff || target < 0 && bound <= diff) {
+                    return;
+                }
+            }
+            if (width == 1) {
+                if (lo != scanned) {
+                    scanBucket(lo);
+                }
+            } else {
+                visit(2 * node, lo, width / 2);
+                visit(2 * node + 1, lo + width / 2, width / 2);
+            }
+        }
+
+        /**
+         * Computes the cost of the VM on the hosts of a bucket.
+         *
+         * @param bucket the index of the bucket
+         */
+        void scanBucket(int bucket) {
+            int end = Math.min((bucket + 1) * BUCKET, hosts);
+            for (int i = bucket * BUCKET; i < end; i++) {
+                int host = hostAt[i];
+                if (host == fromHost || closed != null && closed[host]) {
+                    continue;
+                }
+                double hostDiff = cost - model.getNewCost(fromHost, host, vm);
+                evaluations++;
+                if (hostDiff > diff || hostDiff == diff && target >= 0 && host < target) {
+                    diff = hostDiff;
+                    target = host;
+                }
+            }
+        }
+
+        /**
+         * Gets the best target found.
+         *
+         * @return the index of the target host, or -1 if no host reduces the cost of the VM by
+         *         more than the floor
+         */
+        int getTarget() {
+            return target;
+        }
+
+        /**
+         * Gets the number of hosts on which the cost of the VM has been computed.
+         *
+         * @return the number of cost evaluations
+         */
+        int getEvaluations() {
+            return evaluations;
+        }
+
+    }
+
+}
@@ -0,0 +1,450 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plans the migrations of a round of {@link PowerVmAllocationPolicyMigrationGlobalTuning}. The
+ * planner greedily accepts the migration which most reduces the cost, applies it to the cost model
+ * with {@link GlobalTuningCostModel#moveVm(int, int, int)}, and goes on until no migration reduces
+ * the cost by more than the threshold. Each VM is migrated at most once, and each host is the
+ * source and the target of a limited number of migrations per round.
+ * <p>
+ * The best target of each VM is found with a {@link GlobalTuningHostIndex}, which skips the hosts
+ * that cannot beat the best target found so far, and is kept between the accepted migrations. A
+ * migration only changes the costs on its two hosts, so only the VMs of those hosts and the VMs
+ * whose best target was one of them are scanned again; the other VMs only compare their best
+ * target with the two hosts. The first migration accepted is the one the policy picked when it
+ * migrated a single VM per round, ties being broken by the order of the hosts and of their VMs.
+ * <p>
+ * The search of the best targets only reads the cost model and writes the entries of each VM, so
+ * it can be split over the source hosts and run in a {@link ForkJoinPool}. The best migration is
+ * then picked sequentially in the order of the VMs, which gives the same plan whatever the number
+ * of threads.
+ * <p>
+ * A round can be given a budget of cost evaluations or of wall time. The VMs of the hosts with the
+ * highest cost are then searched first, by blocks of hosts, and the planner stops when the budget
+ * runs out, returning the migrations accepted so far; the VMs of the hosts not searched yet are
+ * not migrated. The first block is always searched and the first migration always accepted, and
+ * the budget is only checked between the blocks and between the migrations, so a round can exceed
+ * it by the search of a block or by the update after a migration. Since the number of cost
+ * evaluations does not depend on the threads, a plan with an evaluation budget is the same
+ * whatever the number of threads.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+class GlobalTuningMigrationPlanner implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The number of source hosts searched between two checks of the budget. */
+    private static final int BLOCK = 256;
+
+    /** The cost model. */
+    private final GlobalTuningCostModel model;
+
+    /** The index of the hosts, searched for the best targets. */
+    private final GlobalTuningHostIndex index;
+
+    /** The index of the first VM of each host in the arrays of the VMs. */
+    private int[] first = new int[1];
+
+    /** The host of each VM. */
+    private int[] vmHost = new int[0];
+
+    /** The best target of each VM, or -1 if no host reduces its cost by more than the threshold. */
+    private int[] bestTarget = new int[0];
+
+    /** The reduction of the cost of each VM when migrated to its best target, or the threshold. */
+    private double[] bestDiff = new double[0];
+
+    /** The number of migrations planned from and to each host. */
+    private int[] outCount = new int[0], inCount = new int[0];
+
+    /** Whether each host has reached its cap of inbound migrations. */
+    private boolean[] closed = new boolean[0];
+
+    /** The source hosts, in the order they are searched. */
+    private int[] order = new int[0];
+
+    /** The number of source hosts searched, the first ones in {@link #order}. */
+    private int searchedHosts;
+
+    /** The maximum number of migrations from a host in a round. */
+    private int maxOut;
+
+    /** The minimum reduction of the cost of a migration. */
+    private double threshold;
+
+    /** The maximum number of cost evaluations of a round, or 0 for no limit. */
+    private long evaluationBudget;
+
+    /** The maximum wall time of a round, in nanoseconds, or 0 for no limit. */
+    private long timeBudget;
+
+    /** The number of cost evaluations of the last round. */
+    private long evaluations;
+
+    /** Whether the last round stopped because its budget ran out. */
+    private boolean budgetExhausted;
+
+    /** The pool running the search in parallel, or null to run it sequentially; not checkpointed. */
+    private transient ForkJoinPool pool;
+
+    /** The number of source hosts below which a search task is not split any more. */
+    private int grain;
+
+    /**
+     * Creates a planner.
+     *
+     * @param model the cost model, which the planner modifies
+     */
+    GlobalTuningMigrationPlanner(GlobalTuningCostModel model) {
+        this.model = model;
+        index = new GlobalTuningHostIndex(model);
+    }
+
+    /**
+     * Sets the pool running the search of the best targets.
+     *
+     * @param pool the pool, or null to run the search sequentially
+     */
+    void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the budget of a round.
+     *
+     * @param evaluationBudget the maximum number of cost evaluations, or 0 for no limit
+     * @param timeBudget the maximum wall time, in nanoseconds, or 0 for no limit
+     */
+    void setBudget(long evaluationBudget, long timeBudget) {
+        this.evaluationBudget = evaluationBudget;
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Gets the number of cost evaluations of the last round.
+     *
+     * @return the number of cost evaluations
+     */
+    long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Checks if the last round stopped because its budget ran out.
+     *
+     * @return true if the budget ran out before the plan was complete
+     */
+    boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    /**
+     * Plans the migrations of a round, the cost model having been updated.
+     *
+     * @param threshold the minimum reduction of the cost of a migration
+     * @param maxOut the maximum number of migrations from a host
+     * @param maxIn the maximum number of migrations to a host
+     * @return the migrations, in the order they were accepted, as the index of the source host,
+     *         of the VM in its VM list and of the target host
+     */
+    List<int[]> plan(double threshold, int maxOut, int maxIn) {
+        long start = System.nanoTime();
+        this.maxOut = maxOut;
+        this.threshold = threshold;
+        evaluations = 0;
+        int hosts = model.getHostCount();
+        if (first.length < hosts + 1) {
+            first = new int[hosts + 1];
+            outCount = new int[hosts];
+            inCount = new int[hosts];
+            closed = new boolean[hosts];
+            order = new int[hosts];
+        } else {
+            Arrays.fill(outCount, 0);
+            Arrays.fill(inCount, 0);
+            Arrays.fill(closed, false);
+        }
+        if (maxIn <= 0) {
+            Arrays.fill(closed, true);
+        }
+        index.rebuild();
+        for (int h = 0; h < hosts; h++) {
+            first[h + 1] = first[h] + model.getVmCount(h);
+        }
+        int vms = first[hosts];
+        if (vmHost.length < vms) {
+            int capacity = Math.max(vms, vmHost.length * 2);
+            vmHost = new int[capacity];
+            bestTarget = new int[capacity];
+            bestDiff = new double[capacity];
+        }
+        for (int h = 0; h < hosts; h++) {
+            Arrays.fill(vmHost, first[h], first[h + 1], h);
+        }
+
+        boolean budgeted = evaluationBudget > 0 || timeBudget > 0;
+        if (budgeted) {
+            sortHosts(hosts);
+            Arrays.fill(bestTarget, 0, vms, -1);
+            searchedHosts = 0;
+            do {
+                int end = Math.min(searchedHosts + BLOCK, hosts);
+                evaluations += search(searchedHosts, end, -1, -1);
+                searchedHosts = end;
+            } while (searchedHosts < hosts && !isOverBudget(start));
+        } else {
+            for (int h = 0; h < hosts; h++) {
+                order[h] = h;
+            }
+            evaluations += search(0, hosts, -1, -1);
+            searchedHosts = hosts;
+        }
+        budgetExhausted = searchedHosts < hosts;
+
+        List<int[]> migrations = new ArrayList<int[]>();
+        while (true) {
+            int peek = -1;
+            double max = threshold;
+            for (int i = 0; i < vms; i++) {
+                if (bestTarget[i] >= 0 && bestDiff[i] > max) {
+                    max = bestDiff[i];
+                    peek = i;
+                }
+            }
+            if (peek < 0) {
+                break;
+            }
+            if (budgeted && !migrations.isEmpty() && isOverBudget(start)) {
+                budgetExhausted = true;
+                break;
+            }
+            int from = vmHost[peek];
+            int to = bestTarget[peek];
+            migrations.add(new int[] { from, peek - first[from], to });
+            model.moveVm(from, peek - first[from], to);
+            outCount[from]++;
+            inCount[to]++;
+            closed[to] = inCount[to] >= maxIn;
+            index.update(from);
+            index.update(to);
+
+            evaluations += search(0, searchedHosts, from, to);
+        }
+        return migrations;
+    }
+
+    /**
+     * Checks if the budget of the round has run out.
+     *
+     * @param start the start of the round, as given by {@link System#nanoTime()}
+     * @return true if the budget has run out
+     */
+    private boolean isOverBudget(long start) {
+        return evaluationBudget > 0 && evaluations >= evaluationBudget
+                || timeBudget > 0 && System.nanoTime() - start >= timeBudget;
+    }
+
+    /**
+     * Sorts the source hosts by decreasing sum of the costs of their VMs, so that the VMs which
+     * have the most to gain are searched first. The hosts whose VMs have no finite cost come last,
+     * and ties are broken by the index of the hosts.
+     *
+     * @param hosts the number of hosts
+     */
+    private void sortHosts(int hosts) {
+        final double[] hostCost = new double[hosts];
+        Integer[] sorted = new Integer[hosts];
+        for (int h = 0; h < hosts; h++) {
+            double total = Double.NEGATIVE_INFINITY;
+            for (int vm = 0; vm < model.getVmCount(h); vm++) {
+                double cost = model.getCost(h, vm);
+                if (!Double.isInfinite(cost) && !Double.isNaN(cost)) {
+                    total = Double.isInfinite(total) ? cost : total + cost;
+                }
+            }
+            hostCost[h] = total;
+            sorted[h] = h;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byCost = Double.compare(hostCost[b], hostCost[a]);
+                return byCost != 0 ? byCost : a.compareTo(b);
+            }
+
+        });
+        for (int p = 0; p < hosts; p++) {
+            order[p] = sorted[p];
+        }
+    }
+
+    /**
+     * Updates the best targets of the VMs of a range of the searched source hosts, in parallel if
+     * there is a pool.
+     *
+     * @param fromPosition the position of the first source host in the search order
+     * @param toPosition the position after the last source host
+     * @param from the source host of the last migration, or -1 to scan all the VMs
+     * @param to the target host of the last migration, or -1 to scan all the VMs
+     * @return the number of cost evaluations
+     */
+    private long search(int fromPosition, int toPosition, int from, int to) {
+        if (pool == null) {
+            return searchRange(fromPosition, toPosition, from, to);
+        }
+        grain = Math.max(1, (toPosition - fromPosition) / (pool.getParallelism() * 8));
+        return pool.invoke(new SearchTask(fromPosition, toPosition, from, to));
+    }
+
+    /**
+     * Updates the best targets of the VMs of a range of source hosts. After a migration, only the
+     * VMs of its hosts and those whose best target was one of them are scanned again, the others
+     * compare their best target with the two hosts.
+     *
+     * @param fromPosition the position of the first source host in the search order
+     * @param toPosition the position after the last source host
+     * @param from the source host of the last migration, or -1 to scan all the VMs
+     * @param to the target host of the last migration, or -1 to scan all the VMs
+     * @return the number of cost evaluations
+     */
+    private long searchRange(int fromPosition, int toPosition, int from, int to) {
+        long rangeEvaluations = 0;
+        for (int p = fromPosition; p < toPosition; p++) {
+            int h = order[p];
+            for (int i = first[h]; i < first[h + 1]; i++) {
+                if (from < 0 || h == from || h == to || bestTarget[i] == from
+                        || bestTarget[i] == to) {
+                    rangeEvaluations += scan(i);
+                } else {
+                    rangeEvaluations += consider(i, from) + consider(i, to);
+                }
+            }
+        }
+        return rangeEvaluations;
+    }
+
+    /**
+     * Finds the best target of a VM among all the hosts, with the index of the hosts. Only the
+     * targets reducing the cost by more than the threshold are kept, since the others are never
+     * planned.
+     *
+     * @param i the index of the VM
+     * @return the number of cost evaluations
+     */
+    private int scan(int i) {
+        bestTarget[i] = -1;
+        bestDiff[i] = threshold;
+        int h = vmHost[i];
+        int vm = i - first[h];
+        if (outCount[h] >= maxOut || model.isMoved(h, vm)) {
+            return 0;
+        }
+        GlobalTuningHostIndex.Search search = index.search(h, vm, closed, threshold);
+        int target = search.getTarget();
+        if (target >= 0) {
+            bestTarget[i] = target;
+            bestDiff[i] = model.getCost(h, vm) - model.getNewCost(h, target, vm);
+        }
+        return search.getEvaluations();
+    }
+
+    /**
+     * Compares a host with the best target of a VM, the cost of the VM on its host and on its best
+     * target being unchanged. Ties go to the host of lower index, as with {@link #scan(int)}. With
+     * an exponential kernel, the cost on the host is only computed if its lower bound lets it beat
+     * the best target.
+     *
+     * @param i the index of the VM
+     * @param target the index of the host
+     * @return the number of cost evaluations
+     */
+    private int consider(int i, int target) {
+        int h = vmHost[i];
+        int vm = i - first[h];
+        if (outCount[h] >= maxOut || closed[target] || model.isMoved(h, vm)) {
+            return 0;
+        }
+        double cost = model.getCost(h, vm);
+        if (model.getKernel().isExponential() && model.getCpu(h, vm) >= 0) {
+            double bound = cost - model.getNewCostFloor(target);
+            if (bound < bestDiff[i] || bestTarget[i] < 0 && bound <= bestDiff[i]) {
+                return 0;
+            }
+        }
+        double diff = cost - model.getNewCost(h, target, vm);
+        if (diff > bestDiff[i]
+                || diff == bestDiff[i] && bestTarget[i] >= 0 && target < bestTarget[i]) {
+            bestDiff[i] = diff;
+            bestTarget[i] = target;
+        }
+        return 1;
+    }
+
+    /**
+     * A task updating the best targets of the VMs of a range of source hosts, split in two until
+     * the range is smaller than the grain. It returns its number of cost evaluations.
+     */
+    private class SearchTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The position of the first source host in the search order. */
+        private final int fromPosition;
+
+        /** The position after the last source host. */
+        private final int toPosition;
+
+        /** The source host of the last migration, or -1. */
+        private final int from;
+
+        /** The target host of the last migration, or -1. */
+        private final int to;
+
+        /**
+         * Creates a task.
+         *
+         * @param fromPosition the position of the first source host in the search order
+         * @param toPosition the position after the last source host
+         * @param from the source host of the last migration, or -1 to scan all the VMs
+         * @param to the target host of the last migration, or -1 to scan all the VMs
+         */
+        SearchTask(int fromPosition, int toPosition, int from, int to) {
+            this.fromPosition = fromPosition;
+            this.toPosition = toPosition;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (toPosition - fromPosition <= grain) {
+                return searchRange(fromPosition, toPosition, from, to);
+            }
+            int middle = (fromPosition + toPosition) >>> 1;
+            SearchTask right = new SearchTask(middle, toPosition, from, to);
+            right.fork();
+            long leftEvaluations = new SearchTask(fromPosition, middle, from, to).compute();
+            return leftEvaluations + right.join();
+        }
+
+    }
+
+}
@@ -18,6 +18,7 @@ import org.cloudbus.cloudsim.*;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
 import org.cloudbus.cloudsim.core.predicates.PredicateType;
 import org.cloudbus.cloudsim.examples.power.Constants;
 
@@ -37,6 +38,8 @@ import org.cloudbus.cloudsim.examples.power.Constants;
  */
 public class PowerDatacenter extends Datacenter {
 
+    private static final long serialVersionUID = 1L;
+
     /** The power. */
     private double power;
 
@@ -58,6 +61,30 @@ public class PowerDatacenter extends Datacenter {
 
     private boolean tuningInited;
 
+    /** The current interval between two rounds of global tuning, adapted to the cost drift. */
+    private double globalTuningInterval;
+
+    /** The bounds of the adaptive interval of global tuning. */
+    private double globalTuningIntervalMin, globalTuningIntervalMax;
+
+    /** The cost drifts above and below which the interval of global tuning shrinks and grows. */
+    private double globalTuningDriftHigh, globalTuningDriftLow;
+
+    /** Whether the datacenter events are suspended while the datacenter is quiescent. */
+    private boolean quiescenceDetection;
+
+    /** Whether the datacenter events have been suspended by the last processing. */
+    private boolean quiescent;
+
+    /** The last time the processing of the cloudlets found the datacenter changed. */
+    private double lastChangeTime;
+
+    /** The number of migrations started before the last round of global tuning. */
+    private int globalTuningMigrationCount = -1;
+
+    /** Whether a round of global tuning has been skipped while the datacenter was quiescent. */
+    private boolean globalTuningDeferred;
+
     /**
      * Instantiates a new datacenter.
      *
@@ -85,6 +112,10 @@ public class PowerDatacenter extends Datacenter {
         setLocalSchedulingInterval(Constants.LOCAL_INTERVIAL);
         setLocalLastProcessTime(0.0);
         setGlobalLastProcessTime(0.0);
+        setGlobalTuningIntervalMin(Constants.GLOBAL_INTERVIAL_MIN);
+        setGlobalTuningIntervalMax(Constants.GLOBAL_INTERVIAL_MAX);
+        setGlobalTuningDriftHigh(Constants.GLOBAL_DRIFT_HIGH);
+        setGlobalTuningDriftLow(Constants.GLOBAL_DRIFT_LOW);
 
         tuningInited = false;
 
@@ -103,18 +134,25 @@ public class PowerDatacenter extends Datacenter {
     @Override
     protected void updateCloudletProcessing() {
         if (!tuningInited){
-            CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_GLOBAL_TUNING));
-            schedule(getId(), getGlobalScheulingInterval(), CloudSimTags.VM_GLOBAL_TUNING);
+            setGlobalTuningInterval(getGlobalScheulingInterval());
+            if (isGlobalTuning()) {
+                scheduleCoalesced(CloudSimTags.VM_GLOBAL_TUNING, getGlobalTuningInterval());
+            }
 
-            CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_LOCAL_TUNING));
-            schedule(getId(), getLocalSchedulingInterval(), CloudSimTags.VM_LOCAL_TUNING);
+            schedulePeriodic(CloudSimTags.VM_LOCAL_TUNING, getLocalSchedulingInterval());
 
             tuningInited = true;
         }
 
         if (getCloudletSubmitted() == -1 || getCloudletSubmitted() == CloudSim.clock()) {
-            CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
-            schedule(getId(), getSchedulingInterval(), CloudSimTags.VM_DATACENTER_EVENT);
+            if (isQuiescenceDetection()) {
+                // the event is a timer, whose pending event is only replaced through the timer
+                CloudSim.cancelAll(getId(), new DatacenterEventPredicate());
+                schedulePeriodic(CloudSimTags.VM_DATACENTER_EVENT, getSchedulingInterval());
+            } else {
+                CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
+                schedule(getId(), getSchedulingInterval(), CloudSimTags.VM_DATACENTER_EVENT);
+            }
 
             return;
         }
@@ -126,59 +164,93 @@ public class PowerDatacenter extends Datacenter {
 
             double minTime = updateCloudetProcessingWithoutSchedulingFutureEventsForce();
 
-            if (!isDisableMigrations()) {
-                List<Map<String, Object>> migrationMap = getVmAllocationPolicy().optimizeAllocation(
-                        getVmList());
-
-                if (migrationMap != null) {
-                    for (Map<String, Object> migrate : migrationMap) {
-                        Vm vm = (Vm) migrate.get("vm");
-                        PowerHost targetHost = (PowerHost) migrate.get("host");
-                        PowerHost oldHost = (PowerHost) vm.getHost();
-
-                        if (oldHost == null) {
-                            Log.formatLine(
-                                    "%.2f: Migration of VM #%d to Host #%d is started",
-                                    currentTime,
-                                    vm.getId(),
-                                    targetHost.getId());
-                        } else {
-                            Log.formatLine(
-                                    "%.2f: Migration of VM #%d from Host #%d to Host #%d is started",
-                                    currentTime,
-                                    vm.getId(),
-                                    oldHost.getId(),
-                                    targetHost.getId());
-                        }
+            boolean migrationsStarted = false;
+            if (!isGlobalTuning() && !isDisableMigrations()) {
+                // the other policies consolidate on the processing of the cloudlets
+                migrationsStarted = startMigrations(getVmAllocationPolicy().optimizeAllocation(
+                        getVmList()));
+            }
 
-                        if(targetHost.addMigratingInVm(vm)){
-                            incrementMigrationCount();
-                            /** VM migration delay = RAM / bandwidth **/
-                            // we use BW / 2 to model BW available for migration purposes, the other
-                            // half of BW is for VM communication
-                            // around 16 seconds for 1024 MB using 1 Gbit/s network
-                            send(
-                                    getId(),
-                                    vm.getRam() / ((double) targetHost.getBw() / (2 * 8000)),
-                                    CloudSimTags.VM_MIGRATE,
-                                    migrate);
+            // schedules an event to the next time
+            quiescent = false;
+            if (minTime != Double.MAX_VALUE) {
+                if (!isQuiescenceDetection()) {
+                    CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
+                    send(getId(), getSchedulingInterval(), CloudSimTags.VM_DATACENTER_EVENT);
+                } else {
+                    CloudSim.cancelAll(getId(), new DatacenterEventPredicate());
+                    schedulePeriodic(CloudSimTags.VM_DATACENTER_EVENT, getSchedulingInterval());
+                    if (migrationsStarted || !isQuiescent()) {
+                        lastChangeTime = currentTime;
+                    } else {
+                        // nothing changes before the next cloudlet finishes, the utilization of a
+                        // cloudlet changes or a new event comes in
+                        double wakeTime = Math.min(minTime, getNextUtilizationChangeTime());
+                        if (wakeTime > currentTime) {
+                            quiescent = suspendTimer(
+                                    CloudSimTags.VM_DATACENTER_EVENT,
+                                    wakeTime - currentTime);
                         }
-
-
                     }
                 }
+            } else if (isQuiescenceDetection()) {
+                cancelTimer(CloudSimTags.VM_DATACENTER_EVENT);
             }
 
-            // schedules an event to the next time
-            if (minTime != Double.MAX_VALUE) {
-                CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
-                send(getId(), getSchedulingInterval(), CloudSimTags.VM_DATACENTER_EVENT);
+            if (globalTuningDeferred && !quiescent) {
+                // the round skipped while the datacenter was quiescent is planned from the new state
+                globalTuningDeferred = false;
+                scheduleCoalesced(CloudSimTags.VM_GLOBAL_TUNING, 0);
             }
 
             setLastProcessTime(currentTime);
         }
     }
 
+    /**
+     * Checks if the datacenter is quiescent: no cloudlet has just been submitted, no VM is being
+     * migrated and the utilization of every host is the same as at the previous processing. The
+     * next processing would then only account for the energy of an unchanged state, until the
+     * utilization of a cloudlet changes, see {@link #getNextUtilizationChangeTime()}.
+     *
+     * @return true, if the datacenter is quiescent
+     */
+    protected boolean isQuiescent() {
+        if (getCloudletSubmitted() == CloudSim.clock() || isInMigration()) {
+            return false;
+        }
+        for (PowerHost host : this.<PowerHost> getHostList()) {
+            if (host.getPreviousUtilizationOfCpu() != host.getUtilizationOfCpu()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the first time from now at which the utilization of a cloudlet running on the hosts may
+     * change, other than by a cloudlet being submitted or finishing, e.g. the next sample of a
+     * utilization trace which differs from the previous one.
+     *
+     * @return the first time the utilization may change, the current time if it may change at any
+     *         time, or {@link Double#MAX_VALUE} if it does not change while the cloudlets run
+     */
+    protected double getNextUtilizationChangeTime() {
+        double currentTime = CloudSim.clock();
+        double changeTime = Double.MAX_VALUE;
+        for (PowerHost host : this.<PowerHost> getHostList()) {
+            for (Vm vm : host.getVmList()) {
+                changeTime = Math.min(
+                        changeTime,
+                        vm.getCloudletScheduler().getNextUtilizationChangeTime(currentTime));
+                if (changeTime <= currentTime) {
+                    return currentTime;
+                }
+            }
+        }
+        return changeTime;
+    }
+
     /**
      * Update cloudet processing without scheduling future events.
      *
@@ -201,6 +273,11 @@ public class PowerDatacenter extends Datacenter {
         double minTime = Double.MAX_VALUE;
         double timeDiff = currentTime - getLastProcessTime();
         double timeFrameDatacenterEnergy = 0.0;
+        double skippedTime = 0.0;
+        if (isQuiescenceDetection() && timeDiff > getSchedulingInterval()) {
+            // only the last interval of a suspension saw the utilization change
+            skippedTime = timeDiff - getSchedulingInterval();
+        }
 
         Log.printLine("\n\n--------------------------------------------------------------\n\n");
         Log.formatLine("New resource usage for the time frame starting at %.2f:", currentTime);
@@ -232,7 +309,14 @@ public class PowerDatacenter extends Datacenter {
                 double timeFrameHostEnergy = host.getEnergyLinearInterpolation(
                         previousUtilizationOfCpu,
                         utilizationOfCpu,
-                        timeDiff);
+                        timeDiff - skippedTime);
+                if (skippedTime > 0) {
+                    // the utilization was constant over the skipped intervals
+                    timeFrameHostEnergy += host.getEnergyLinearInterpolation(
+                            previousUtilizationOfCpu,
+                            previousUtilizationOfCpu,
+                            skippedTime);
+                }
                 timeFrameDatacenterEnergy += timeFrameHostEnergy;
 
                 Log.printLine();
@@ -308,6 +392,10 @@ public class PowerDatacenter extends Datacenter {
                 processLocalTuning();
                 break;
 
+            case CloudSimTags.VM_GLOBAL_TUNING:
+                processGlobalTuning();
+                break;
+
             default:
                 if (ev == null) {
                     Log.printLine(getName() + ".processOtherEvent(): Error - an event is null.");
@@ -316,11 +404,134 @@ public class PowerDatacenter extends Datacenter {
     }
 
 
+    /**
+     * Checks if the allocation policy is tuned globally on the {@link CloudSimTags#VM_GLOBAL_TUNING}
+     * event, at the adaptive interval of global tuning. The other policies optimize the allocation
+     * each time the cloudlets are processed.
+     *
+     * @return true, if the allocation policy is a {@link PowerVmAllocationPolicyMigrationGlobalTuning}
+     */
+    protected boolean isGlobalTuning() {
+        return getVmAllocationPolicy() instanceof PowerVmAllocationPolicyMigrationGlobalTuning;
+    }
+
+    /**
+     * Processes a round of global tuning, if the allocation policy is tuned globally. The policy
+     * plans the migrations from the usage of the VMs as of the last processing of the cloudlets,
+     * the migrations are started, and the next round is scheduled after the interval of global
+     * tuning, adapted to the drift of the cost with {@link #updateGlobalTuningInterval(boolean)}.
+     * With quiescence detection, a round is skipped while the datacenter is quiescent if nothing
+     * changed since the previous round, which started no migration: it would plan none either. The
+     * round is then planned once the datacenter is processed again.
+     */
+    protected void processGlobalTuning() {
+        if (!isGlobalTuning()) {
+            return;
+        }
+        double currentTime = CloudSim.clock();
+        if (quiescent
+                && lastChangeTime < getGlobalLastProcessTime()
+                && getMigrationCount() == globalTuningMigrationCount) {
+            globalTuningDeferred = true;
+            return;
+        }
+        if (currentTime > getGlobalLastProcessTime() && !isDisableMigrations()) {
+            globalTuningMigrationCount = getMigrationCount();
+            List<Map<String, Object>> migrationMap = getVmAllocationPolicy().optimizeAllocation(
+                    getVmList());
+            boolean migrationsStarted = startMigrations(migrationMap);
+            if (migrationsStarted && quiescent) {
+                // the hosts of the migrations are no longer quiescent
+                quiescent = false;
+                resumeTimer(CloudSimTags.VM_DATACENTER_EVENT);
+            }
+            updateGlobalTuningInterval(migrationsStarted);
+            setGlobalLastProcessTime(currentTime);
+        }
+        scheduleCoalesced(CloudSimTags.VM_GLOBAL_TUNING, getGlobalTuningInterval());
+    }
+
+    /**
+     * Starts the migrations planned by the allocation policy.
+     *
+     * @param migrationMap the migrations, may be null
+     * @return true, if a migration was planned
+     */
+    protected boolean startMigrations(List<Map<String, Object>> migrationMap) {
+        if (migrationMap == null) {
+            return false;
+        }
+        double currentTime = CloudSim.clock();
+        for (Map<String, Object> migrate : migrationMap) {
+            Vm vm = (Vm) migrate.get("vm");
+            PowerHost targetHost = (PowerHost) migrate.get("host");
+            PowerHost oldHost = (PowerHost) vm.getHost();
+
+            if (oldHost == null) {
+                Log.formatLine(
+                        "%.2f: Migration of VM #%d to Host #%d is started",
+                        currentTime,
+                        vm.getId(),
+                        targetHost.getId());
+            } else {
+                Log.formatLine(
+                        "%.2f: Migration of VM #%d from Host #%d to Host #%d is started",
+                        currentTime,
+                        vm.getId(),
+                        oldHost.getId(),
+                        targetHost.getId());
+            }
+
+            if(targetHost.addMigratingInVm(vm)){
+                incrementMigrationCount();
+                /** VM migration delay = RAM / bandwidth **/
+                // we use BW / 2 to model BW available for migration purposes, the other
+                // half of BW is for VM communication
+                // around 16 seconds for 1024 MB using 1 Gbit/s network
+                send(
+                        getId(),
+                        vm.getRam() / ((double) targetHost.getBw() / (2 * 8000)),
+                        CloudSimTags.VM_MIGRATE,
+                        migrate);
+            }
+        }
+        return !migrationMap.isEmpty();
+    }
+
+    /**
+     * Adapts the interval of global tuning to the drift of the cost reported by the allocation
+     * policy. The interval is halved when the drift is above the high threshold, and doubled when
+     * it is below the low one and the round started no migration, within the bounds of the
+     * interval. Policies which do not report a drift keep the global scheduling interval.
+     *
+     * @param migrationsStarted whether the round started migrations
+     */
+    protected void updateGlobalTuningInterval(boolean migrationsStarted) {
+        double drift = Double.NaN;
+        if (getVmAllocationPolicy() instanceof PowerVmAllocationPolicyMigrationGlobalTuning) {
+            drift = ((PowerVmAllocationPolicyMigrationGlobalTuning) getVmAllocationPolicy())
+                    .getCostDrift();
+        }
+        if (Double.isNaN(drift)) {
+            return;
+        }
+        double interval = getGlobalTuningInterval();
+        if (drift > getGlobalTuningDriftHigh()) {
+            interval /= 2;
+        } else if (drift < getGlobalTuningDriftLow() && !migrationsStarted) {
+            interval *= 2;
+        }
+        interval = Math.max(interval, getGlobalTuningIntervalMin());
+        interval = Math.min(interval, getGlobalTuningIntervalMax());
+        setGlobalTuningInterval(interval);
+    }
+
     private int processLocalTuning(){
         double currentTime = CloudSim.clock();
         // if some time passed since last processing
         if (currentTime > getLocalLastProcessTime()) {
             System.out.println(currentTime + ": Local tuning call...");
+            boolean resized = false;
 
             //update propensity
             for(Host host : this.getHostList()){
@@ -353,6 +564,9 @@ public class PowerDatacenter extends Datacenter {
                 //update vm property
                 for(Vm vm: powerHost.getVmList()){
                     PowerVm powerVm = (PowerVm) vm;
+                    double mips = powerVm.getMips();
+                    int ram = powerVm.getRam();
+                    long bw = powerVm.getBw();
                     double weight = 0;
                     weight = powerVm.getWorkloadWeight() / vmWorkloadWeightTotal;
 
@@ -372,13 +586,18 @@ public class PowerDatacenter extends Datacenter {
                         powerVm.setBw((int)(powerHost.getBw() * weight*0.5 ));
                     }
 
+                    if (powerVm.getMips() != mips || powerVm.getRam() != ram || powerVm.getBw() != bw) {
+                        resized = true;
+                    }
                 }
             }
-        }
 
-        // schedules an event to the next time
-        CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_LOCAL_TUNING));
-        schedule(getId(), getLocalSchedulingInterval(), CloudSimTags.VM_LOCAL_TUNING);
+            // the datacenter is no longer quiescent once a VM has been resized
+            if (resized && isQuiescenceDetection()) {
+                quiescent = false;
+                resumeTimer(CloudSimTags.VM_DATACENTER_EVENT);
+            }
+        }
 
         setLocalLastProcessTime(currentTime);
         return 1;
@@ -579,6 +798,34 @@ public class PowerDatacenter extends Datacenter {
     }
 
 
+    /**
+     * Checks if quiescence detection is enabled.
+     *
+     * @return true, if the datacenter events are suspended while the datacenter is quiescent
+     */
+    public boolean isQuiescenceDetection() {
+        return quiescenceDetection;
+    }
+
+    /**
+     * Enables the quiescence detection. While the datacenter is quiescent, the processing it does
+     * every scheduling interval is skipped until the next cloudlet finishes, the utilization of a
+     * cloudlet changes or the datacenter receives another event, and the energy of the skipped
+     * interval is accounted for at once by the next processing. The utilization of a cloudlet
+     * following a {@link org.cloudbus.cloudsim.UtilizationModelPlanetLabInMemory} trace changes
+     * at the first sample which differs from the previous one, so the processing resumes at the
+     * first scheduling interval from it; with a model which may change at any time, such as
+     * {@link org.cloudbus.cloudsim.UtilizationModelStochastic}, the processing is never skipped.
+     * The rounds of global tuning which would plan from an unchanged state are skipped too. The
+     * utilization history of the hosts and VMs then only has a sample per processing, which the
+     * policies using it see as a longer interval. Disabled by default.
+     *
+     * @param quiescenceDetection true to enable the quiescence detection
+     */
+    public void setQuiescenceDetection(boolean quiescenceDetection) {
+        this.quiescenceDetection = quiescenceDetection;
+    }
+
     public double getLocalSchedulingInterval() {
         return localSchedulingInterval;
     }
@@ -610,4 +857,111 @@ public class PowerDatacenter extends Datacenter {
     public void setGlobalLastProcessTime(double globalLastProcessTime) {
         this.globalLastProcessTime = globalLastProcessTime;
     }
+
+    /**
+     * Gets the current interval between two rounds of global tuning.
+     *
+     * @return the interval
+     */
+    public double getGlobalTuningInterval() {
+        return globalTuningInterval;
+    }
+
+    /**
+     * Sets the current interval between two rounds of global tuning.
+     *
+     * @param globalTuningInterval the interval
+     */
+    protected void setGlobalTuningInterval(double globalTuningInterval) {
+        this.globalTuningInterval = globalTuningInterval;
+    }
+
+    /**
+     * Gets the shortest interval of global tuning.
+     *
+     * @return the shortest interval
+     */
+    public double getGlobalTuningIntervalMin() {
+        return globalTuningIntervalMin;
+    }
+
+    /**
+     * Sets the shortest interval of global tuning.
+     *
+     * @param globalTuningIntervalMin the shortest interval
+     */
+    public void setGlobalTuningIntervalMin(double globalTuningIntervalMin) {
+        this.globalTuningIntervalMin = globalTuningIntervalMin;
+    }
+
+    /**
+     * Gets the longest interval of global tuning.
+     *
+     * @return the longest interval
+     */
+    public double getGlobalTuningIntervalMax() {
+        return globalTuningIntervalMax;
+    }
+
+    /**
+     * Sets the longest interval of global tuning.
+     *
+     * @param globalTuningIntervalMax the longest interval
+     */
+    public void setGlobalTuningIntervalMax(double globalTuningIntervalMax) {
+        this.globalTuningIntervalMax = globalTuningIntervalMax;
+    }
+
+    /**
+     * Gets the cost drift above which the interval of global tuning is halved.
+     *
+     * @return the drift
+     */
+    public double getGlobalTuningDriftHigh() {
+        return globalTuningDriftHigh;
+    }
+
+    /**
+     * Sets the cost drift above which the interval of global tuning is halved.
+     *
+     * @param globalTuningDriftHigh the drift
+     */
+    public void setGlobalTuningDriftHigh(double globalTuningDriftHigh) {
+        this.globalTuningDriftHigh = globalTuningDriftHigh;
+    }
+
+    /**
+     * Gets the cost drift below which the interval of global tuning is doubled.
+     *
+     * @return the drift
+     */
+    public double getGlobalTuningDriftLow() {
+        return globalTuningDriftLow;
+    }
+
+    /**
+     * Sets the cost drift below which the interval of global tuning is doubled.
+     *
+     * @param globalTuningDriftLow the drift
+     */
+    public void setGlobalTuningDriftLow(double globalTuningDriftLow) {
+        this.globalTuningDriftLow = globalTuningDriftLow;
+    }
+
+    /**
+     * Selects the datacenter events sent outside of the timer of the datacenter, e.g. when a
+     * cloudlet is submitted. They are cancelled when the timer is armed again, while its own
+     * pending event is only replaced through the timer, so that the suspended timers stay in step
+     * with the future queue.
+     */
+    private static class DatacenterEventPredicate extends Predicate {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean match(SimEvent ev) {
+            return ev.getTag() == CloudSimTags.VM_DATACENTER_EVENT && !ev.isTimerEvent();
+        }
+
+    }
 }
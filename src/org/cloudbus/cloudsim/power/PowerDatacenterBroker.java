@@ -13,7 +13,6 @@ import org.cloudbus.cloudsim.*;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
-import org.cloudbus.cloudsim.core.predicates.PredicateType;
 import org.cloudbus.cloudsim.examples.power.Constants;
 import org.cloudbus.cloudsim.lists.VmList;
 
@@ -36,6 +35,8 @@ import java.util.Random;
  */
 public class PowerDatacenterBroker extends DatacenterBroker {
 
+    private static final long serialVersionUID = 1L;
+
     private double cloudletCreateLastProcessTime;
     private int cloudletCreateTimes;
 
@@ -115,6 +116,14 @@ public class PowerDatacenterBroker extends DatacenterBroker {
             getCloudletList().remove(cloudlet);
         }
     }
+    /**
+     * Creates new cloudlets every {@link Constants#CLOUDLET_CREATE_INTERVAL}.
+     */
+    @Override
+    protected void scheduleCloudletCreation() {
+        schedulePeriodic(CloudSimTags.CLOUDLET_CREATE, Constants.CLOUDLET_CREATE_INTERVAL);
+    }
+
     @Override
     protected void processOtherEvent(SimEvent ev) {
         Log.printLine(getName() + ".other Event");
@@ -171,10 +180,6 @@ public class PowerDatacenterBroker extends DatacenterBroker {
 
         submitCloudlets();
 
-        // schedules an event to the next time
-        CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.CLOUDLET_CREATE));
-        schedule(getId(), Constants.CLOUDLET_CREATE_INTERVAL, CloudSimTags.CLOUDLET_CREATE);
-
         setCloudletCreateLastProcessTime(currentTime);
         return 1;
     }
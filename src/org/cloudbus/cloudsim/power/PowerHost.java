@@ -34,6 +34,8 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  */
 public class PowerHost extends HostDynamicWorkload {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The power model. */
 	private PowerModel powerModel;
 
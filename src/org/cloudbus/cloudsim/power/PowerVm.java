@@ -36,6 +36,8 @@ import org.cloudbus.cloudsim.util.MathUtil;
  */
 public class PowerVm extends Vm {
 
+    private static final long serialVersionUID = 1L;
+
     /** The Constant HISTORY_LENGTH. */
     public static final int HISTORY_LENGTH = 30;
 
@@ -129,7 +131,9 @@ public class PowerVm extends Vm {
     @Override
     public double updateVmProcessing(final double currentTime, final List<Double> mipsShare) {
         double time = super.updateVmProcessing(currentTime, mipsShare);
-        if (currentTime > getPreviousTime() && (currentTime - 0.1) % getSchedulingInterval() == 0) {
+        // the history is sampled once per scheduling interval; without a time resolution the
+        // boundary is found by an exact remainder, which a rounding error of the clock defeats
+        if (currentTime > getPreviousTime() && CloudSim.isPeriodBoundary(currentTime - 0.1, getSchedulingInterval())) {
             double utilization = getTotalUtilizationOfCpu(getCloudletScheduler().getPreviousTime());
             if (CloudSim.clock() != 0 || utilization != 0) {
                 addUtilizationHistoryValue(utilization);
@@ -1,6 +1,7 @@
 package org.cloudbus.cloudsim.power;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import org.cloudbus.cloudsim.Host;
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.Vm;
@@ -15,20 +16,65 @@ import org.cloudbus.cloudsim.util.ExecutionTimeMeasurer;
 public class PowerVmAllocationPolicyMigrationGlobalTuning extends
         PowerVmAllocationPolicyMigrationAbstract {
 
-    Vector<Vector<Double>> cpuCost;
-    Vector<Vector<Double>> memCost;
-    Vector<Vector<Double>> netCost;
-    Vector<Vector<Double>> totalCost;
+    private static final long serialVersionUID = 1L;
+
+    /** The cost model, kept between the rounds. */
+    private final GlobalTuningCostModel costModel;
+
+    /** The planner of the migrations of a round. */
+    private final GlobalTuningMigrationPlanner planner;
+
+    /** The maximum number of migrations from a host in a round. */
+    private int maxMigrationsOut;
+
+    /** The maximum number of migrations to a host in a round. */
+    private int maxMigrationsIn;
+
+    /** The maximum number of cost evaluations of a round, or 0 for no limit. */
+    private long evaluationBudget;
+
+    /** The maximum wall time of a round, in seconds, or 0 for no limit. */
+    private double timeBudget;
+
+    /**
+     * The pool searching the migrations in parallel, or null to search them sequentially. It is
+     * not saved in a checkpoint: a restored policy searches sequentially until
+     * {@link #setParallelism(int)} is called again.
+     */
+    private transient ForkJoinPool pool;
+
+    /** The total cost and its magnitude at the start of the last round, NaN before the first. */
+    private double lastTotalCost = Double.NaN, lastCostMagnitude = Double.NaN;
+
+    /** The relative change of the total cost between the starts of the last two rounds. */
+    private double costDrift = Double.NaN;
 
     public PowerVmAllocationPolicyMigrationGlobalTuning(
             List<? extends Host> hostList,
             PowerVmSelectionPolicy vmSelectionPolicy ) {
+        this(hostList, vmSelectionPolicy,
+                new GlobalTuningCostKernelExp(PlanetLabConstants.NUMBER_OF_HOSTS));
+    }
+
+    /**
+     * Instantiates a new policy with the given kernel of the costs.
+     *
+     * @param hostList the host list
+     * @param vmSelectionPolicy the vm selection policy
+     * @param costKernel the kernel of the costs
+     */
+    public PowerVmAllocationPolicyMigrationGlobalTuning(
+            List<? extends Host> hostList,
+            PowerVmSelectionPolicy vmSelectionPolicy,
+            GlobalTuningCostKernel costKernel) {
         super(hostList, vmSelectionPolicy);
 
-        cpuCost = null;
-        memCost = null;
-        netCost = null;
-        totalCost = null;
+        costModel = new GlobalTuningCostModel(hostList, costKernel);
+        planner = new GlobalTuningMigrationPlanner(costModel);
+        maxMigrationsOut = Constants.MIGRATION_OUT_CAP;
+        maxMigrationsIn = Constants.MIGRATION_IN_CAP;
+        evaluationBudget = Constants.ROUND_EVALUATION_BUDGET;
+        timeBudget = Constants.ROUND_TIME_BUDGET;
     }
 
     @Override
@@ -41,10 +87,8 @@ public class PowerVmAllocationPolicyMigrationGlobalTuning extends
 //        saveAllocation();
 
         ExecutionTimeMeasurer.start("optimizeAllocationCalculateCost");
-        cpuCost = calCPU();
-        memCost = calMem();
-        netCost = calNet();
-        totalCost = calCost(cpuCost, memCost, netCost);
+        costModel.update();
+        updateCostDrift(costModel.getTotalCost(), costModel.getTotalCostMagnitude());
         getExecutionTimeHistoryVmReallocation().add(
                 ExecutionTimeMeasurer.end("optimizeAllocationCalculateCost"));
 
@@ -64,187 +108,204 @@ public class PowerVmAllocationPolicyMigrationGlobalTuning extends
         return migrationMap;
     }
 
+    /**
+     * Gets the migrations of the round, from the cost model as updated at the start of the round
+     * by {@link #optimizeAllocation(List)}. The migration which most reduces the cost is accepted
+     * and applied to the model, and so on while a migration reduces the cost by more than the
+     * threshold and the hosts have not reached their migration caps. With a budget, the planner
+     * stops when the budget runs out and the migrations accepted so far are returned.
+     *
+     * @return the migration map, empty if no migration reduces the cost by more than the threshold
+     */
     protected List<Map<String, Object>> getMigratedMap(){
-        double max_cost_diff = 0.0;
-        int fromHost = -1;
-        int toHost = -1;
-        int peekVM = -1;
-
         List<Map<String, Object>> migrationMap = new LinkedList<Map<String, Object>>();
 
-        Vector<Vector<Double>> cost = calCost(calCPU(), calMem(), calNet());
-
-        int hostCount = 0;
-        for(Host host : this.getHostList()){
-            int vmCount = 0;
-            for(Vm vm: host.getVmList()){
-                double current_cost = cost.get(hostCount).get(vmCount);
-                int newHostCount = 0;
-                for(Host newHost : this.getHostList()){
-                    double target_cost = 0.0;
-                    target_cost = calNewCost(hostCount, newHostCount, vmCount);
-                    double cost_diff = current_cost - target_cost;
-                    if (cost_diff > max_cost_diff){
-                        max_cost_diff = cost_diff;
-                        fromHost = hostCount;
-                        toHost = newHostCount;
-                        peekVM = vmCount;
-                    }
-
-                    newHostCount++;
-                }
-                vmCount++;
-
-            }
-            hostCount ++;
-        }
-        if(max_cost_diff > Constants.MIGRATION_THR){
+        planner.setBudget(getEvaluationBudget(), (long) (getTimeBudget() * 1e9));
+        for (int[] migration : planner.plan(Constants.MIGRATION_THR, getMaxMigrationsOut(),
+                getMaxMigrationsIn())) {
             Map<String, Object> migrate = new HashMap<String, Object>();
-            migrate.put("vm",this.getHostList().get(fromHost).getVmList().get(peekVM) );
-            migrate.put("host", this.getHostList().get(toHost));
+            migrate.put("vm", this.getHostList().get(migration[0]).getVmList().get(migration[1]));
+            migrate.put("host", this.getHostList().get(migration[2]));
             migrationMap.add(migrate);
         }
 
-
         return  migrationMap;
     }
 
-
-    private double calNewCost(int fromHostID, int  toHostID, int peekVMID){
-        Host fromHost = this.getHostList().get(fromHostID);
-        Host toHost = this.getHostList().get(toHostID);
-        Vm peekVm = fromHost.getVmList().get(peekVMID);
-
-        double cpuCost = 0.0;
-        double memCost =0.0 ;
-        double netCost = 0.0;
-
-
-
-        double cpuSecond = 0.0;
-        double memSecond = 0.0;
-        double netSecond = 0.0;
-
-        for(int counter = 0; counter < toHost.getVmList().size(); counter ++){
-            cpuSecond += this.cpuCost.get(toHostID).get(counter);
-            memSecond += this.memCost.get(toHostID).get(counter);
-            netSecond += this.netCost.get(toHostID).get(counter);
-
+    /**
+     * Computes the drift of the total cost from the costs at the start of the round, before the
+     * migrations of the round are applied to them.
+     *
+     * @param totalCost the sum of the finite costs of the VMs on their hosts
+     * @param magnitude the sum of the absolute values of these costs
+     */
+    protected void updateCostDrift(double totalCost, double magnitude) {
+        double scale = Math.max(magnitude, lastCostMagnitude);
+        if (Double.isNaN(lastTotalCost)) {
+            costDrift = Double.NaN;
+        } else if (scale > 0) {
+            costDrift = Math.abs(totalCost - lastTotalCost) / scale;
+        } else {
+            costDrift = 0;
         }
-        double cpuFirst = (fromHost.getTotalMips()/toHost.getTotalMips())* this.cpuCost.get(fromHostID).get(peekVMID) + cpuSecond;
-
-
-                cpuCost = Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, cpuFirst)  -
-                Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, cpuSecond);
-
-        memCost = Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, this.memCost.get(fromHostID).get(peekVMID)/toHost.getRam())  -
-                Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, memSecond/toHost.getRam());
-
-        netCost = Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, this.netCost.get(fromHostID).get(peekVMID)/toHost.getBw())  -
-                Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, netSecond/toHost.getBw());
-
+        lastTotalCost = totalCost;
+        lastCostMagnitude = magnitude;
+    }
 
-        return cpuCost + memCost + netCost ;
+    /**
+     * Gets the drift of the cost between the last two rounds: the change of the total cost of the
+     * VMs on their hosts, relative to the sum of the absolute costs. The migrations of a round
+     * show in the drift of the next one.
+     *
+     * @return the drift, NaN before the second round
+     */
+    public double getCostDrift() {
+        return costDrift;
     }
 
+    /**
+     * Gets the kernel of the costs.
+     *
+     * @return the kernel
+     */
+    public GlobalTuningCostKernel getCostKernel() {
+        return costModel.getKernel();
+    }
 
-    private Vector<Vector<Double>> calCost( Vector<Vector<Double> > cpuUsage,
-                                            Vector<Vector<Double> > memUsage,
-                                            Vector<Vector<Double> > netUsage){
-        Vector<Vector<Double> > totalCost = new Vector<Vector<Double>>();
+    /**
+     * Gets the maximum number of migrations from a host in a round.
+     *
+     * @return the maximum number of migrations
+     */
+    public int getMaxMigrationsOut() {
+        return maxMigrationsOut;
+    }
 
+    /**
+     * Sets the maximum number of migrations from a host in a round.
+     *
+     * @param maxMigrationsOut the maximum number of migrations
+     */
+    public void setMaxMigrationsOut(int maxMigrationsOut) {
+        this.maxMigrationsOut = maxMigrationsOut;
+    }
 
-        int i = 0;
-        for(Host host : this.getHostList()){
-            PowerHost powerHost = (PowerHost) host;
-            Vector<Double> hostCost = new Vector<Double>();
-            int j = 0;
+    /**
+     * Gets the maximum number of migrations to a host in a round.
+     *
+     * @return the maximum number of migrations
+     */
+    public int getMaxMigrationsIn() {
+        return maxMigrationsIn;
+    }
 
-            for(Vm vm : powerHost.getVmList()){
-                double cpuFirst = 0.0;
-                double cpuSecond = 0.0;
-                double memFirst = 0.0;
-                double memSecond = 0.0;
-                double netFirst = 0.0;
-                double netSecond = 0.0;
+    /**
+     * Sets the maximum number of migrations to a host in a round.
+     *
+     * @param maxMigrationsIn the maximum number of migrations
+     */
+    public void setMaxMigrationsIn(int maxMigrationsIn) {
+        this.maxMigrationsIn = maxMigrationsIn;
+    }
 
-                for(int counter = 0; counter < powerHost.getVmList().size(); counter ++){
-                    if(counter == j)
-                    {
-                        cpuFirst = cpuUsage.get(i).get(counter);
-                        memFirst = memUsage.get(i).get(counter);
-                        netFirst = netUsage.get(i).get(counter);
-                    }
-                    else{
-                        cpuSecond += cpuUsage.get(i).get(counter);
-                        memSecond += memUsage.get(i).get(counter);
-                        netSecond += netUsage.get(i).get(counter);
-                    }
-                }
+    /**
+     * Gets the maximum number of cost evaluations of a round, a cost evaluation being the
+     * computation of the cost of a VM on a target host.
+     *
+     * @return the maximum number of cost evaluations, 0 for no limit
+     */
+    public long getEvaluationBudget() {
+        return evaluationBudget;
+    }
 
-                Double cpuCost = Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, cpuFirst)  -
-                        Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, cpuSecond);
+    /**
+     * Sets the maximum number of cost evaluations of a round. The VMs of the hosts with the highest
+     * cost are searched first, and the migrations found when the budget runs out are returned. The
+     * plan does not depend on the number of threads.
+     *
+     * @param evaluationBudget the maximum number of cost evaluations, 0 for no limit
+     */
+    public void setEvaluationBudget(long evaluationBudget) {
+        this.evaluationBudget = evaluationBudget;
+    }
 
-                Double memCost = Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, memFirst/powerHost.getRam())  -
-                        Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, memSecond/powerHost.getRam());
+    /**
+     * Gets the maximum wall time of the search of the migrations of a round.
+     *
+     * @return the maximum wall time, in seconds, 0 for no limit
+     */
+    public double getTimeBudget() {
+        return timeBudget;
+    }
 
-                Double netCost = Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, netFirst/powerHost.getBw())  -
-                        Math.pow(PlanetLabConstants.NUMBER_OF_HOSTS, netSecond/powerHost.getBw());
+    /**
+     * Sets the maximum wall time of the search of the migrations of a round. The VMs of the hosts
+     * with the highest cost are searched first, and the migrations found when the budget runs out
+     * are returned. The budget is checked between blocks of hosts and between migrations, so a
+     * round may exceed it slightly, and the plan depends on the speed of the machine.
+     *
+     * @param timeBudget the maximum wall time, in seconds, 0 for no limit
+     */
+    public void setTimeBudget(double timeBudget) {
+        this.timeBudget = timeBudget;
+    }
 
-                hostCost.add(cpuCost + memCost + netCost);
-                j++;
-            }
-            totalCost.add(hostCost);
-            i++;
-        }
-        return totalCost;
+    /**
+     * Checks if the budget of the last round ran out before its plan was complete.
+     *
+     * @return true if the budget ran out
+     */
+    public boolean isBudgetExhausted() {
+        return planner.isBudgetExhausted();
     }
 
-    private Vector<Vector<Double>> calCPU(){
-        Vector<Vector<Double> > cpuUsage = new Vector<Vector<Double>>();
-        for(Host host : this.getHostList()){
-            PowerHost powerHost = (PowerHost) host;
-            Vector <Double> hostCPU = new Vector<Double>();
-            for(Vm vm : powerHost.getVmList()){
-                PowerVm powerVm = (PowerVm) vm;
+    /**
+     * Gets the number of cost evaluations of the last round.
+     *
+     * @return the number of cost evaluations
+     */
+    public long getEvaluations() {
+        return planner.getEvaluations();
+    }
 
-                Double cpu = powerVm.getCpuUsageTime()/powerVm.getMips()/(Constants.GLOBAL_INTERVIAL * Constants.HOST_PES[Constants.HOST_TUNING_TYPE]);
-                hostCPU.add(cpu);
-            }
-            cpuUsage.add(hostCPU);
+    /**
+     * Sets the number of threads searching the migrations of a round. The VMs are split by source
+     * host, and the best migration is picked in the order of the hosts and of their VMs whatever
+     * the number of threads, so the migrations are the same as with a sequential search.
+     *
+     * @param parallelism the number of threads; 1 searches sequentially, as by default
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism should be positive, but is:" + parallelism);
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
         }
-        return cpuUsage;
+        if (parallelism > 1) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        planner.setPool(pool);
     }
 
-    private Vector<Vector<Double>> calMem(){
-        Vector<Vector<Double> > memUsage = new Vector<Vector<Double>>();
-        for(Host host : this.getHostList()){
-            PowerHost powerHost = (PowerHost) host;
-            Vector <Double> hostMem = new Vector<Double>();
-            for(Vm vm : powerHost.getVmList()){
-                PowerVm powerVm = (PowerVm) vm;
-                Double mem =  (double)powerVm.getCurrentRequestedRam();
-
+    /**
+     * Gets the number of threads searching the migrations of a round.
+     *
+     * @return the parallelism, 1 if the migrations are searched sequentially
+     * @see #setParallelism(int)
+     */
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
 
-                hostMem.add(mem);
-            }
-            memUsage.add(hostMem);
-        }
-        return memUsage;
-    }
-
-    private Vector<Vector<Double>> calNet(){
-        Vector<Vector<Double> > netUsage = new Vector<Vector<Double>>();
-        for(Host host : this.getHostList()){
-            PowerHost powerHost = (PowerHost) host;
-            Vector <Double> hostNet = new Vector<Double>();
-            for(Vm vm : powerHost.getVmList()){
-                PowerVm powerVm = (PowerVm) vm;
-                Double net =  (double)powerVm.getCurrentRequestedBw();
-                hostNet.add(net);
-            }
-            netUsage.add(hostNet);
-        }
-        return netUsage;
+    /**
+     * Gets the pool searching the migrations in parallel.
+     *
+     * @return the pool, or null if the migrations are searched sequentially
+     */
+    protected ForkJoinPool getPool() {
+        return pool;
     }
 }
@@ -0,0 +1,471 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.power;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.examples.power.Constants;
+import org.cloudbus.cloudsim.util.ExecutionTimeMeasurer;
+
+/**
+ * The global tuning policy run on pods of hosts, for fleets too large for a single round over all
+ * the hosts. The host list is split into pods of consecutive hosts, the way the hosts of
+ * {@link org.cloudbus.cloudsim.network.datacenter} are attached to their edge and aggregate
+ * switches in the order of their ids. A round has two passes:
+ * <ul>
+ * <li>each pod is tuned on its own, as {@link PowerVmAllocationPolicyMigrationGlobalTuning} does
+ * over all the hosts, with its own cost model, caps and budget, so that its work only depends on
+ * the size of the pod. The pods are tuned in parallel if there is a pool;</li>
+ * <li>the pods are ranked by the average cost of their hosts, and the pod with the highest cost is
+ * paired with the one with the lowest cost, the second with the second, and so on. The VMs of the
+ * first pod of each pair may then be migrated to the hosts of the second, at most
+ * {@link #getMaxInterPodMigrations()} per pair, the migration which most reduces the cost first.
+ * The pairs are independent and are balanced in parallel too.</li>
+ * </ul>
+ * The caps of migrations from and to a host hold over both passes. A VM is never migrated twice in
+ * a round. The plan does not depend on the number of threads.
+ *
+ * @since CloudSim Toolkit 3.0
+ */
+public class PowerVmAllocationPolicyMigrationGlobalTuningHierarchical extends
+        PowerVmAllocationPolicyMigrationGlobalTuning {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The pods. */
+    private final List<Pod> pods = new ArrayList<Pod>();
+
+    /** The maximum number of migrations between a pair of pods in a round. */
+    private int maxInterPodMigrations;
+
+    /** The pods with the highest cost of each pair of the last round. */
+    private int[] sourcePods = new int[0];
+
+    /** The pods with the lowest cost of each pair of the last round. */
+    private int[] targetPods = new int[0];
+
+    /** The migrations between the pods of each pair of the last round. */
+    private List<List<int[]>> interPodMigrations = new ArrayList<List<int[]>>();
+
+    /** The number of cost evaluations between the pods of each pair of the last round. */
+    private long[] interPodEvaluations = new long[0];
+
+    /**
+     * Instantiates a new policy with pods of {@link Constants#POD_SIZE} hosts. The base of the
+     * kernel is the number of hosts of a pod, the costs being only compared within a pod or a pair
+     * of pods.
+     *
+     * @param hostList the host list
+     * @param vmSelectionPolicy the vm selection policy
+     */
+    public PowerVmAllocationPolicyMigrationGlobalTuningHierarchical(
+            List<? extends Host> hostList,
+            PowerVmSelectionPolicy vmSelectionPolicy) {
+        this(hostList, vmSelectionPolicy,
+                new GlobalTuningCostKernelExp(
+                        Math.max(2, Math.min(Constants.POD_SIZE, hostList.size()))),
+                Constants.POD_SIZE);
+    }
+
+    /**
+     * Instantiates a new policy.
+     *
+     * @param hostList the host list
+     * @param vmSelectionPolicy the vm selection policy
+     * @param costKernel the kernel of the costs
+     * @param podSize the number of hosts of a pod, the last pod having the remaining hosts
+     * @throws IllegalArgumentException if the size of the pods is not positive
+     */
+    public PowerVmAllocationPolicyMigrationGlobalTuningHierarchical(
+            List<? extends Host> hostList,
+            PowerVmSelectionPolicy vmSelectionPolicy,
+            GlobalTuningCostKernel costKernel,
+            int podSize) {
+        super(hostList, vmSelectionPolicy, costKernel);
+        if (podSize < 1) {
+            throw new IllegalArgumentException("The size of the pods should be positive, but is:"
+                    + podSize);
+        }
+        for (int start = 0; start < hostList.size(); start += podSize) {
+            pods.add(new Pod(hostList.subList(start, Math.min(start + podSize, hostList.size())),
+                    costKernel));
+        }
+        maxInterPodMigrations = Constants.INTER_POD_MIGRATIONS;
+    }
+
+    @Override
+    public List<Map<String, Object>> optimizeAllocation(List<? extends Vm> vmList) {
+        ExecutionTimeMeasurer.start("optimizeAllocationTotal");
+
+        ExecutionTimeMeasurer.start("optimizeAllocationCalculateCost");
+        run(0, pods.size());
+        double totalCost = 0;
+        double magnitude = 0;
+        for (Pod pod : pods) {
+            totalCost += pod.totalCost;
+            magnitude += pod.costMagnitude;
+        }
+        updateCostDrift(totalCost, magnitude);
+        getExecutionTimeHistoryVmReallocation().add(
+                ExecutionTimeMeasurer.end("optimizeAllocationCalculateCost"));
+
+        ExecutionTimeMeasurer.start("optimizeAllocationVmReallocation");
+        pairPods();
+        run(pods.size(), pods.size() + sourcePods.length);
+        List<Map<String, Object>> migrationMap = getMigratedMap();
+        getExecutionTimeHistoryVmReallocation().add(
+                ExecutionTimeMeasurer.end("optimizeAllocationVmReallocation"));
+
+        Log.printLine();
+
+        getExecutionTimeHistoryTotal().add(ExecutionTimeMeasurer.end("optimizeAllocationTotal"));
+
+        return migrationMap;
+    }
+
+    /**
+     * Gets the migrations of the round: those within each pod, in the order of the pods, then
+     * those between the pods of each pair.
+     *
+     * @return the migration map, empty if no migration reduces the cost by more than the threshold
+     */
+    @Override
+    protected List<Map<String, Object>> getMigratedMap() {
+        List<Map<String, Object>> migrationMap = new LinkedList<Map<String, Object>>();
+        for (Pod pod : pods) {
+            for (int[] migration : pod.migrations) {
+                addMigration(migrationMap, pod, migration[0], migration[1], pod, migration[2]);
+            }
+        }
+        for (int pair = 0; pair < sourcePods.length; pair++) {
+            Pod source = pods.get(sourcePods[pair]);
+            Pod target = pods.get(targetPods[pair]);
+            for (int[] migration : interPodMigrations.get(pair)) {
+                addMigration(migrationMap, source, migration[0], migration[1], target,
+                        migration[2]);
+            }
+        }
+        return migrationMap;
+    }
+
+    /**
+     * Adds a migration to the migration map.
+     *
+     * @param migrationMap the migration map
+     * @param source the pod of the source host
+     * @param fromHost the index of the source host in its pod
+     * @param vm the index of the VM in the VM list of the source host
+     * @param target the pod of the target host
+     * @param toHost the index of the target host in its pod
+     */
+    private void addMigration(List<Map<String, Object>> migrationMap, Pod source, int fromHost,
+            int vm, Pod target, int toHost) {
+        Map<String, Object> migrate = new HashMap<String, Object>();
+        migrate.put("vm", source.hosts.get(fromHost).getVmList().get(vm));
+        migrate.put("host", target.hosts.get(toHost));
+        migrationMap.add(migrate);
+    }
+
+    /**
+     * Runs the tasks of a range of the round, in parallel if there is a pool. The tasks before the
+     * number of pods tune the pods, the following ones balance the pairs of pods.
+     *
+     * @param fromTask the first task
+     * @param toTask the task after the last one
+     */
+    private void run(int fromTask, int toTask) {
+        ForkJoinPool pool = getPool();
+        if (pool == null || toTask - fromTask < 2) {
+            for (int task = fromTask; task < toTask; task++) {
+                run(task);
+            }
+        } else {
+            pool.invoke(new PodTask(fromTask, toTask));
+        }
+    }
+
+    /**
+     * Runs a task of the round.
+     *
+     * @param task the index of the task
+     */
+    private void run(int task) {
+        if (task < pods.size()) {
+            tune(pods.get(task));
+        } else {
+            balance(task - pods.size());
+        }
+    }
+
+    /**
+     * Updates the cost model of a pod and plans its migrations.
+     *
+     * @param pod the pod
+     */
+    private void tune(Pod pod) {
+        pod.model.update();
+        pod.totalCost = pod.model.getTotalCost();
+        pod.costMagnitude = pod.model.getTotalCostMagnitude();
+        pod.planner.setBudget(getEvaluationBudget(), (long) (getTimeBudget() * 1e9));
+        pod.migrations = pod.planner.plan(Constants.MIGRATION_THR, getMaxMigrationsOut(),
+                getMaxMigrationsIn());
+
+        int hosts = pod.model.getHostCount();
+        if (pod.outCount.length < hosts) {
+            pod.outCount = new int[hosts];
+            pod.inCount = new int[hosts];
+        } else {
+            Arrays.fill(pod.outCount, 0);
+            Arrays.fill(pod.inCount, 0);
+        }
+        for (int[] migration : pod.migrations) {
+            pod.outCount[migration[0]]++;
+            pod.inCount[migration[2]]++;
+        }
+    }
+
+    /**
+     * Pairs the pods by their average cost per host before the migrations of the round: the pod
+     * with the highest cost with the one with the lowest cost, and so on. Ties are broken by the
+     * index of the pods.
+     */
+    private void pairPods() {
+        final double[] podCost = new double[pods.size()];
+        Integer[] sorted = new Integer[pods.size()];
+        for (int p = 0; p < pods.size(); p++) {
+            Pod pod = pods.get(p);
+            podCost[p] = pod.totalCost / Math.max(1, pod.model.getHostCount());
+            sorted[p] = p;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byCost = Double.compare(podCost[b], podCost[a]);
+                return byCost != 0 ? byCost : a.compareTo(b);
+            }
+
+        });
+        int pairs = getMaxInterPodMigrations() > 0 ? pods.size() / 2 : 0;
+        sourcePods = new int[pairs];
+        targetPods = new int[pairs];
+        interPodMigrations = new ArrayList<List<int[]>>(pairs);
+        interPodEvaluations = new long[pairs];
+        for (int pair = 0; pair < pairs; pair++) {
+            sourcePods[pair] = sorted[pair];
+            targetPods[pair] = sorted[pods.size() - 1 - pair];
+            interPodMigrations.add(new ArrayList<int[]>());
+        }
+    }
+
+    /**
+     * Plans the migrations from the VMs of the first pod of a pair to the hosts of the second. The
+     * migration which most reduces the cost by more than the threshold is accepted and applied to
+     * the models, and so on until the maximum number of migrations between the pods, the VMs and
+     * hosts under their caps being searched exhaustively at each step.
+     *
+     * @param pair the index of the pair
+     */
+    private void balance(int pair) {
+        Pod source = pods.get(sourcePods[pair]);
+        Pod target = pods.get(targetPods[pair]);
+        List<int[]> migrations = interPodMigrations.get(pair);
+        int maxOut = getMaxMigrationsOut();
+        int maxIn = getMaxMigrationsIn();
+        long evaluations = 0;
+        while (migrations.size() < getMaxInterPodMigrations()) {
+            double max = Constants.MIGRATION_THR;
+            int from = -1;
+            int vm = -1;
+            int to = -1;
+            for (int h = 0; h < source.model.getHostCount(); h++) {
+                if (source.outCount[h] >= maxOut) {
+                    continue;
+                }
+                for (int i = 0; i < source.model.getVmCount(h); i++) {
+                    if (source.model.isMoved(h, i)) {
+                        continue;
+                    }
+                    double cost = source.model.getCost(h, i);
+                    for (int t = 0; t < target.model.getHostCount(); t++) {
+                        if (target.inCount[t] >= maxIn) {
+                            continue;
+                        }
+                        double diff = cost - source.model.getNewCost(h, i, target.model, t);
+                        evaluations++;
+                        if (diff > max) {
+                            max = diff;
+                            from = h;
+                            vm = i;
+                            to = t;
+                        }
+                    }
+                }
+            }
+            if (from < 0) {
+                break;
+            }
+            migrations.add(new int[] { from, vm, to });
+            source.model.moveVm(from, vm, target.model, to);
+            source.outCount[from]++;
+            target.inCount[to]++;
+        }
+        interPodEvaluations[pair] = evaluations;
+    }
+
+    /**
+     * Gets the number of pods.
+     *
+     * @return the number of pods
+     */
+    public int getPodCount() {
+        return pods.size();
+    }
+
+    /**
+     * Gets the maximum number of migrations between a pair of pods in a round.
+     *
+     * @return the maximum number of migrations, 0 if the pods are only tuned on their own
+     */
+    public int getMaxInterPodMigrations() {
+        return maxInterPodMigrations;
+    }
+
+    /**
+     * Sets the maximum number of migrations between a pair of pods in a round. Each of them
+     * searches all the VMs of the first pod and all the hosts of the second.
+     *
+     * @param maxInterPodMigrations the maximum number of migrations, 0 to only tune the pods on
+     *            their own
+     */
+    public void setMaxInterPodMigrations(int maxInterPodMigrations) {
+        this.maxInterPodMigrations = maxInterPodMigrations;
+    }
+
+    /**
+     * Checks if the budget of a pod ran out in the last round before its plan was complete. The
+     * budget of the policy applies to each pod.
+     *
+     * @return true if the budget of a pod ran out
+     */
+    @Override
+    public boolean isBudgetExhausted() {
+        for (Pod pod : pods) {
+            if (pod.planner.isBudgetExhausted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of cost evaluations of the last round, within and between the pods.
+     *
+     * @return the number of cost evaluations
+     */
+    @Override
+    public long getEvaluations() {
+        long evaluations = 0;
+        for (Pod pod : pods) {
+            evaluations += pod.planner.getEvaluations();
+        }
+        for (long pairEvaluations : interPodEvaluations) {
+            evaluations += pairEvaluations;
+        }
+        return evaluations;
+    }
+
+    /**
+     * A pod: a range of consecutive hosts with its own cost model and planner.
+     */
+    private static class Pod implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The hosts of the pod. */
+        private final List<? extends Host> hosts;
+
+        /** The cost model of the hosts of the pod. */
+        private final GlobalTuningCostModel model;
+
+        /** The planner of the migrations within the pod. */
+        private final GlobalTuningMigrationPlanner planner;
+
+        /** The migrations within the pod of the last round. */
+        private List<int[]> migrations = new ArrayList<int[]>();
+
+        /** The number of migrations from and to each host of the pod in the last round. */
+        private int[] outCount = new int[0], inCount = new int[0];
+
+        /** The total cost and its magnitude at the start of the last round. */
+        private double totalCost, costMagnitude;
+
+        /**
+         * Creates a pod.
+         *
+         * @param hosts the hosts of the pod
+         * @param costKernel the kernel of the costs
+         */
+        Pod(List<? extends Host> hosts, GlobalTuningCostKernel costKernel) {
+            this.hosts = hosts;
+            model = new GlobalTuningCostModel(hosts, costKernel);
+            planner = new GlobalTuningMigrationPlanner(model);
+        }
+
+    }
+
+    /**
+     * A task running a range of the tasks of the round, split in two until it has a single task.
+     */
+    private class PodTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The first task. */
+        private final int fromTask;
+
+        /** The task after the last one. */
+        private final int toTask;
+
+        /**
+         * Creates a task.
+         *
+         * @param fromTask the first task
+         * @param toTask the task after the last one
+         */
+        PodTask(int fromTask, int toTask) {
+            this.fromTask = fromTask;
+            this.toTask = toTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (toTask - fromTask == 1) {
+                run(fromTask);
+            } else {
+                int middle = (fromTask + toTask) >>> 1;
+                invokeAll(new PodTask(fromTask, middle), new PodTask(middle, toTask));
+            }
+        }
+
+    }
+
+}
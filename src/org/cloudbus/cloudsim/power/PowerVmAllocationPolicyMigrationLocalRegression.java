@@ -30,6 +30,8 @@ import org.cloudbus.cloudsim.util.MathUtil;
  */
 public class PowerVmAllocationPolicyMigrationLocalRegression extends PowerVmAllocationPolicyMigrationAbstract {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The scheduling interval. */
 	private double schedulingInterval;
 
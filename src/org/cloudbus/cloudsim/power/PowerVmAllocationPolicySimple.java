@@ -31,6 +31,8 @@ import org.cloudbus.cloudsim.Vm;
  */
 public class PowerVmAllocationPolicySimple extends PowerVmAllocationPolicyAbstract {
 
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Instantiates a new power vm allocation policy simple.
 	 * 
@@ -25,6 +25,8 @@ package org.cloudbus.cloudsim.power.models;
  */
 public class PowerModelSpecPowerHpProLiantMl110G3PentiumD930 extends PowerModelSpecPower {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The power. */
 	private final double[] power = { 105, 112, 118, 125, 131, 137, 147, 153, 157, 164, 169 };
 
@@ -25,6 +25,8 @@ package org.cloudbus.cloudsim.power.models;
  */
 public class PowerModelSpecPowerHpProLiantMl110G5Xeon3075 extends PowerModelSpecPower {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The power. */
 	private final double[] power = { 93.7, 97, 101, 105, 110, 116, 121, 125, 129, 133, 135 };
 
@@ -25,6 +25,8 @@ package org.cloudbus.cloudsim.power.models;
  */
 public class PowerModelSpecPowerIbmX3250XeonX3470 extends PowerModelSpecPower {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The power. */
 	private final double[] power = { 41.6, 46.7, 52.3, 57.9, 65.4, 73, 80.7, 89.5, 99.6, 105, 113 };
 
@@ -25,6 +25,8 @@ package org.cloudbus.cloudsim.power.models;
  */
 public class PowerModelSpecPowerIbmX3250XeonX3480 extends PowerModelSpecPower {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The power. */
 	private final double[] power = { 42.3, 46.7, 49.7, 55.4, 61.8, 69.3, 76.1, 87, 96.1, 106, 113 };
 
@@ -24,6 +24,8 @@ package org.cloudbus.cloudsim.power.models;
  */
 public class PowerModelSquare implements PowerModel {
 
+	private static final long serialVersionUID = 1L;
+
 	/** The max power. */
 	private double maxPower;
 